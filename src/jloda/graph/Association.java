@@ -0,0 +1,63 @@
+/*
+ * Association.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+/**
+ * the link between an object that associates values with nodes or edges (an array or a set)
+ * and the registry of the owning graph. Deletions are not pushed to the associations, instead each association
+ * calls sync() before it accesses its entries and then catches up on all deletions that it has not yet seen
+ * Daniel Huson, 2021
+ */
+abstract class Association {
+    AssociationRegistry registry;
+    long position; // position in the deletion log up to which deletions have been applied
+    int epoch; // epoch of the registry when last synced
+
+    /**
+     * applies all deletions that have happened since the last call. Must be called before entries are accessed
+     */
+    final void sync() {
+        if (position != registry.getLogEnd() || epoch != registry.getEpoch())
+            registry.catchUp(this);
+    }
+
+    /**
+     * clears the entry for the given id, because the corresponding node or edge has been deleted
+     *
+     * @param id the id
+     */
+    abstract void clearEntry(int id);
+
+    /**
+     * clears all entries, because the graph has been emptied
+     */
+    abstract void clearAllEntries();
+
+    /**
+     * moves all entries to their new ids, called when the graph compacts its ids
+     *
+     * @param oldId2NewId maps each old id to its new id, or to 0, if the id is not in use
+     * @param newMaxId    the largest new id
+     */
+    abstract void reindex(int[] oldId2NewId, int newMaxId);
+}
+
+// EOF
@@ -0,0 +1,175 @@
+/*
+ * AssociationRegistry.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * keeps track of all arrays and sets that associate values with the nodes (or edges) of a graph.
+ * <p>
+ * Registration is amortized constant time: associations are held by weak references and references to
+ * associations that have been garbage collected are removed via a reference queue.
+ * <p>
+ * Deleting a node or edge is constant time: the id is appended to a deletion log and each association
+ * clears the entry lazily, the next time that it is used. When the graph is emptied, the epoch is increased
+ * and each association clears all its entries on next use.
+ * Daniel Huson, 2021
+ */
+final class AssociationRegistry {
+    private static final int MIN_LOG_LENGTH = 4096;
+
+    private final ReferenceQueue<Association> queue = new ReferenceQueue<>();
+    private Ref[] refs = new Ref[16];
+    private int numberOfRefs = 0;
+
+    private int[] log = new int[16];
+    private long logStart = 0; // position of log[0]
+    private volatile long logEnd = 0; // position after the last entry of the log
+    private volatile int epoch = 0;
+
+    /**
+     * registers an association
+     *
+     * @param association the association
+     */
+    synchronized void register(Association association) {
+        removeCollectedReferences();
+        if (numberOfRefs == refs.length)
+            refs = Arrays.copyOf(refs, 2 * refs.length);
+        refs[numberOfRefs] = new Ref(association, queue, numberOfRefs);
+        numberOfRefs++;
+        association.registry = this;
+        association.position = logEnd;
+        association.epoch = epoch;
+    }
+
+    /**
+     * records that the node or edge with the given id has been deleted
+     *
+     * @param id the id
+     */
+    synchronized void logDeletion(int id) {
+        var size = (int) (logEnd - logStart);
+        if (size == log.length) {
+            if (size >= Math.max(MIN_LOG_LENGTH, 4 * numberOfRefs)) {
+                syncAll(); // all live associations are up-to-date, so the log can be discarded
+                size = 0;
+            } else
+                log = Arrays.copyOf(log, 2 * log.length);
+        }
+        log[size] = id;
+        logEnd++;
+    }
+
+    /**
+     * records that all nodes (or edges) have been deleted
+     */
+    synchronized void logDeletionOfAll() {
+        epoch++;
+        logStart = logEnd;
+    }
+
+    /**
+     * brings all live associations up-to-date and then moves their entries to new ids
+     *
+     * @param oldId2NewId maps each old id to its new id, or to 0, if the id is not in use
+     * @param newMaxId    the largest new id
+     */
+    synchronized void reindexAll(int[] oldId2NewId, int newMaxId) {
+        syncAll();
+        for (var i = 0; i < numberOfRefs; i++) {
+            final Association association = refs[i].get();
+            if (association != null)
+                association.reindex(oldId2NewId, newMaxId);
+        }
+    }
+
+    long getLogEnd() {
+        return logEnd;
+    }
+
+    int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * applies all deletions that the association has not yet seen
+     *
+     * @param association the association
+     */
+    synchronized void catchUp(Association association) {
+        if (association.epoch != epoch) {
+            association.clearAllEntries();
+            association.epoch = epoch;
+        } else {
+            for (var pos = association.position; pos < logEnd; pos++)
+                association.clearEntry(log[(int) (pos - logStart)]);
+        }
+        association.position = logEnd;
+    }
+
+    /**
+     * brings all live associations up-to-date and empties the log
+     */
+    private void syncAll() {
+        removeCollectedReferences();
+        for (var i = 0; i < numberOfRefs; i++) {
+            final Association association = refs[i].get();
+            if (association != null)
+                catchUp(association);
+        }
+        logStart = logEnd;
+    }
+
+    /**
+     * removes all references whose associations have been garbage collected, in constant time per reference
+     */
+    private void removeCollectedReferences() {
+        Reference<? extends Association> reference;
+        while ((reference = queue.poll()) != null) {
+            final Ref ref = (Ref) reference;
+            if (ref.slot != -1) {
+                final Ref last = refs[--numberOfRefs];
+                refs[ref.slot] = last;
+                last.slot = ref.slot;
+                refs[numberOfRefs] = null;
+                ref.slot = -1;
+            }
+        }
+    }
+
+    /**
+     * weak reference that knows its position in the array of references
+     */
+    private static class Ref extends WeakReference<Association> {
+        private int slot;
+
+        Ref(Association association, ReferenceQueue<Association> queue, int slot) {
+            super(association, queue);
+            this.slot = slot;
+        }
+    }
+}
+
+// EOF
@@ -0,0 +1,207 @@
+/*
+ * ConnectivityIndex.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * connected components and simplicity of a graph, computed using a concurrent union-find over all edges.
+ * Nodes are numbered 0..n-1 in the order of the node list, components are numbered 0..k-1 in the order in which
+ * they are first encountered in the node list.
+ * A graph caches its index, see Graph.getConnectivityIndex(), so repeated calls of Graph.isConnected() and
+ * Graph.isSimple() are cheap until the next structural change
+ * Daniel Huson, 2021
+ */
+public class ConnectivityIndex {
+    /**
+     * graphs with fewer edges are processed sequentially
+     */
+    private static final int MIN_EDGES_FOR_PARALLEL = 10000;
+
+    private final Node[] nodes;
+    private final int[] id2index;
+    private final int[] components;
+    private final int numberOfComponents;
+    private final boolean simple;
+
+    /**
+     * computes the index for the given graph. Hidden nodes and edges are ignored
+     */
+    public ConnectivityIndex(Graph graph) {
+        final var n = graph.getNumberOfNodes();
+        nodes = new Node[n];
+        id2index = new int[graph.getMaxNodeId() + 1];
+        Arrays.fill(id2index, -1);
+        {
+            var i = 0;
+            for (var v : graph.nodes()) {
+                nodes[i] = v;
+                id2index[v.getId()] = i++;
+            }
+        }
+
+        final var sources = new int[graph.getNumberOfEdges()];
+        final var targets = new int[sources.length];
+        var m = 0;
+        for (var e : graph.edges()) {
+            final var s = getIndex(e.getSource());
+            final var t = getIndex(e.getTarget());
+            if (s != -1 && t != -1) {
+                sources[m] = s;
+                targets[m++] = t;
+            }
+        }
+
+        final var parent = new AtomicIntegerArray(n);
+        for (var i = 0; i < n; i++)
+            parent.set(i, i);
+
+        final var edges = IntStream.range(0, m);
+        (m >= MIN_EDGES_FOR_PARALLEL ? edges.parallel() : edges).forEach(i -> union(parent, sources[i], targets[i]));
+
+        components = new int[n];
+        final var root2component = new int[n];
+        Arrays.fill(root2component, -1);
+        var count = 0;
+        for (var i = 0; i < n; i++) {
+            final var root = find(parent, i);
+            if (root2component[root] == -1)
+                root2component[root] = count++;
+            components[i] = root2component[root];
+        }
+        numberOfComponents = count;
+
+        simple = !hasMultipleEdges(sources, targets, m);
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return the node with index i
+     */
+    public Node getNode(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * @return the index of node v, or -1, if v is hidden or was not present when the index was computed
+     */
+    public int getIndex(Node v) {
+        final var id = v.getId();
+        return (id < id2index.length && id2index[id] != -1 && nodes[id2index[id]] == v ? id2index[id] : -1);
+    }
+
+    public int getNumberOfComponents() {
+        return numberOfComponents;
+    }
+
+    /**
+     * @return the component of node v
+     */
+    public int getComponent(Node v) {
+        return components[getIndex(v)];
+    }
+
+    /**
+     * @return component ids, indexed by node index
+     */
+    public int[] getComponents() {
+        return components;
+    }
+
+    /**
+     * @return true, if graph has at most one connected component
+     */
+    public boolean isConnected() {
+        return numberOfComponents <= 1;
+    }
+
+    /**
+     * @return true, if no two edges connect the same pair of nodes, ignoring direction
+     */
+    public boolean isSimple() {
+        return simple;
+    }
+
+    /**
+     * find the root of the set containing i, using path halving. Concurrent updates only ever replace a parent by one of its ancestors
+     */
+    private static int find(AtomicIntegerArray parent, int i) {
+        while (true) {
+            final var p = parent.get(i);
+            if (p == i)
+                return i;
+            final var gp = parent.get(p);
+            if (gp != p)
+                parent.compareAndSet(i, p, gp);
+            i = gp;
+        }
+    }
+
+    /**
+     * merge the sets containing a and b, always attaching the larger root below the smaller one, so no cycles can arise
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b)
+                return;
+            if (a < b) {
+                final var tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (parent.compareAndSet(a, a, b))
+                return;
+        }
+    }
+
+    /**
+     * determines whether any two edges connect the same pair of nodes, by sorting the edges as pairs of node indices
+     */
+    private static boolean hasMultipleEdges(int[] sources, int[] targets, int m) {
+        final var keys = new long[m];
+        for (var i = 0; i < m; i++) {
+            final long s = Math.min(sources[i], targets[i]);
+            final long t = Math.max(sources[i], targets[i]);
+            keys[i] = (s << 32) | t;
+        }
+        if (m >= MIN_EDGES_FOR_PARALLEL)
+            Arrays.parallelSort(keys);
+        else
+            Arrays.sort(keys);
+        for (var i = 1; i < m; i++) {
+            if (keys[i] == keys[i - 1])
+                return true;
+        }
+        return false;
+    }
+}
+
+// EOF
@@ -36,13 +36,42 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
     private T[] data;
     private int size = 0;
 
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            if (id < data.length && data[id] != null) {
+                data[id] = null;
+                size--;
+            }
+        }
+
+        @Override
+        void clearAllEntries() {
+            Arrays.fill(data, null);
+            size = 0;
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final T[] newData = (T[]) new Object[newMaxId + 1];
+            size = 0;
+            for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+                if (data[id] != null && oldId2NewId[id] > 0) {
+                    newData[oldId2NewId[id]] = data[id];
+                    size++;
+                }
+            }
+            data = newData;
+        }
+    };
+
     /**
      * Construct an edge array with default value null
      */
     public EdgeArray(Graph g) {
         setOwner(g);
         data = (T[]) new Object[g.getMaxEdgeId() + 1];
-        g.registerEdgeArray(this);
+        g.registerEdgeAssociation(association);
     }
 
     /**
@@ -53,6 +82,15 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
         size = 0;
     }
 
+    /**
+     * Clear the entry for edge e.
+     *
+     * @param e Edge
+     */
+    public void clear(Edge e) {
+        put(e, null);
+    }
+
     /**
      * Copy constructor.
      *
@@ -60,9 +98,11 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
      */
     public EdgeArray(EdgeArray<T> src) {
         setOwner(src.getOwner());
+        src.association.sync();
         data = (T[]) new Object[src.data.length];
         System.arraycopy(src.data, 0, data, 0, data.length);
         size = src.size;
+        getOwner().registerEdgeAssociation(association);
     }
 
 
@@ -74,6 +114,7 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
      */
     public T put(Edge a, T object) {
         checkOwner(a);
+        association.sync();
         int id = a.getId();
         if (id >= data.length) {
             if (object == null)
@@ -173,12 +214,13 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
 
     @Override
     public int size() {
+        association.sync();
         return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return size == 0;
+        return size() == 0;
     }
 
     @Override
@@ -215,6 +257,7 @@ public class EdgeArray<T> extends GraphBase implements Iterable<T>, Map<Edge, T>
     public T get(Object key) {
         if (key instanceof Edge) {
             var a = (Edge) key;
+            association.sync();
             if (a.getId() < data.length && data[a.getId()] != null)
                 return data[a.getId()];
             else
@@ -20,36 +20,107 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
+
 /**
- * edge double array
- * Daniel Huson, 11.2017
+ * Edge double array, values are kept in a double[]
+ * Daniel Huson, 11.2017, 2021
  */
-public class EdgeDoubleArray extends EdgeArray<Double> {
+public class EdgeDoubleArray extends PrimitiveEdgeArray<Double> {
+    private double[] data;
+
     /**
-     * Construct an edge array with default value null
+     * Construct an edge array with no entries set
      */
     public EdgeDoubleArray(Graph g) {
         super(g);
+        data = new double[g.getMaxEdgeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src EdgeArray
+     * @param src EdgeDoubleArray
      */
-    public EdgeDoubleArray(EdgeArray<Double> src) {
+    public EdgeDoubleArray(EdgeDoubleArray src) {
         super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
     /**
-     * Get the entry for edge e.
+     * Get the entry for edge e
      *
      * @param e Edge
-     * @return double or 0
+     * @return value or 0.0, if not set
      */
     public double getDouble(Edge e) {
-        var value = get(e);
-        return value != null ? value : 0.0;
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return id < data.length ? data[id] : 0.0;
+    }
+
+    /**
+     * Set the entry for edge e
+     *
+     * @param e     Edge
+     * @param value value
+     */
+    public void set(Edge e, double value) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all edges.
+     *
+     * @param value value
+     */
+    public void setAll(double value) {
+        for (var e : getOwner().edges())
+            set(e, value);
+    }
+
+    @Override
+    public Double get(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Double put(Edge e, Double value) {
+        if (value == null)
+            clear(e);
+        else
+            set(e, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0.0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0.0);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final double[] newData = new double[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
     }
 }
 
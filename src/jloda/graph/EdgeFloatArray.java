@@ -20,35 +20,107 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
+
 /**
- * edge float array
- * Daniel Huson, 11.2017
+ * Edge float array, values are kept in a float[]
+ * Daniel Huson, 2003, 2021
  */
-public class EdgeFloatArray extends EdgeArray<Float> {
+public class EdgeFloatArray extends PrimitiveEdgeArray<Float> {
+    private float[] data;
+
     /**
-     * Construct an edge array with default value null
+     * Construct an edge array with no entries set
      */
     public EdgeFloatArray(Graph g) {
         super(g);
+        data = new float[g.getMaxEdgeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src EdgeArray
+     * @param src EdgeFloatArray
      */
-    public EdgeFloatArray(EdgeArray<Float> src) {
+    public EdgeFloatArray(EdgeFloatArray src) {
         super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
-
+    /**
+     * Get the entry for edge e
+     *
+     * @param e Edge
+     * @return value or 0f, if not set
+     */
     public float getFloat(Edge e) {
-        var value = get(e);
-        return value != null ? value : 0f;
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return id < data.length ? data[id] : 0f;
     }
 
+    /**
+     * Set the entry for edge e
+     *
+     * @param e     Edge
+     * @param value value
+     */
     public void set(Edge e, float value) {
-        put(e, value);
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all edges.
+     *
+     * @param value value
+     */
+    public void setAll(float value) {
+        for (var e : getOwner().edges())
+            set(e, value);
+    }
+
+    @Override
+    public Float get(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Float put(Edge e, Float value) {
+        if (value == null)
+            clear(e);
+        else
+            set(e, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0f;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0f);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final float[] newData = new float[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
     }
 }
 
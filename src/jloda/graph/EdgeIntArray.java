@@ -20,42 +20,70 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
 
 /**
- * edge float array
- * Daniel Huson, 2003
+ * Edge integer array, values are kept in an int[]
+ * Daniel Huson, 2003, 2021
  */
-public class EdgeIntArray extends EdgeArray<Integer> {
+public class EdgeIntArray extends PrimitiveEdgeArray<Integer> {
+    private int[] data;
+
     /**
-     * Construct an edge array with default value null
+     * Construct an edge array with no entries set
      */
     public EdgeIntArray(Graph g) {
         super(g);
+        data = new int[g.getMaxEdgeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src EdgeArray
+     * @param src EdgeIntArray
      */
-    public EdgeIntArray(EdgeArray<Integer> src) {
+    public EdgeIntArray(EdgeIntArray src) {
         super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
-
     /**
-     * get the entry for edge e
+     * Get the entry for edge e
      *
-     * @param e
-     * @return integer or 0
+     * @param e Edge
+     * @return value or 0, if not set
      */
     public int getInt(Edge e) {
-        var value = get(e);
-        return value != null ? value : 0;
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return id < data.length ? data[id] : 0;
     }
 
+    /**
+     * Set the entry for edge e
+     *
+     * @param e     Edge
+     * @param value value
+     */
     public void set(Edge e, int value) {
-        put(e, value);
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all edges.
+     *
+     * @param value value
+     */
+    public void setAll(int value) {
+        for (var e : getOwner().edges())
+            set(e, value);
     }
 
     /**
@@ -93,6 +121,43 @@ public class EdgeIntArray extends EdgeArray<Integer> {
     public void decrement(Edge e, int value) {
         set(e, getInt(e) - value);
     }
+
+    @Override
+    public Integer get(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Integer put(Edge e, Integer value) {
+        if (value == null)
+            clear(e);
+        else
+            set(e, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final int[] newData = new int[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
+    }
 }
 
 // EOF
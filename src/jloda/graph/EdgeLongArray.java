@@ -0,0 +1,127 @@
+/*
+ * EdgeLongArray.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import java.util.Arrays;
+
+/**
+ * Edge long array, values are kept in a long[]
+ * Daniel Huson, 2021
+ */
+public class EdgeLongArray extends PrimitiveEdgeArray<Long> {
+    private long[] data;
+
+    /**
+     * Construct an edge array with no entries set
+     */
+    public EdgeLongArray(Graph g) {
+        super(g);
+        data = new long[g.getMaxEdgeId() + 1];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param src EdgeLongArray
+     */
+    public EdgeLongArray(EdgeLongArray src) {
+        super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
+    }
+
+    /**
+     * Get the entry for edge e
+     *
+     * @param e Edge
+     * @return value or 0L, if not set
+     */
+    public long getLong(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return id < data.length ? data[id] : 0L;
+    }
+
+    /**
+     * Set the entry for edge e
+     *
+     * @param e     Edge
+     * @param value value
+     */
+    public void set(Edge e, long value) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all edges.
+     *
+     * @param value value
+     */
+    public void setAll(long value) {
+        for (var e : getOwner().edges())
+            set(e, value);
+    }
+
+    @Override
+    public Long get(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Long put(Edge e, Long value) {
+        if (value == null)
+            clear(e);
+        else
+            set(e, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0L;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0L);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final long[] newData = new long[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
+    }
+}
+
+// EOF
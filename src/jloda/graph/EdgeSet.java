@@ -31,7 +31,30 @@ import java.util.*;
  * EdgeSet implements a set of edges contained in a given graph
  */
 public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
-    final BitSet bits;
+    private final BitSet bits;
+
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            bits.clear(id);
+        }
+
+        @Override
+        void clearAllEntries() {
+            bits.clear();
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final BitSet newBits = new BitSet();
+            for (int id = bits.nextSetBit(0); id != -1 && id < oldId2NewId.length; id = bits.nextSetBit(id + 1)) {
+                if (oldId2NewId[id] > 0)
+                    newBits.set(oldId2NewId[id]);
+            }
+            bits.clear();
+            bits.or(newBits);
+        }
+    };
 
     /**
      * Constructs a new empty EdgeSet for Graph G.
@@ -40,8 +63,8 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      */
     public EdgeSet(Graph graph) {
         setOwner(graph);
-        graph.registerEdgeSet(this);
         bits = new BitSet();
+        graph.registerEdgeAssociation(association);
     }
 
     /**
@@ -51,6 +74,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return a boolean value
      */
     public boolean contains(Object e) {
+        association.sync();
         return e instanceof Edge && bits.get(((Edge) e).getId());
     }
 
@@ -61,6 +85,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return true, if new
      */
     public boolean add(Edge e) {
+        association.sync();
         if (bits.get(e.getId()))
             return false;
         else {
@@ -75,6 +100,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @param e Edge
      */
     public boolean remove(Object e) {
+        association.sync();
         if (e instanceof Edge && bits.get(((Edge) e).getId())) {
             bits.set(((Edge) e).getId(), false);
             return true;
@@ -146,6 +172,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return true, if set changes
      */
     public boolean retainAll(Collection collection) {
+        association.sync();
         final int old = bits.cardinality();
         final BitSet newBits = new BitSet();
 
@@ -171,6 +198,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return true, if empty
      */
     public boolean isEmpty() {
+        association.sync();
         return bits.isEmpty();
     }
 
@@ -207,6 +235,7 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return size
      */
     public int size() {
+        association.sync();
         return bits.cardinality();
     }
 
@@ -276,6 +305,8 @@ public class EdgeSet extends GraphBase implements Iterable<Edge>, Set<Edge> {
      * @return true, if intersection is non-empty
      */
     public boolean intersects(EdgeSet aset) {
+        association.sync();
+        aset.association.sync();
         return bits.intersects(aset.bits);
     }
 
@@ -23,7 +23,6 @@ import jloda.util.Basic;
 import jloda.util.IteratorAdapter;
 import jloda.util.IteratorUtils;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -44,12 +43,14 @@ public class Graph extends GraphBase {
     private int numberNodes;
     private int numberOfNodesThatAreHidden;
     private int maxNodeId; // max id assigned to any node
+    private Node[] id2node = new Node[0]; // nodes indexed by id, used by findNodeById
 
     private Edge firstEdge;
     protected Edge lastEdge;
     private int numberEdges;
     private int numberOfEdgesThatAreHidden;
     private int maxEdgeId; // max id assigned to any edge
+    private Edge[] id2edge = new Edge[0]; // edges indexed by id, used by findEdgeById
 
     private boolean ignoreGraphHasChanged = false; // set this when we are deleting a whole graph
 
@@ -64,18 +65,14 @@ public class Graph extends GraphBase {
     private EdgeArray<Object> edgeData;
     private EdgeSet specialEdges;
 
-    private final List<WeakReference<NodeSet>> nodeSets = new LinkedList<>();
-    // created node arrays are kept here. When an node is deleted, it's
-    // entry in all node arrays is set to null
-    private final List<WeakReference<NodeArray<?>>> nodeArrays = new LinkedList<>();
-
-    // created edge arrays are kept here. When an edge is deleted, it's
-    // entry in all edge arrays is set to null
-    private final List<WeakReference<EdgeArray<?>>> edgeArrays = new LinkedList<>();
-    // keep track of edge sets
-    private final List<WeakReference<EdgeSet>> edgeSets = new LinkedList<>();
+    // all node arrays and node sets of this graph. When a node is deleted, its entries are cleared lazily
+    private final AssociationRegistry nodeAssociations = new AssociationRegistry();
+    // all edge arrays and edge sets of this graph. When an edge is deleted, its entries are cleared lazily
+    private final AssociationRegistry edgeAssociations = new AssociationRegistry();
     private String name;
 
+    private volatile ConnectivityIndex connectivityIndex; // cached, cleared on structural change
+
     /**
      * Constructs a new empty graph.
      */
@@ -113,19 +110,21 @@ public class Graph extends GraphBase {
      */
     public Node newNode(Object info, int recycledId) {
         final Node v = new Node(this, info);
-        v.setId(recycledId);
+        changeId(v, recycledId);
         maxNodeId--; // count back down
         return v;
     }
 
     void registerNewNode(Object info, Node v) {
         v.init(this, lastNode, null, ++maxNodeId, info);
+        putNodeById(v);
         if (firstNode == null)
             firstNode = v;
         if (lastNode != null)
             lastNode.next = v;
         lastNode = v;
         numberNodes++;
+        connectivityIndex = null;
     }
 
     /**
@@ -140,12 +139,14 @@ public class Graph extends GraphBase {
             if (!v.isHidden()) {
                 v.setHidden(true);
                 numberOfNodesThatAreHidden++;
+                connectivityIndex = null;
                 return true;
             }
         } else {
             if (v.isHidden()) {
                 v.setHidden(false);
                 numberOfNodesThatAreHidden--;
+                connectivityIndex = null;
                 return true;
             }
         }
@@ -175,12 +176,14 @@ public class Graph extends GraphBase {
             if (!e.isHidden()) {
                 e.setHidden(true);
                 numberOfEdgesThatAreHidden++;
+                connectivityIndex = null;
                 return true;
             }
         } else {
             if (e.isHidden()) {
                 e.setHidden(false);
                 numberOfEdgesThatAreHidden--;
+                connectivityIndex = null;
                 return true;
             }
         }
@@ -230,7 +233,7 @@ public class Graph extends GraphBase {
      */
     public Edge newEdge(Node v, Node w, Object obj, int recycledId) throws IllegalSelfEdgeException {
         final Edge e = new Edge(this, v, w, obj);
-        e.setId(recycledId);
+        changeId(e, recycledId);
         maxEdgeId--;
         return e;
     }
@@ -277,12 +280,14 @@ public class Graph extends GraphBase {
         w.incrementInDegree();
 
         e.init(this, ++maxEdgeId, v, e_v, dir_v, w, e_w, dir_w, obj);
+        putEdgeById(e);
         if (firstEdge == null)
             firstEdge = e;
         if (lastEdge != null)
             lastEdge.next = e;
         lastEdge = e;
         numberEdges++;
+        connectivityIndex = null;
     }
 
     /**
@@ -303,10 +308,11 @@ public class Graph extends GraphBase {
      */
     void unregisterEdge(Edge e) {
         checkOwner(e);
+        connectivityIndex = null;
         if (e.isHidden())
             numberOfEdgesThatAreHidden--;
-        deleteEdgeFromArrays(e);
-        deleteEdgeFromSets(e);
+        edgeAssociations.logDeletion(e.getId());
+        removeEdgeById(e);
 
         getSource(e).decrementOutDegree();
         getTarget(e).decrementInDegree();
@@ -315,8 +321,10 @@ public class Graph extends GraphBase {
         if (lastEdge == e)
             lastEdge = (Edge) e.prev;
         numberEdges--;
-        if (numberEdges == 0)
+        if (numberEdges == 0) {
             maxEdgeId = 0;
+            edgeAssociations.logDeletionOfAll();
+        }
     }
 
     /**
@@ -337,8 +345,9 @@ public class Graph extends GraphBase {
      */
     void unregisterNode(Node v) {
         checkOwner(v);
-        deleteNodeFromArrays(v);
-        deleteNodeFromSets(v);
+        connectivityIndex = null;
+        nodeAssociations.logDeletion(v.getId());
+        removeNodeById(v);
         if (v.isHidden())
             numberOfNodesThatAreHidden--;
 
@@ -347,8 +356,10 @@ public class Graph extends GraphBase {
         if (lastNode == v)
             lastNode = (Node) v.prev;
         numberNodes--;
-        if (numberNodes == 0)
+        if (numberNodes == 0) {
             maxNodeId = 0;
+            nodeAssociations.logDeletionOfAll();
+        }
     }
 
     /**
@@ -370,6 +381,58 @@ public class Graph extends GraphBase {
         ignoreGraphHasChanged = false;
     }
 
+    /**
+     * deletes all given nodes in a single pass. Nodes that do not belong to this graph, or have already been deleted, are ignored.
+     * Graph-has-changed is fired once, at the end
+     *
+     * @param nodes nodes to delete
+     * @return number of nodes deleted
+     */
+    public int deleteNodes(Collection<Node> nodes) {
+        final var ignore = ignoreGraphHasChanged;
+        ignoreGraphHasChanged = true;
+        var count = 0;
+        try {
+            for (var v : nodes) {
+                if (v.getOwner() == this) {
+                    v.deleteNode();
+                    count++;
+                }
+            }
+        } finally {
+            ignoreGraphHasChanged = ignore;
+        }
+        if (count > 0)
+            fireGraphHasChanged();
+        return count;
+    }
+
+    /**
+     * deletes all given edges in a single pass. Edges that do not belong to this graph, or have already been deleted, are ignored.
+     * Graph-has-changed is fired once, at the end
+     *
+     * @param edges edges to delete
+     * @return number of edges deleted
+     */
+    public int deleteEdges(Collection<Edge> edges) {
+        final var ignore = ignoreGraphHasChanged;
+        ignoreGraphHasChanged = true;
+        var count = 0;
+        try {
+            for (var e : edges) {
+                if (e.getOwner() == this) {
+                    e.deleteEdge();
+                    count++;
+                }
+            }
+        } finally {
+            ignoreGraphHasChanged = ignore;
+        }
+        if (count > 0)
+            fireGraphHasChanged();
+        return count;
+    }
+
     /**
      * Clears the graph.
      */
@@ -414,6 +477,7 @@ public class Graph extends GraphBase {
             v.next = w;
             if (w != null)
                 w.prev = v;
+            connectivityIndex = null;
             fireGraphHasChanged();
         }
     }
@@ -436,6 +500,7 @@ public class Graph extends GraphBase {
             v.prev = w;
             if (w != null)
                 w.next = v;
+            connectivityIndex = null;
             fireGraphHasChanged();
         }
     }
@@ -979,9 +1044,10 @@ public class Graph extends GraphBase {
         if (oldEdge2newEdge == null)
             oldEdge2newEdge = src.newEdgeArray();
 
+        maxNodeId = src.maxNodeId; // so that temporary ids of new nodes don't clash with copied ids
         for (var v : src.nodes()) {
             Node w = newNode();
-            w.setId(v.getId());
+            changeId(w, v.getId());
             setInfo(w, src.getInfo(v));
             setData(w, src.getData(v));
             setLabel(w, src.getLabel(v));
@@ -989,13 +1055,14 @@ public class Graph extends GraphBase {
         }
         maxNodeId = src.maxNodeId;
 
+        maxEdgeId = src.maxEdgeId;
         for (var e : src.edges()) {
             Node p = oldNode2newNode.get(src.getSource(e));
             Node q = oldNode2newNode.get(src.getTarget(e));
             Edge f = null;
             try {
                 f = newEdge(p, q);
-                f.setId(e.getId());
+                changeId(f, e.getId());
             } catch (IllegalSelfEdgeException e1) {
                 Basic.caught(e1);
             }
@@ -1037,22 +1104,25 @@ public class Graph extends GraphBase {
 
         final Set<Edge> edges = new HashSet<>();// don't used an edge set here in multi-thread use
 
+        maxNodeId = src.maxNodeId; // so that temporary ids of new nodes don't clash with copied ids
         for (Node v : srcNodes) {
             Node w = newNode();
-            w.setId(v.getId());
+            changeId(w, v.getId());
             setInfo(w, src.getInfo(v));
             oldNode2newNode.put(v, w);
             for (Edge e : v.outEdges())
                 edges.add(e);
         }
+        maxNodeId = src.maxNodeId;
 
+        maxEdgeId = src.maxEdgeId;
         for (Edge e : edges) {
             final Node p = oldNode2newNode.get(e.getSource());
             final Node q = oldNode2newNode.get(e.getTarget());
             Edge f = null;
             try {
                 f = newEdge(p, q);
-                f.setId(e.getId());
+                changeId(f, e.getId());
             } catch (IllegalSelfEdgeException e1) {
                 Basic.caught(e1);
             }
@@ -1061,6 +1131,7 @@ public class Graph extends GraphBase {
             setInfo(f, src.getInfo(e));
             oldEdge2newEdge.put(e, f);
         }
+        maxEdgeId = src.maxEdgeId;
 
         // change all adjacencies to reflect order in old graph:
         for (Node v : srcNodes) {
@@ -1217,169 +1288,21 @@ public class Graph extends GraphBase {
     }
 
     /**
-     * called from constructor of NodeAssociation to register with graph
-     *
-     * @param array
-     */
-    void registerNodeArray(NodeArray<?> array) {
-        synchronized (nodeArrays) {
-            final List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<NodeArray<?>> ref : nodeArrays) {
-                if (ref.get() == null)
-                    toDelete.add(ref); // reference is dead
-            }
-            if (toDelete.size() > 0)
-                nodeArrays.removeAll(toDelete);
-            nodeArrays.add(new WeakReference<>(array));
-        }
-    }
-
-    /**
-     * called from deleteNode to clean all array entries for the node
-     *
-     * @param v
-     */
-    void deleteNodeFromArrays(Node v) {
-        checkOwner(v);
-        synchronized (nodeArrays) {
-            List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<NodeArray<?>> ref : nodeArrays) {
-                NodeArray<?> as = ref.get();
-                if (as == null)
-                    toDelete.add(ref); // reference is dead
-                else {
-                    as.put(v, null);
-                }
-            }
-            for (WeakReference ref : toDelete) {
-                nodeArrays.remove(ref);
-            }
-        }
-    }
-
-    /**
-     * called from constructor of NodeSet to register with graph
-     *
-     * @param set
-     */
-    void registerNodeSet(NodeSet set) {
-        synchronized (nodeSets) {
-            final List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<NodeSet> ref : nodeSets) {
-                if (ref.get() == null)
-                    toDelete.add(ref); // reference is dead
-            }
-            if (toDelete.size() > 0)
-                nodeSets.removeAll(toDelete);
-            nodeSets.add(new WeakReference<>(set));
-        }
-    }
-
-    /**
-     * called from deleteNode to clean all array entries for the node
-     *
-     * @param v
-     */
-    private void deleteNodeFromSets(Node v) {
-        checkOwner(v);
-        synchronized (nodeSets) {
-            final List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<NodeSet> ref : nodeSets) {
-                if (ref != null) {
-                    final NodeSet set = ref.get();
-                    if (set == null)
-                        toDelete.add(ref); // reference is dead
-                    else {
-                        set.remove(v);
-                    }
-                }
-            }
-            for (WeakReference ref : toDelete) {
-                nodeSets.remove(ref);
-            }
-        }
-    }
-
-    /**
-     * called from constructor of EdgeAssociation to register with graph
-     *
-     * @param array
-     */
-    void registerEdgeArray(EdgeArray<?> array) {
-        synchronized (edgeArrays) {
-            final List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<EdgeArray<?>> ref : edgeArrays) {
-                if (ref.get() == null)
-                    toDelete.add(ref); // reference is dead
-            }
-            if (toDelete.size() > 0)
-                edgeArrays.removeAll(toDelete);
-        }
-        edgeArrays.add(new WeakReference<>(array));
-    }
-
-    /**
-     * called from deleteEdge to clean all array entries for the edge
-     *
-     * @param edge
-     */
-    void deleteEdgeFromArrays(Edge edge) {
-        checkOwner(edge);
-        synchronized (edgeArrays) {
-            List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<EdgeArray<?>> ref : edgeArrays) {
-                EdgeArray<?> as = ref.get();
-                if (as == null)
-                    toDelete.add(ref); // reference is dead
-                else {
-                    as.put(edge, null);
-                }
-            }
-            for (WeakReference ref : toDelete) {
-                edgeArrays.remove(ref);
-            }
-        }
-    }
-
-    /**
-     * called from constructor of EdgeSet to register with graph
+     * called from constructors of node arrays and node sets to register with graph
      *
-     * @param set
+     * @param association
      */
-    void registerEdgeSet(EdgeSet set) {
-        synchronized (edgeSets) {
-            final List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<EdgeSet> ref : edgeSets) {
-                if (ref.get() == null)
-                    toDelete.add(ref); // reference is dead
-            }
-            if (toDelete.size() > 0)
-                edgeSets.removeAll(toDelete);
-            edgeSets.add(new WeakReference<>(set));
-        }
+    void registerNodeAssociation(Association association) {
+        nodeAssociations.register(association);
     }
 
     /**
-     * called from deleteEdge to clean all array entries for the edge
+     * called from constructors of edge arrays and edge sets to register with graph
      *
-     * @param e
+     * @param association
      */
-    void deleteEdgeFromSets(Edge e) {
-        checkOwner(e);
-        synchronized (edgeSets) {
-            List<WeakReference> toDelete = new LinkedList<>();
-            for (WeakReference<EdgeSet> ref : edgeSets) {
-                EdgeSet set = ref.get();
-                if (set == null)
-                    toDelete.add(ref); // reference is dead
-                else {
-                    set.remove(e);
-                }
-            }
-            for (WeakReference ref : toDelete) {
-                edgeSets.remove(ref);
-            }
-        }
+    void registerEdgeAssociation(Association association) {
+        edgeAssociations.register(association);
     }
 
     /**
@@ -1557,8 +1480,13 @@ public class Graph extends GraphBase {
         return StreamSupport.stream(edges(afterMe).spliterator(), false);
     }
 
+    /**
+     * gets a parallel edge stream. This is backed by a snapshot array of the edges, so that it splits evenly
+     *
+     * @return parallel stream
+     */
     public Stream<Edge> edgeParallelStream(Edge afterMe) {
-        return StreamSupport.stream(edges(afterMe).spliterator(), true);
+        return IteratorUtils.asParallelStream(edges(afterMe), getNumberOfEdges());
     }
 
     /**
@@ -1631,12 +1559,12 @@ public class Graph extends GraphBase {
     }
 
     /**
-     * gets a node stream
+     * gets a parallel node stream. This is backed by a snapshot array of the nodes, so that it splits evenly
      *
-     * @return
+     * @return parallel stream
      */
     public Stream<Node> nodeParallelStream(Node afterMe) {
-        return StreamSupport.stream(nodes(afterMe).spliterator(), true);
+        return IteratorUtils.asParallelStream(nodes(afterMe), getNumberOfNodes());
     }
 
 
@@ -1692,6 +1620,7 @@ public class Graph extends GraphBase {
                 previousNode.next = null;
             }
             lastNode = previousNode;
+            connectivityIndex = null;
         }
     }
 
@@ -1716,18 +1645,137 @@ public class Graph extends GraphBase {
         this.name = name;
     }
 
+    /**
+     * gets the node with the given id in constant time
+     *
+     * @param id node id
+     * @return node or null
+     */
     public Node findNodeById(int id) {
-        for (Node v : nodes())
-            if (v.getId() == id)
-                return v;
-        return null;
+        return id >= 0 && id < id2node.length ? id2node[id] : null;
     }
 
+    /**
+     * gets the edge with the given id in constant time
+     *
+     * @param id edge id
+     * @return edge or null
+     */
     public Edge findEdgeById(int id) {
-        for (Edge e : edges())
-            if (e.getId() == id)
-                return e;
-        return null;
+        return id >= 0 && id < id2edge.length ? id2edge[id] : null;
+    }
+
+    /**
+     * renumbers all nodes so that their ids are 1,...,n, in the order of the list of nodes (hidden nodes included).
+     * All node arrays and node sets of this graph are updated so that they keep their entries.
+     * Note that the hash code of a node is its id, so any hash-based collection of nodes must be rebuilt afterwards
+     *
+     * @return true, if any node id changed
+     */
+    public boolean compactNodeIds() {
+        var maxId = 0;
+        for (var v = firstNode; v != null; v = (Node) v.next)
+            maxId = Math.max(maxId, v.getId());
+        final int[] oldId2NewId = new int[maxId + 1];
+        var count = 0;
+        var changed = false;
+        for (var v = firstNode; v != null; v = (Node) v.next) {
+            oldId2NewId[v.getId()] = ++count;
+            if (v.getId() != count)
+                changed = true;
+        }
+        if (changed) {
+            nodeAssociations.reindexAll(oldId2NewId, count);
+            id2node = new Node[count + 1];
+            for (var v = firstNode; v != null; v = (Node) v.next) {
+                final var hidden = v.isHidden();
+                v.setId(oldId2NewId[v.getId()]);
+                v.setHidden(hidden);
+                id2node[v.getId()] = v;
+            }
+            fireGraphHasChanged();
+        }
+        maxNodeId = count;
+        return changed;
+    }
+
+    /**
+     * renumbers all edges so that their ids are 1,...,m, in the order of the list of edges (hidden edges included).
+     * All edge arrays and edge sets of this graph are updated so that they keep their entries.
+     * Note that the hash code of an edge is its id, so any hash-based collection of edges must be rebuilt afterwards
+     *
+     * @return true, if any edge id changed
+     */
+    public boolean compactEdgeIds() {
+        var maxId = 0;
+        for (var e = firstEdge; e != null; e = (Edge) e.next)
+            maxId = Math.max(maxId, e.getId());
+        final int[] oldId2NewId = new int[maxId + 1];
+        var count = 0;
+        var changed = false;
+        for (var e = firstEdge; e != null; e = (Edge) e.next) {
+            oldId2NewId[e.getId()] = ++count;
+            if (e.getId() != count)
+                changed = true;
+        }
+        if (changed) {
+            edgeAssociations.reindexAll(oldId2NewId, count);
+            id2edge = new Edge[count + 1];
+            for (var e = firstEdge; e != null; e = (Edge) e.next) {
+                final var hidden = e.isHidden();
+                e.setId(oldId2NewId[e.getId()]);
+                e.setHidden(hidden);
+                id2edge[e.getId()] = e;
+            }
+            fireGraphHasChanged();
+        }
+        maxEdgeId = count;
+        return changed;
+    }
+
+    /**
+     * changes the id of a node and updates the id table
+     */
+    private void changeId(Node v, int id) {
+        connectivityIndex = null;
+        removeNodeById(v);
+        v.setId(id);
+        putNodeById(v);
+    }
+
+    /**
+     * changes the id of an edge and updates the id table
+     */
+    private void changeId(Edge e, int id) {
+        removeEdgeById(e);
+        e.setId(id);
+        putEdgeById(e);
+    }
+
+    private void putNodeById(Node v) {
+        final int id = v.getId();
+        if (id >= id2node.length)
+            id2node = Arrays.copyOf(id2node, computeGrownLength(id2node.length, id));
+        id2node[id] = v;
+    }
+
+    private void removeNodeById(Node v) {
+        final int id = v.getId();
+        if (id < id2node.length && id2node[id] == v)
+            id2node[id] = null;
+    }
+
+    private void putEdgeById(Edge e) {
+        final int id = e.getId();
+        if (id >= id2edge.length)
+            id2edge = Arrays.copyOf(id2edge, computeGrownLength(id2edge.length, id));
+        id2edge[id] = e;
+    }
+
+    private void removeEdgeById(Edge e) {
+        final int id = e.getId();
+        if (id < id2edge.length && id2edge[id] == e)
+            id2edge[id] = null;
     }
 
     public NodeSet newNodeSet() {
@@ -1742,6 +1790,10 @@ public class Graph extends GraphBase {
         return new NodeIntArray(this);
     }
 
+    public NodeLongArray newNodeLongArray() {
+        return new NodeLongArray(this);
+    }
+
     public NodeFloatArray newNodeFloatArray() {
         return new NodeFloatArray(this);
     }
@@ -1750,6 +1802,10 @@ public class Graph extends GraphBase {
         return new NodeDoubleArray(this);
     }
 
+    public NodeBooleanArray newNodeBooleanArray() {
+        return new NodeBooleanArray(this);
+    }
+
     public EdgeSet newEdgeSet() {
         return new EdgeSet(this);
     }
@@ -1762,6 +1818,10 @@ public class Graph extends GraphBase {
         return new EdgeIntArray(this);
     }
 
+    public EdgeLongArray newEdgeLongArray() {
+        return new EdgeLongArray(this);
+    }
+
     public EdgeFloatArray newEdgeFloatArray() {
         return new EdgeFloatArray(this);
     }
@@ -1770,25 +1830,22 @@ public class Graph extends GraphBase {
         return new EdgeDoubleArray(this);
     }
 
+    public EdgeBooleanArray newEdgeBooleanArray() {
+        return new EdgeBooleanArray(this);
+    }
+
+    /**
+     * computes the connected components of this graph
+     *
+     * @param components is cleared and then set to the component id of each node, ids are 0..count-1
+     * @return number of components
+     */
     public int computeConnectedComponents(NodeIntArray components) {
         components.clear();
-        var count=0;
-        for(var v:nodes()) {
-            if(components.get(v)==null) {
-                final Stack<Node> stack=new Stack<>();
-                stack.push(v);
-                while(stack.size()>0) {
-                    v=stack.pop();
-                    components.put(v,count);
-                    for(var u:v.adjacentNodes()) {
-                        if(components.get(u)==null)
-                            stack.add(u);
-                    }
-                }
-                count++;
-            }
-        }
-        return count;
+        var index = getConnectivityIndex();
+        for (var i = 0; i < index.getNumberOfNodes(); i++)
+            components.set(index.getNode(i), index.getComponents()[i]);
+        return index.getNumberOfComponents();
     }
 
     /**
@@ -1860,7 +1917,7 @@ public class Graph extends GraphBase {
                 nodes.add(new HashSet<>());
             }
             for(var v:nodes()) {
-                nodes.get(component.get(v)).add(v);
+                nodes.get(component.getInt(v)).add(v);
             }
             for(int c=0;c<count;c++){
                 src2tar.putAll(extract(nodes.get(c), null, subGraphs.get(c)));
@@ -1869,35 +1926,32 @@ public class Graph extends GraphBase {
         return subGraphs;
     }
 
-    public boolean isSimple () {
-        var sortedEdges = getEdgesAsList();
-        sortedEdges.sort(Comparator.comparingInt(a -> Math.max(a.getSource().getId(), a.getTarget().getId())));
-        sortedEdges.sort(Comparator.comparingInt(a -> Math.min(a.getSource().getId(), a.getTarget().getId())));
-        Edge prev = null;
-        for (var e : sortedEdges) {
-            if (prev != null && (e.getSource() == prev.getSource() && e.getTarget() == prev.getTarget() || e.getSource() == prev.getTarget() && e.getTarget() == prev.getSource())) {
-                return false;
-            }
-            prev = e;
+    /**
+     * gets the connected components and simplicity of this graph. The index is cached and recomputed after any change of the nodes or edges
+     *
+     * @return connectivity index
+     */
+    public ConnectivityIndex getConnectivityIndex() {
+        var index = connectivityIndex;
+        if (index == null) {
+            index = new ConnectivityIndex(this);
+            connectivityIndex = index;
         }
-        return true;
+        return index;
+    }
+
+    /**
+     * @return true, if no two edges connect the same pair of nodes, ignoring direction
+     */
+    public boolean isSimple() {
+        return getConnectivityIndex().isSimple();
     }
 
+    /**
+     * @return true, if graph has at most one connected component
+     */
     public boolean isConnected() {
-        if (getNumberOfNodes() == 0)
-            return true;
-        var visited = newNodeSet();
-        var stack = new Stack<Node>();
-        stack.push(getFirstNode());
-        while (stack.size() > 0) {
-            var v = stack.pop();
-            visited.add(v);
-            for (var w : v.adjacentNodes()) {
-                if (!visited.contains(w))
-                    stack.push(w);
-            }
-        }
-        return visited.size() == getNumberOfNodes();
+        return getConnectivityIndex().isConnected();
     }
 
     /**
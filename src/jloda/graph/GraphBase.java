@@ -20,6 +20,8 @@
 
 package jloda.graph;
 
+import jloda.util.Basic;
+
 /**
  * graph base class
  * Daniel Huson, 2002
@@ -61,6 +63,22 @@ public class GraphBase {
             throw new NotOwnerException("wrong owner");
         }
     }
+
+    /**
+     * computes the new length of a backing array so that it contains the given index.
+     * Repeatedly doubles the current length, as done by NodeArray and EdgeArray
+     *
+     * @param length current length
+     * @param index  index to be included in array
+     * @return new length
+     */
+    static int computeGrownLength(int length, int index) {
+        int newSize = Math.max(1, 2 * length);
+        while (newSize <= index && 2L * newSize < (long) Basic.MAX_ARRAY_SIZE) {
+            newSize *= 2;
+        }
+        return Math.max(newSize, index + 1);
+    }
 }
 
 // EOF
@@ -20,6 +20,7 @@
 
 package jloda.graph;
 
+import jloda.util.IteratorUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -538,7 +539,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
     }
 
     public Stream<Edge> outEdgesStream(boolean parallel) {
-        return StreamSupport.stream(outEdges().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(outEdges(), outDegree) : StreamSupport.stream(outEdges().spliterator(), false);
     }
 
     public Iterable<Edge> inEdges() {
@@ -560,7 +561,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
     }
 
     public Stream<Edge> inEdgesStream(boolean parallel) {
-        return StreamSupport.stream(inEdges().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(inEdges(), inDegree) : StreamSupport.stream(inEdges().spliterator(), false);
     }
 
 
@@ -583,7 +584,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
     }
 
     public Stream<Edge> adjacentEdgesStream(boolean parallel) {
-        return StreamSupport.stream(adjacentEdges().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(adjacentEdges(), getDegree()) : StreamSupport.stream(adjacentEdges().spliterator(), false);
     }
 
     public Iterable<Node> adjacentNodes() {
@@ -605,7 +606,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
     }
 
     public Stream<Node> adjacentNodeStream(boolean parallel) {
-        return StreamSupport.stream(adjacentNodes().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(adjacentNodes(), getDegree()) : StreamSupport.stream(adjacentNodes().spliterator(), false);
     }
 
     public Iterable<Node> children() {
@@ -627,7 +628,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
     }
 
     public Stream<Node> childrenStream(boolean parallel) {
-        return StreamSupport.stream(children().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(children(), outDegree) : StreamSupport.stream(children().spliterator(), false);
     }
 
     public Iterable<Node> parents() {
@@ -650,7 +651,7 @@ public class Node extends NodeEdge implements Comparable<Node> {
 
 
     public Stream<Node> parentsStream(boolean parallel) {
-        return StreamSupport.stream(parents().spliterator(), parallel);
+        return parallel ? IteratorUtils.asParallelStream(parents(), inDegree) : StreamSupport.stream(parents().spliterator(), false);
     }
 
     public Node getParent() {
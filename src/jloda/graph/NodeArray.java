@@ -36,13 +36,42 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
     private T[] data;
     private int size = 0;
 
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            if (id < data.length && data[id] != null) {
+                data[id] = null;
+                size--;
+            }
+        }
+
+        @Override
+        void clearAllEntries() {
+            Arrays.fill(data, null);
+            size = 0;
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final T[] newData = (T[]) new Object[newMaxId + 1];
+            size = 0;
+            for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+                if (data[id] != null && oldId2NewId[id] > 0) {
+                    newData[oldId2NewId[id]] = data[id];
+                    size++;
+                }
+            }
+            data = newData;
+        }
+    };
+
     /**
      * Construct an node array with default value null
      */
     public NodeArray(Graph g) {
         setOwner(g);
         data = (T[]) new Object[g.getMaxNodeId() + 1];
-        g.registerNodeArray(this);
+        g.registerNodeAssociation(association);
     }
 
     /**
@@ -53,6 +82,15 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
         size = 0;
     }
 
+    /**
+     * Clear the entry for node v.
+     *
+     * @param v Node
+     */
+    public void clear(Node v) {
+        put(v, null);
+    }
+
     /**
      * Copy constructor.
      *
@@ -60,9 +98,11 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
      */
     public NodeArray(NodeArray<T> src) {
         setOwner(src.getOwner());
+        src.association.sync();
         data = (T[]) new Object[src.data.length];
         System.arraycopy(src.data, 0, data, 0, data.length);
-        size = src.size();
+        size = src.size;
+        getOwner().registerNodeAssociation(association);
     }
 
     /**
@@ -73,6 +113,7 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
      */
     public T put(Node a, T object) {
         checkOwner(a);
+        association.sync();
         int id = a.getId();
         if (id >= data.length) {
             if (object == null)
@@ -183,12 +224,13 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
 
     @Override
     public int size() {
+        association.sync();
         return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return size == 0;
+        return size() == 0;
     }
 
     @Override
@@ -225,6 +267,7 @@ public class NodeArray<T> extends GraphBase implements Iterable<T>, Map<Node, T>
     public T get(Object key) {
         if (key instanceof Node) {
             var a = (Node) key;
+            association.sync();
             checkOwner(a);
             if (a.getId() < data.length && data[a.getId()] != null)
                 return data[a.getId()];
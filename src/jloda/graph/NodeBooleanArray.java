@@ -0,0 +1,127 @@
+/*
+ * NodeBooleanArray.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import java.util.Arrays;
+
+/**
+ * Node boolean array, values are kept in a boolean[]
+ * Daniel Huson, 2021
+ */
+public class NodeBooleanArray extends PrimitiveNodeArray<Boolean> {
+    private boolean[] data;
+
+    /**
+     * Construct a node array with no entries set
+     */
+    public NodeBooleanArray(Graph g) {
+        super(g);
+        data = new boolean[g.getMaxNodeId() + 1];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param src NodeBooleanArray
+     */
+    public NodeBooleanArray(NodeBooleanArray src) {
+        super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
+    }
+
+    /**
+     * Get the entry for node v
+     *
+     * @param v Node
+     * @return value or false, if not set
+     */
+    public boolean getBoolean(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return id < data.length ? data[id] : false;
+    }
+
+    /**
+     * Set the entry for node v
+     *
+     * @param v     Node
+     * @param value value
+     */
+    public void set(Node v, boolean value) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all nodes.
+     *
+     * @param value value
+     */
+    public void setAll(boolean value) {
+        for (var v : getOwner().nodes())
+            set(v, value);
+    }
+
+    @Override
+    public Boolean get(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Boolean put(Node v, Boolean value) {
+        if (value == null)
+            clear(v);
+        else
+            set(v, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = false;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, false);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final boolean[] newData = new boolean[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
+    }
+}
+
+// EOF
@@ -20,40 +20,107 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
 
 /**
- * Node array
- * Daniel Huson, 2003
+ * Node double array, values are kept in a double[]
+ * Daniel Huson, 2003, 2021
  */
-
-public class NodeDoubleArray extends NodeArray<Double> {
+public class NodeDoubleArray extends PrimitiveNodeArray<Double> {
+    private double[] data;
 
     /**
-     * Construct a node array with default value null
+     * Construct a node array with no entries set
      */
     public NodeDoubleArray(Graph g) {
         super(g);
+        data = new double[g.getMaxNodeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src NodeArray
+     * @param src NodeDoubleArray
      */
-    public NodeDoubleArray(NodeArray<Double> src) {
-        this(src.getOwner());
-        getOwner().nodeStream().forEach(e -> put(e, src.get(e)));
+    public NodeDoubleArray(NodeDoubleArray src) {
+        super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
     /**
-     * Get the entry for node v or the default object
+     * Get the entry for node v
      *
      * @param v Node
-     * @return value or 0
+     * @return value or 0.0, if not set
      */
     public double getDouble(Node v) {
-        final Double value = get(v);
-        return value != null ? value : 0.0;
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return id < data.length ? data[id] : 0.0;
+    }
+
+    /**
+     * Set the entry for node v
+     *
+     * @param v     Node
+     * @param value value
+     */
+    public void set(Node v, double value) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all nodes.
+     *
+     * @param value value
+     */
+    public void setAll(double value) {
+        for (var v : getOwner().nodes())
+            set(v, value);
+    }
+
+    @Override
+    public Double get(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Double put(Node v, Double value) {
+        if (value == null)
+            clear(v);
+        else
+            set(v, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0.0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0.0);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final double[] newData = new double[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
     }
 }
 
@@ -20,36 +20,107 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
 
 /**
- * Node float array
- * Daniel Huson, 2003
+ * Node float array, values are kept in a float[]
+ * Daniel Huson, 2003, 2021
  */
+public class NodeFloatArray extends PrimitiveNodeArray<Float> {
+    private float[] data;
 
-public class NodeFloatArray extends NodeArray<Float> {
     /**
-     * Construct a node array with default value null
+     * Construct a node array with no entries set
      */
     public NodeFloatArray(Graph g) {
         super(g);
+        data = new float[g.getMaxNodeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src NodeArray
+     * @param src NodeFloatArray
      */
-    public NodeFloatArray(NodeArray<Float> src) {
+    public NodeFloatArray(NodeFloatArray src) {
         super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
+    /**
+     * Get the entry for node v
+     *
+     * @param v Node
+     * @return value or 0f, if not set
+     */
     public float getFloat(Node v) {
-        final Float value = get(v);
-        return value != null ? value : 0f;
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return id < data.length ? data[id] : 0f;
     }
 
+    /**
+     * Set the entry for node v
+     *
+     * @param v     Node
+     * @param value value
+     */
     public void set(Node v, float value) {
-        put(v, value);
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all nodes.
+     *
+     * @param value value
+     */
+    public void setAll(float value) {
+        for (var v : getOwner().nodes())
+            set(v, value);
+    }
+
+    @Override
+    public Float get(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Float put(Node v, Float value) {
+        if (value == null)
+            clear(v);
+        else
+            set(v, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0f;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0f);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final float[] newData = new float[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
     }
 }
 
@@ -20,44 +20,143 @@
 
 package jloda.graph;
 
+import java.util.Arrays;
 
 /**
- * Node integer array
- * Daniel Huson, 2003
+ * Node integer array, values are kept in an int[]
+ * Daniel Huson, 2003, 2021
  */
-
-public class NodeIntArray extends NodeArray<Integer> {
+public class NodeIntArray extends PrimitiveNodeArray<Integer> {
+    private int[] data;
 
     /**
-     * Construct a node array with default value null
+     * Construct a node array with no entries set
      */
     public NodeIntArray(Graph g) {
         super(g);
+        data = new int[g.getMaxNodeId() + 1];
     }
 
     /**
      * Copy constructor.
      *
-     * @param src NodeArray
+     * @param src NodeIntArray
      */
-    public NodeIntArray(NodeArray<Integer> src) {
+    public NodeIntArray(NodeIntArray src) {
         super(src);
+        data = Arrays.copyOf(src.data, src.data.length);
     }
 
-
     /**
-     * Get the entry for node v or the default object
+     * Get the entry for node v
      *
      * @param v Node
-     * @return value or 0
+     * @return value or 0, if not set
      */
     public int getInt(Node v) {
-        final Integer value = get(v);
-        return value != null ? value : 0;
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return id < data.length ? data[id] : 0;
     }
 
+    /**
+     * Set the entry for node v
+     *
+     * @param v     Node
+     * @param value value
+     */
     public void set(Node v, int value) {
-        put(v, value);
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        if (id >= data.length)
+            data = Arrays.copyOf(data, computeGrownLength(data.length, id));
+        data[id] = value;
+        setPresent(id);
+    }
+
+    /**
+     * Set the entry for all nodes.
+     *
+     * @param value value
+     */
+    public void setAll(int value) {
+        for (var v : getOwner().nodes())
+            set(v, value);
+    }
+
+    /**
+     * increase the count by one.
+     *
+     * @param v
+     */
+    public void increment(Node v) {
+        set(v, getInt(v) + 1);
+    }
+
+    /**
+     * increase the count by the given value
+     *
+     * @param v
+     */
+    public void increment(Node v, int value) {
+        set(v, getInt(v) + value);
+    }
+
+    /**
+     * decrease the count by one.
+     *
+     * @param v
+     */
+    public void decrement(Node v) {
+        set(v, getInt(v) - 1);
+    }
+
+    /**
+     * decrease the count by the given value
+     *
+     * @param v
+     */
+    public void decrement(Node v, int value) {
+        set(v, getInt(v) - value);
+    }
+
+    @Override
+    public Integer get(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        return isPresent(id) ? data[id] : null;
+    }
+
+    @Override
+    public Integer put(Node v, Integer value) {
+        if (value == null)
+            clear(v);
+        else
+            set(v, value);
+        return value;
+    }
+
+    @Override
+    void clearValue(int index) {
+        data[index] = 0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(data, 0);
+    }
+
+    @Override
+    void reindexValues(int[] oldId2NewId, int newLength) {
+        final int[] newData = new int[newLength];
+        for (int id = 0; id < data.length && id < oldId2NewId.length; id++) {
+            if (oldId2NewId[id] > 0)
+                newData[oldId2NewId[id]] = data[id];
+        }
+        data = newData;
     }
 }
 
@@ -31,6 +31,29 @@ import java.util.*;
 public class NodeSet extends GraphBase implements Set<Node> {
     private final BitSet bits;
 
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            bits.clear(id);
+        }
+
+        @Override
+        void clearAllEntries() {
+            bits.clear();
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final BitSet newBits = new BitSet();
+            for (int id = bits.nextSetBit(0); id != -1 && id < oldId2NewId.length; id = bits.nextSetBit(id + 1)) {
+                if (oldId2NewId[id] > 0)
+                    newBits.set(oldId2NewId[id]);
+            }
+            bits.clear();
+            bits.or(newBits);
+        }
+    };
+
     /**
      * Constructs a new empty NodeSet for Graph G.
      *
@@ -38,8 +61,8 @@ public class NodeSet extends GraphBase implements Set<Node> {
      */
     public NodeSet(Graph graph) {
         setOwner(graph);
-        graph.registerNodeSet(this);
         bits = new BitSet();
+        graph.registerNodeAssociation(association);
     }
 
     /**
@@ -49,6 +72,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      */
     public NodeSet(NodeSet other) {
         this(other.getOwner());
+        other.association.sync();
         this.bits.or(other.bits);
     }
 
@@ -59,6 +83,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return a boolean value
      */
     public boolean contains(Object v) {
+        association.sync();
         return v instanceof Node && bits.get(((Node) v).getId());
     }
 
@@ -69,6 +94,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return true, if new
      */
     public boolean add(Node v) {
+        association.sync();
         if (bits.get(getOwner().getId(v)))
             return false;
         else {
@@ -83,6 +109,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @param v Node
      */
     public boolean remove(Object v) {
+        association.sync();
         if (bits.get(getOwner().getId((Node) v))) {
             bits.set(getOwner().getId((Node) v), false);
             return true;
@@ -178,6 +205,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return true, if set changes
      */
     public boolean retainAll(final Collection<?> collection) {
+        association.sync();
         final int old = bits.cardinality();
         final BitSet newBits = new BitSet();
 
@@ -203,6 +231,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return true, if empty
      */
     public boolean isEmpty() {
+        association.sync();
         return bits.isEmpty();
     }
 
@@ -221,6 +250,7 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return size
      */
     public int size() {
+        association.sync();
         return bits.cardinality();
     }
 
@@ -366,6 +396,8 @@ public class NodeSet extends GraphBase implements Set<Node> {
      * @return true, if intersection is non-empty
      */
     public boolean intersects(NodeSet aset) {
+        association.sync();
+        aset.association.sync();
         return bits.intersects(aset.bits);
     }
 }
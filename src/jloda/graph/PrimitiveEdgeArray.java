@@ -0,0 +1,309 @@
+/*
+ * PrimitiveEdgeArray.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import jloda.util.IteratorUtils;
+
+import java.util.*;
+
+/**
+ * base class for edge arrays that keep their values in a primitive array.
+ * Subclasses provide allocation-free accessors, the boxed get and put methods and the map view are
+ * only provided for convenience. An entry that has never been set (or has been cleared) is reported as absent
+ * and reads as 0 or false
+ * Daniel Huson, 2021
+ *
+ * @param <T> the wrapper type of the primitive values, used by the boxed accessors
+ */
+public abstract class PrimitiveEdgeArray<T> extends GraphBase {
+    private final BitSet present;
+    private int size = 0;
+
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            if (present.get(id)) {
+                present.clear(id);
+                size--;
+                clearValue(id);
+            }
+        }
+
+        @Override
+        void clearAllEntries() {
+            present.clear();
+            size = 0;
+            clearValues();
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final BitSet newPresent = new BitSet();
+            for (int id = present.nextSetBit(0); id != -1 && id < oldId2NewId.length; id = present.nextSetBit(id + 1)) {
+                if (oldId2NewId[id] > 0)
+                    newPresent.set(oldId2NewId[id]);
+            }
+            present.clear();
+            present.or(newPresent);
+            size = present.cardinality();
+            reindexValues(oldId2NewId, newMaxId + 1);
+        }
+    };
+
+    /**
+     * construct an empty array and register it with the graph
+     */
+    PrimitiveEdgeArray(Graph g) {
+        setOwner(g);
+        present = new BitSet();
+        g.registerEdgeAssociation(association);
+    }
+
+    /**
+     * copy constructor
+     *
+     * @param src array to be copied
+     */
+    PrimitiveEdgeArray(PrimitiveEdgeArray<T> src) {
+        setOwner(src.getOwner());
+        src.sync();
+        present = (BitSet) src.present.clone();
+        size = src.size;
+        getOwner().registerEdgeAssociation(association);
+    }
+
+    /**
+     * gets the boxed value for edge e
+     *
+     * @param e edge
+     * @return value or null, if not set
+     */
+    public abstract T get(Edge e);
+
+    /**
+     * sets the value for edge e from a boxed value
+     *
+     * @param e     edge
+     * @param value value, or null to clear the entry
+     * @return the value
+     */
+    public abstract T put(Edge e, T value);
+
+    /**
+     * resets the value stored at the given index to 0 or false
+     */
+    abstract void clearValue(int index);
+
+    /**
+     * resets all stored values to 0 or false
+     */
+    abstract void clearValues();
+
+    /**
+     * moves all stored values to their new indices
+     */
+    abstract void reindexValues(int[] oldId2NewId, int newLength);
+
+    /**
+     * does the edge have an entry?
+     *
+     * @param e edge
+     * @return true, if value has been set for e
+     */
+    public boolean containsKey(Edge e) {
+        checkOwner(e);
+        sync();
+        return present.get(e.getId());
+    }
+
+    /**
+     * clear the entry for the given edge
+     *
+     * @param e edge
+     */
+    public void clear(Edge e) {
+        checkOwner(e);
+        sync();
+        final int id = e.getId();
+        if (present.get(id)) {
+            present.clear(id);
+            size--;
+            clearValue(id);
+        }
+    }
+
+    /**
+     * Clear all entries.
+     */
+    public void clear() {
+        present.clear();
+        size = 0;
+        clearValues();
+    }
+
+    /**
+     * number of edges that have an entry
+     *
+     * @return size
+     */
+    public int size() {
+        sync();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * get all edges that have an entry
+     */
+    public Iterable<Edge> keys() {
+        if (isEmpty())
+            return Collections::emptyIterator;
+        else
+            return () -> new Iterator<>() {
+                private Edge a = getOwner().getFirstEdge();
+
+                {
+                    while (a != null && !present.get(a.getId()))
+                        a = a.getNext();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return a != null;
+                }
+
+                @Override
+                public Edge next() {
+                    if (a == null)
+                        throw new NoSuchElementException();
+                    final Edge result = a;
+                    a = a.getNext();
+                    while (a != null && !present.get(a.getId()))
+                        a = a.getNext();
+                    return result;
+                }
+            };
+    }
+
+    public Set<Edge> keySet() {
+        return IteratorUtils.asSet(keys());
+    }
+
+    /**
+     * gets a map view of this array. Reading and writing through the view boxes all values
+     *
+     * @return map view backed by this array
+     */
+    public Map<Edge, T> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public T get(Object key) {
+                return key instanceof Edge && ((Edge) key).getOwner() == getOwner() ? PrimitiveEdgeArray.this.get((Edge) key) : null;
+            }
+
+            @Override
+            public T put(Edge key, T value) {
+                final T old = PrimitiveEdgeArray.this.get(key);
+                PrimitiveEdgeArray.this.put(key, value);
+                return old;
+            }
+
+            @Override
+            public T remove(Object key) {
+                final T old = get(key);
+                if (old != null)
+                    PrimitiveEdgeArray.this.clear((Edge) key);
+                return old;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return PrimitiveEdgeArray.this.size();
+            }
+
+            @Override
+            public void clear() {
+                PrimitiveEdgeArray.this.clear();
+            }
+
+            @Override
+            public Set<Entry<Edge, T>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<Edge, T>> iterator() {
+                        final Iterator<Edge> it = keys().iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+
+                            @Override
+                            public Entry<Edge, T> next() {
+                                final Edge e = it.next();
+                                return new jloda.util.Entry<>(e, PrimitiveEdgeArray.this.get(e));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return PrimitiveEdgeArray.this.size();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * applies all pending deletions of edges. Must be called before the stored values are accessed
+     */
+    final void sync() {
+        association.sync();
+    }
+
+    /**
+     * is there an entry at the given index?
+     */
+    boolean isPresent(int index) {
+        return present.get(index);
+    }
+
+    /**
+     * marks the given index as present
+     */
+    void setPresent(int index) {
+        if (!present.get(index)) {
+            present.set(index);
+            size++;
+        }
+    }
+}
+
+// EOF
@@ -0,0 +1,309 @@
+/*
+ * PrimitiveNodeArray.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph;
+
+import jloda.util.IteratorUtils;
+
+import java.util.*;
+
+/**
+ * base class for node arrays that keep their values in a primitive array.
+ * Subclasses provide allocation-free accessors, the boxed get and put methods and the map view are
+ * only provided for convenience. An entry that has never been set (or has been cleared) is reported as absent
+ * and reads as 0 or false
+ * Daniel Huson, 2021
+ *
+ * @param <T> the wrapper type of the primitive values, used by the boxed accessors
+ */
+public abstract class PrimitiveNodeArray<T> extends GraphBase {
+    private final BitSet present;
+    private int size = 0;
+
+    private final Association association = new Association() {
+        @Override
+        void clearEntry(int id) {
+            if (present.get(id)) {
+                present.clear(id);
+                size--;
+                clearValue(id);
+            }
+        }
+
+        @Override
+        void clearAllEntries() {
+            present.clear();
+            size = 0;
+            clearValues();
+        }
+
+        @Override
+        void reindex(int[] oldId2NewId, int newMaxId) {
+            final BitSet newPresent = new BitSet();
+            for (int id = present.nextSetBit(0); id != -1 && id < oldId2NewId.length; id = present.nextSetBit(id + 1)) {
+                if (oldId2NewId[id] > 0)
+                    newPresent.set(oldId2NewId[id]);
+            }
+            present.clear();
+            present.or(newPresent);
+            size = present.cardinality();
+            reindexValues(oldId2NewId, newMaxId + 1);
+        }
+    };
+
+    /**
+     * construct an empty array and register it with the graph
+     */
+    PrimitiveNodeArray(Graph g) {
+        setOwner(g);
+        present = new BitSet();
+        g.registerNodeAssociation(association);
+    }
+
+    /**
+     * copy constructor
+     *
+     * @param src array to be copied
+     */
+    PrimitiveNodeArray(PrimitiveNodeArray<T> src) {
+        setOwner(src.getOwner());
+        src.sync();
+        present = (BitSet) src.present.clone();
+        size = src.size;
+        getOwner().registerNodeAssociation(association);
+    }
+
+    /**
+     * gets the boxed value for node v
+     *
+     * @param v node
+     * @return value or null, if not set
+     */
+    public abstract T get(Node v);
+
+    /**
+     * sets the value for node v from a boxed value
+     *
+     * @param v     node
+     * @param value value, or null to clear the entry
+     * @return the value
+     */
+    public abstract T put(Node v, T value);
+
+    /**
+     * resets the value stored at the given index to 0 or false
+     */
+    abstract void clearValue(int index);
+
+    /**
+     * resets all stored values to 0 or false
+     */
+    abstract void clearValues();
+
+    /**
+     * moves all stored values to their new indices
+     */
+    abstract void reindexValues(int[] oldId2NewId, int newLength);
+
+    /**
+     * does the node have an entry?
+     *
+     * @param v node
+     * @return true, if value has been set for v
+     */
+    public boolean containsKey(Node v) {
+        checkOwner(v);
+        sync();
+        return present.get(v.getId());
+    }
+
+    /**
+     * clear the entry for the given node
+     *
+     * @param v node
+     */
+    public void clear(Node v) {
+        checkOwner(v);
+        sync();
+        final int id = v.getId();
+        if (present.get(id)) {
+            present.clear(id);
+            size--;
+            clearValue(id);
+        }
+    }
+
+    /**
+     * Clear all entries.
+     */
+    public void clear() {
+        present.clear();
+        size = 0;
+        clearValues();
+    }
+
+    /**
+     * number of nodes that have an entry
+     *
+     * @return size
+     */
+    public int size() {
+        sync();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * get all nodes that have an entry
+     */
+    public Iterable<Node> keys() {
+        if (isEmpty())
+            return Collections::emptyIterator;
+        else
+            return () -> new Iterator<>() {
+                private Node a = getOwner().getFirstNode();
+
+                {
+                    while (a != null && !present.get(a.getId()))
+                        a = a.getNext();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return a != null;
+                }
+
+                @Override
+                public Node next() {
+                    if (a == null)
+                        throw new NoSuchElementException();
+                    final Node result = a;
+                    a = a.getNext();
+                    while (a != null && !present.get(a.getId()))
+                        a = a.getNext();
+                    return result;
+                }
+            };
+    }
+
+    public Set<Node> keySet() {
+        return IteratorUtils.asSet(keys());
+    }
+
+    /**
+     * gets a map view of this array. Reading and writing through the view boxes all values
+     *
+     * @return map view backed by this array
+     */
+    public Map<Node, T> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public T get(Object key) {
+                return key instanceof Node && ((Node) key).getOwner() == getOwner() ? PrimitiveNodeArray.this.get((Node) key) : null;
+            }
+
+            @Override
+            public T put(Node key, T value) {
+                final T old = PrimitiveNodeArray.this.get(key);
+                PrimitiveNodeArray.this.put(key, value);
+                return old;
+            }
+
+            @Override
+            public T remove(Object key) {
+                final T old = get(key);
+                if (old != null)
+                    PrimitiveNodeArray.this.clear((Node) key);
+                return old;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return PrimitiveNodeArray.this.size();
+            }
+
+            @Override
+            public void clear() {
+                PrimitiveNodeArray.this.clear();
+            }
+
+            @Override
+            public Set<Entry<Node, T>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<Node, T>> iterator() {
+                        final Iterator<Node> it = keys().iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+
+                            @Override
+                            public Entry<Node, T> next() {
+                                final Node v = it.next();
+                                return new jloda.util.Entry<>(v, PrimitiveNodeArray.this.get(v));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return PrimitiveNodeArray.this.size();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * applies all pending deletions of nodes. Must be called before the stored values are accessed
+     */
+    final void sync() {
+        association.sync();
+    }
+
+    /**
+     * is there an entry at the given index?
+     */
+    boolean isPresent(int index) {
+        return present.get(index);
+    }
+
+    /**
+     * marks the given index as present
+     */
+    void setPresent(int index) {
+        if (!present.get(index)) {
+            present.set(index);
+            size++;
+        }
+    }
+}
+
+// EOF
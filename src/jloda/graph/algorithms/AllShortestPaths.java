@@ -24,84 +24,247 @@ import jloda.graph.Graph;
 import jloda.graph.Node;
 import jloda.graph.NodeIntArray;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
- * provides all shortest paths
- * Adapted from: http://underpop.online.fr/j/java/help/all-pairs-shortest-paths.html
+ * provides all shortest paths in an undirected graph, computed either by the algorithm of Floyd and Warshall,
+ * or, for sparse graphs, by running Dijkstra's algorithm (or breadth-first search, for unit weights) from every node in parallel.
+ * Distances are stored in a flat upper-triangular array and the next node on a shortest path in a flat array of node indices
+ * Floyd-Warshall adapted from: http://underpop.online.fr/j/java/help/all-pairs-shortest-paths.html
  * Daniel Huson, 3.2021
  */
 public class AllShortestPaths {
+    public enum Method {FloydWarshall, Dijkstra, Automatic}
+
+    private final Node[] nodes;
     private final NodeIntArray node2index;
-    private final Edge[][] path;
-    private final double[][] distances;
+    private final Function<Edge, ? extends Number> weights;
+    private final double[] distances; // distance between s<t is at triangleIndex(s,t)
+    private final int[] nextHop; // next node on shortest path from s to t is at s*n+t, or -1. Null, if not computed
 
     public AllShortestPaths(Graph graph) {
         this(graph, null);
     }
 
     public AllShortestPaths(Graph graph, Function<Edge, ? extends Number> weights) {
+        this(graph, weights, Method.Automatic, true, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * constructor
+     *
+     * @param graph           the graph, edges are considered undirected
+     * @param weights         non-negative edge weights, or null, for unit weights
+     * @param method          method to use. Automatic uses Floyd-Warshall only for dense graphs
+     * @param computeNextHops compute next nodes on shortest paths, which requires n*n ints, as needed by path() and getNextNode()
+     * @param numberOfThreads number of threads to use by Dijkstra's algorithm
+     */
+    public AllShortestPaths(Graph graph, Function<Edge, ? extends Number> weights, Method method, boolean computeNextHops, int numberOfThreads) {
         final var n = graph.getNumberOfNodes();
+        this.weights = weights;
         node2index = graph.newNodeIntArray();
-        var nodes = new Node[n];
+        nodes = new Node[n];
         {
             var index = 0;
             for (var v : graph.nodes()) {
-                node2index.put(v, index);
+                node2index.set(v, index);
                 nodes[index++] = v;
             }
         }
-        path = new Edge[n][n];
-        distances = new double[n][n];
 
-        for (var s = 0; s < n; s++) {
-            for (var t = 0; t < n; t++) {
-                if (s != t)
-                    distances[s][t] = Double.MAX_VALUE;
-            }
-        }
+        if ((long) n * (n - 1) / 2 > Integer.MAX_VALUE - 8 || (computeNextHops && (long) n * n > Integer.MAX_VALUE - 8))
+            throw new IllegalArgumentException("Too many nodes: " + n);
+        distances = new double[n * (n - 1) / 2];
+        nextHop = (computeNextHops ? new int[n * n] : null);
+
+        if (method == Method.Automatic)
+            method = ((long) graph.getNumberOfEdges() * (32 - Integer.numberOfLeadingZeros(n)) < (long) n * n ? Method.Dijkstra : Method.FloydWarshall);
+
+        if (method == Method.FloydWarshall)
+            computeFloydWarshall(graph);
+        else
+            computeDijkstra(graph, numberOfThreads);
+    }
+
+    /**
+     * the algorithm of Floyd and Warshall, O(n^3)
+     */
+    private void computeFloydWarshall(Graph graph) {
+        final var n = nodes.length;
+        final var next = new int[n][n];
+        final var dist = new double[n][n];
 
         for (var s = 0; s < n; s++) {
-            for (var t = 0; t < n; t++) {
-                if (s != t) {
-                    var e = nodes[s].getCommonEdge(nodes[t]);
-                    if (e != null) {
-                        path[s][t] = e;
-                        distances[s][t] = weights != null ? weights.apply(e).doubleValue() : 1.0;
-                    }
-                }
+            Arrays.fill(next[s], -1);
+            Arrays.fill(dist[s], Double.MAX_VALUE);
+            dist[s][s] = 0;
+        }
+        for (var e : graph.edges()) {
+            final var s = node2index.getInt(e.getSource());
+            final var t = node2index.getInt(e.getTarget());
+            final var weight = (weights != null ? weights.apply(e).doubleValue() : 1.0);
+            if (s != t && weight < dist[s][t]) {
+                dist[s][t] = dist[t][s] = weight;
+                next[s][t] = t;
+                next[t][s] = s;
             }
         }
+
         for (var i = 0; i < n; i++)
             for (var s = 0; s < n; s++)
-                if (path[s][i] != null)
+                if (next[s][i] != -1)
                     for (var t = 0; t < n; t++)
                         if (s != t)
-                            if (distances[s][t] > distances[s][i] + distances[i][t]) {
-                                path[s][t] = path[s][i];
-                                distances[s][t] = distances[s][i] + distances[i][t];
+                            if (dist[s][t] > dist[s][i] + dist[i][t]) {
+                                next[s][t] = next[s][i];
+                                dist[s][t] = dist[s][i] + dist[i][t];
                             }
+
+        for (var s = 0; s < n; s++) {
+            for (var t = s + 1; t < n; t++)
+                distances[triangleIndex(s, t)] = dist[s][t];
+            if (nextHop != null)
+                System.arraycopy(next[s], 0, nextHop, s * n, n);
+        }
+    }
+
+    /**
+     * runs Dijkstra's algorithm from every node, one source at a time per thread. As the graph is undirected, the predecessor of t in the
+     * tree of shortest paths from s is the next node on the shortest path from t to s. So each source writes its own set of entries
+     */
+    private void computeDijkstra(Graph graph, int numberOfThreads) {
+        final var n = nodes.length;
+        final var dijkstra = new Dijkstra(graph, weights, false);
+        final var nextSource = new AtomicInteger(0);
+        final var toDijkstra = new int[n];
+        final var fromDijkstra = new int[n];
+        for (var i = 0; i < n; i++) {
+            toDijkstra[i] = dijkstra.getIndex(nodes[i]);
+            fromDijkstra[toDijkstra[i]] = i;
+        }
+
+        final Runnable task = () -> {
+            final var dist = new double[n];
+            final var predecessors = new int[n];
+            for (var s = nextSource.getAndIncrement(); s < n; s = nextSource.getAndIncrement()) {
+                dijkstra.computeAll(toDijkstra[s], dist, predecessors);
+                for (var t = s + 1; t < n; t++) {
+                    final var d = dist[toDijkstra[t]];
+                    distances[triangleIndex(s, t)] = (d == Double.POSITIVE_INFINITY ? Double.MAX_VALUE : d);
+                }
+                if (nextHop != null) {
+                    for (var t = 0; t < n; t++) {
+                        final var p = predecessors[toDijkstra[t]];
+                        nextHop[t * n + s] = (p == -1 ? -1 : fromDijkstra[p]);
+                    }
+                }
+            }
+        };
+
+        if (numberOfThreads <= 1 || n < 2)
+            task.run();
+        else {
+            final var service = Executors.newFixedThreadPool(Math.min(numberOfThreads, n));
+            try {
+                final var futures = new ArrayList<Future<?>>();
+                for (var i = 0; i < Math.min(numberOfThreads, n); i++)
+                    futures.add(service.submit(task));
+                for (var future : futures)
+                    future.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                service.shutdownNow();
+            }
+        }
+    }
+
+    private int triangleIndex(int s, int t) {
+        if (s > t)
+            return triangleIndex(t, s);
+        return (int) ((long) s * (2 * nodes.length - s - 1) / 2 + (t - s - 1));
     }
 
+    /**
+     * gets the first edge on a shortest path from s to t
+     *
+     * @return edge or null, if s=t or t is not reachable from s
+     */
     public Edge path(Node s, Node t) {
-        return path[node2index.get(s)][node2index.get(t)];
+        final var next = getNextNode(s, t);
+        if (next == null)
+            return null;
+        Edge best = null;
+        var bestWeight = Double.MAX_VALUE;
+        for (var e : s.adjacentEdges()) {
+            if (e.getOpposite(s) == next) {
+                final var weight = (weights != null ? weights.apply(e).doubleValue() : 1.0);
+                if (best == null || weight < bestWeight) {
+                    best = e;
+                    bestWeight = weight;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * gets the next node on a shortest path from s to t
+     *
+     * @return node or null, if s=t or t is not reachable from s
+     */
+    public Node getNextNode(Node s, Node t) {
+        if (nextHop == null)
+            throw new IllegalStateException("next hops not computed");
+        final var next = nextHop[node2index.getInt(s) * nodes.length + node2index.getInt(t)];
+        return (next == -1 ? null : nodes[next]);
     }
 
+    /**
+     * gets the distance from s to t
+     *
+     * @return distance, or Double.MAX_VALUE, if t is not reachable from s
+     */
     public double getDistance(Node s, Node t) {
-        return distances[node2index.get(s)][node2index.get(t)];
+        final var i = node2index.getInt(s);
+        final var j = node2index.getInt(t);
+        return (i == j ? 0 : distances[triangleIndex(i, j)]);
     }
 
+    /**
+     * gets all distances as a matrix, indexed by the order of nodes in the graph. This allocates a full n*n matrix
+     */
     public double[][] getDistances() {
+        final var n = nodes.length;
+        final var matrix = new double[n][n];
+        for (var s = 0; s < n; s++) {
+            for (var t = s + 1; t < n; t++) {
+                matrix[s][t] = matrix[t][s] = distances[triangleIndex(s, t)];
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * gets the upper-triangular distances, the distance between the i-th and j-th node, for i<j, is at index i*(2n-i-1)/2+(j-i-1)
+     */
+    public double[] getTriangularDistances() {
         return distances;
     }
 
     public static double[][] apply(Graph graph) {
-        var algorithm = new AllShortestPaths(graph);
+        var algorithm = new AllShortestPaths(graph, null, Method.Automatic, false, Runtime.getRuntime().availableProcessors());
         return algorithm.getDistances();
     }
 
     public static double[][] apply(Graph graph, Function<Edge, ? extends Number> weights) {
-        var algorithm = new AllShortestPaths(graph, weights);
+        var algorithm = new AllShortestPaths(graph, weights, Method.Automatic, false, Runtime.getRuntime().availableProcessors());
         return algorithm.getDistances();
     }
-}
\ No newline at end of file
+}
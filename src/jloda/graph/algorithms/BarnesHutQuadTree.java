@@ -0,0 +1,247 @@
+/*
+ * BarnesHutQuadTree.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * mass-aggregating quad tree used to approximate repulsive forces following Barnes and Hut (1986).
+ * All cells are kept in flat primitive arrays, so the tree can be rebuilt in every iteration of a layout
+ * without allocating objects. Each cell keeps the number of points and the sum of their coordinates
+ * Daniel Huson, 2021
+ */
+final class BarnesHutQuadTree {
+    private static final int MAX_DEPTH = 48; // points that are closer than this are aggregated into a single leaf
+    private static final int STACK_SIZE = 3 * MAX_DEPTH + 8;
+
+    private float[] centerX = new float[64];
+    private float[] centerY = new float[64];
+    private float[] halfSize = new float[64];
+    private double[] sumX = new double[64];
+    private double[] sumY = new double[64];
+    private int[] count = new int[64];
+    private int[] firstChild = new int[64]; // index of first of four consecutive children, or -1, if leaf
+    private int[] point = new int[64]; // index of single point in leaf, or -1
+    private int numberOfCells;
+
+    private float[] x;
+    private float[] y;
+
+    /**
+     * builds the tree for the given points
+     *
+     * @param x x-coordinates
+     * @param y y-coordinates
+     * @param n number of points
+     */
+    void build(float[] x, float[] y, int n) {
+        this.x = x;
+        this.y = y;
+        numberOfCells = 0;
+        if (n == 0)
+            return;
+
+        var minX = Float.MAX_VALUE;
+        var minY = Float.MAX_VALUE;
+        var maxX = -Float.MAX_VALUE;
+        var maxY = -Float.MAX_VALUE;
+        for (var i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        final var half = 0.5f * Math.max(maxX - minX, maxY - minY) * 1.001f + 1e-3f;
+        newCell(0.5f * (minX + maxX), 0.5f * (minY + maxY), half);
+
+        for (var i = 0; i < n; i++)
+            insert(i);
+    }
+
+    /**
+     * adds the repulsive force exerted on point v by all other points, using k^2/d for two points at distance d
+     *
+     * @param v       the point
+     * @param kSquared the square of the optimal distance
+     * @param theta   accuracy parameter: a cell of width w at distance d is treated as a single mass, if w/d is less than theta
+     * @param stack   scratch array obtained from createStack(), one per thread
+     * @param force   the x- and y-component of the force are added to force[0] and force[1]
+     */
+    void addRepulsiveForce(int v, float kSquared, float theta, int[] stack, double[] force) {
+        if (numberOfCells == 0)
+            return;
+        final float px = x[v];
+        final float py = y[v];
+        final float thetaSquared = theta * theta;
+        var fx = 0.0;
+        var fy = 0.0;
+
+        var top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            final var cell = stack[--top];
+            final var m = count[cell];
+            if (m == 0)
+                continue;
+            if (firstChild[cell] == -1) { // leaf
+                final var p = point[cell];
+                if (p == v)
+                    continue;
+                final double dx;
+                final double dy;
+                final int mass;
+                if (p != -1) {
+                    dx = px - x[p];
+                    dy = py - y[p];
+                    mass = 1;
+                } else if (contains(cell, px, py)) { // aggregated leaf that may contain v, so remove v
+                    mass = m - 1;
+                    if (mass == 0)
+                        continue;
+                    dx = px - (sumX[cell] - px) / mass;
+                    dy = py - (sumY[cell] - py) / mass;
+                } else {
+                    mass = m;
+                    dx = px - sumX[cell] / m;
+                    dy = py - sumY[cell] / m;
+                }
+                final var dist = Math.sqrt(dx * dx + dy * dy);
+                if (dist > 0) {
+                    final var f = mass * kSquared / dist;
+                    fx += dx / dist * f;
+                    fy += dy / dist * f;
+                }
+            } else {
+                final var dx = px - sumX[cell] / m;
+                final var dy = py - sumY[cell] / m;
+                final var distSquared = dx * dx + dy * dy;
+                final var width = 2 * halfSize[cell];
+                if (width * width < thetaSquared * distSquared && !contains(cell, px, py)) {
+                    final var dist = Math.sqrt(distSquared);
+                    final var f = m * kSquared / dist;
+                    fx += dx / dist * f;
+                    fy += dy / dist * f;
+                } else {
+                    final var child = firstChild[cell];
+                    stack[top++] = child;
+                    stack[top++] = child + 1;
+                    stack[top++] = child + 2;
+                    stack[top++] = child + 3;
+                }
+            }
+        }
+        force[0] += fx;
+        force[1] += fy;
+    }
+
+    /**
+     * create a scratch stack for addRepulsiveForce
+     */
+    static int[] createStack() {
+        return new int[STACK_SIZE];
+    }
+
+    int getNumberOfCells() {
+        return numberOfCells;
+    }
+
+    private void insert(int p) {
+        final var px = x[p];
+        final var py = y[p];
+        var cell = 0;
+        var depth = 0;
+        while (true) {
+            if (firstChild[cell] == -1) {
+                if (count[cell] == 0) {
+                    point[cell] = p;
+                    add(cell, px, py);
+                    return;
+                } else if (depth == MAX_DEPTH) {
+                    point[cell] = -1;
+                    add(cell, px, py);
+                    return;
+                } else { // split leaf and move its point down
+                    final var other = point[cell];
+                    split(cell);
+                    point[cell] = -1;
+                    final var child = selectChild(cell, x[other], y[other]);
+                    point[child] = other;
+                    add(child, x[other], y[other]);
+                }
+            }
+            add(cell, px, py);
+            cell = selectChild(cell, px, py);
+            depth++;
+        }
+    }
+
+    private void add(int cell, float px, float py) {
+        count[cell]++;
+        sumX[cell] += px;
+        sumY[cell] += py;
+    }
+
+    private int selectChild(int cell, float px, float py) {
+        return firstChild[cell] + (px >= centerX[cell] ? 1 : 0) + (py >= centerY[cell] ? 2 : 0);
+    }
+
+    private boolean contains(int cell, float px, float py) {
+        final var half = halfSize[cell];
+        return Math.abs(px - centerX[cell]) <= half && Math.abs(py - centerY[cell]) <= half;
+    }
+
+    private void split(int cell) {
+        final var half = 0.5f * halfSize[cell];
+        final var cx = centerX[cell];
+        final var cy = centerY[cell];
+        final var first = newCell(cx - half, cy - half, half);
+        newCell(cx + half, cy - half, half);
+        newCell(cx - half, cy + half, half);
+        newCell(cx + half, cy + half, half);
+        firstChild[cell] = first;
+    }
+
+    private int newCell(float cx, float cy, float half) {
+        if (numberOfCells == count.length) {
+            final var length = 2 * count.length;
+            centerX = Arrays.copyOf(centerX, length);
+            centerY = Arrays.copyOf(centerY, length);
+            halfSize = Arrays.copyOf(halfSize, length);
+            sumX = Arrays.copyOf(sumX, length);
+            sumY = Arrays.copyOf(sumY, length);
+            count = Arrays.copyOf(count, length);
+            firstChild = Arrays.copyOf(firstChild, length);
+            point = Arrays.copyOf(point, length);
+        }
+        final var cell = numberOfCells++;
+        centerX[cell] = cx;
+        centerY[cell] = cy;
+        halfSize[cell] = half;
+        sumX[cell] = 0;
+        sumY[cell] = 0;
+        count[cell] = 0;
+        firstChild[cell] = -1;
+        point[cell] = -1;
+        return cell;
+    }
+}
+
+// EOF
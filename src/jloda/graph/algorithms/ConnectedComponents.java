@@ -19,9 +19,12 @@
 
 package jloda.graph.algorithms;
 
+import jloda.graph.Edge;
 import jloda.graph.Graph;
 import jloda.graph.Node;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -35,30 +38,35 @@ public class ConnectedComponents {
      * @return connected components
      */
     public static int count(Graph graph) {
-        var result = 0;
-        var used = graph.newNodeSet();
-
-        for (var v : graph.nodes()) {
-            if (!used.contains(v)) {
-                collect(v, used);
-                result++;
-            }
-        }
-        return result;
+        return graph.getConnectivityIndex().getNumberOfComponents();
     }
 
     /**
-     * visit all nodes in a connected component
+     * visit all nodes in a connected component, in depth-first order
      *
      * @param v
      * @param used
      */
     public static void collect(Node v, Set<Node> used) {
         used.add(v);
-        for (var e : v.adjacentEdges()) {
-            var w = e.getOpposite(v);
-            if (!used.contains(w))
-                collect(w, used);
+        final var stack = new ArrayList<Iterator<Edge>>();
+        stack.add(v.adjacentEdges().iterator());
+        final var nodes = new ArrayList<Node>();
+        nodes.add(v);
+        while (!stack.isEmpty()) {
+            final var top = stack.size() - 1;
+            final var it = stack.get(top);
+            if (it.hasNext()) {
+                var w = it.next().getOpposite(nodes.get(top));
+                if (!used.contains(w)) {
+                    used.add(w);
+                    stack.add(w.adjacentEdges().iterator());
+                    nodes.add(w);
+                }
+            } else {
+                stack.remove(top);
+                nodes.remove(top);
+            }
         }
     }
 }
@@ -25,6 +25,8 @@ import jloda.graph.NodeIntArray;
 import jloda.graph.NodeSet;
 import jloda.util.Counter;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.function.Function;
 
 /**
@@ -45,33 +47,59 @@ public class CutPoints {
         var result = graph.newNodeSet();
 
         for (var v : graph.nodes()) {
-            if (tin.get(v) == null && useNode.apply(v))
-                dfs(v, null, timer, tin, low, useNode, result);
+            if (!tin.containsKey(v) && useNode.apply(v))
+                dfs(v, timer, tin, low, useNode, result);
         }
         return result;
     }
 
-    private static void dfs(Node v, Node p, Counter timer, NodeIntArray tin, NodeIntArray low, Function<Node, Boolean> useNode, NodeSet result) {
-        var t = (int) timer.getAndIncrement();
-        tin.put(v, t);
-        low.put(v, t);
-        var children = 0;
-        for (var to : v.adjacentNodes()) {
-            if (!useNode.apply(to) || to == p)
-                continue;
-            if (tin.get(to) != null) { // already visited
-                low.put(v, Math.min(low.get(v), low.get(to)));
-            } else {
-                dfs(to, v, timer, tin, low, useNode, result);
-                low.put(v, Math.min(low.get(v), low.get(to)));
-                if (low.get(to) >= tin.get(v) && p != null) {
-                    result.add(v);
+    /**
+     * iterative depth-first search from root, computing entry times and low values and adding all cut points to the result
+     */
+    private static void dfs(Node root, Counter timer, NodeIntArray tin, NodeIntArray low, Function<Node, Boolean> useNode, NodeSet result) {
+        final var nodes = new ArrayList<Node>();
+        final var iterators = new ArrayList<Iterator<Node>>();
+
+        enter(root, timer, tin, low, nodes, iterators);
+        var rootChildren = 0;
+
+        while (!nodes.isEmpty()) {
+            final var top = nodes.size() - 1;
+            final var v = nodes.get(top);
+            final var p = (top > 0 ? nodes.get(top - 1) : null);
+            final var it = iterators.get(top);
+            if (it.hasNext()) {
+                final var to = it.next();
+                if (!useNode.apply(to) || to == p)
+                    continue;
+                if (tin.containsKey(to)) { // already visited
+                    low.set(v, Math.min(low.getInt(v), low.getInt(to)));
+                } else {
+                    enter(to, timer, tin, low, nodes, iterators);
+                    if (p == null)
+                        rootChildren++;
+                }
+            } else { // return from v to p
+                nodes.remove(top);
+                iterators.remove(top);
+                if (p != null) {
+                    low.set(p, Math.min(low.getInt(p), low.getInt(v)));
+                    if (low.getInt(v) >= tin.getInt(p) && top > 1) {
+                        result.add(p);
+                    }
                 }
-                children++;
             }
         }
-        if (p == null && children > 1) {
-            result.add(v);
+        if (rootChildren > 1) {
+            result.add(root);
         }
     }
+
+    private static void enter(Node v, Counter timer, NodeIntArray tin, NodeIntArray low, ArrayList<Node> nodes, ArrayList<Iterator<Node>> iterators) {
+        var t = (int) timer.getAndIncrement();
+        tin.set(v, t);
+        low.set(v, t);
+        nodes.add(v);
+        iterators.add(v.adjacentNodes().iterator());
+    }
 }
@@ -22,73 +22,408 @@ package jloda.graph.algorithms;
 
 import jloda.graph.*;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.*;
 import java.util.function.Function;
 
 /**
- * Dijkstras algorithm for single source shortest path, non-negative edge lengths
+ * Dijkstras algorithm for single source shortest path, non-negative edge lengths.
+ * <p>
+ * The graph is copied into adjacency arrays over node indices 0..n-1, and distances are kept in double arrays and an indexed binary heap
+ * with decrease-key, or, for unit weights, in a breadth-first search. Supports point-to-point queries that stop as soon as the sink is settled, bidirectional point-to-point queries,
+ * and single-source queries that return all distances and the tree of shortest paths.
+ * Once constructed, an instance can be used by multiple threads concurrently. It does not reflect later changes to the graph
  *
  * @author huson
  * Date: 11-Dec-2004
  */
 public class Dijkstra {
+    private final Node[] nodes;
+    private final NodeIntArray node2index;
+
+    private final int[] outStart; // edges leaving node i are outStart[i]..outStart[i+1]-1
+    private final int[] outNode;
+    private final double[] outWeight;
+
+    private final int[] inStart; // edges entering node i, same arrays as for outgoing edges, if undirected
+    private final int[] inNode;
+    private final double[] inWeight;
+
+    private final boolean unitWeights;
+
+    /**
+     * constructor for directed shortest paths
+     *
+     * @param graph   the graph
+     * @param weights non-negative edge weights, or null, for unit weights
+     */
+    public Dijkstra(Graph graph, Function<Edge, ? extends Number> weights) {
+        this(graph, weights, true);
+    }
+
+    /**
+     * constructor
+     *
+     * @param graph    the graph
+     * @param weights  non-negative edge weights, or null, for unit weights
+     * @param directed if true, edges are only followed from source to target, otherwise in both directions
+     */
+    public Dijkstra(Graph graph, Function<Edge, ? extends Number> weights, boolean directed) {
+        final var n = graph.getNumberOfNodes();
+        nodes = new Node[n];
+        node2index = graph.newNodeIntArray();
+        {
+            var i = 0;
+            for (var v : graph.nodes()) {
+                nodes[i] = v;
+                node2index.set(v, i++);
+            }
+        }
+
+        unitWeights = (weights == null);
+
+        final var m = graph.getNumberOfEdges();
+        final var source = new int[m];
+        final var target = new int[m];
+        final var weight = new double[m];
+        {
+            var i = 0;
+            for (var e : graph.edges()) {
+                source[i] = node2index.getInt(e.getSource());
+                target[i] = node2index.getInt(e.getTarget());
+                weight[i] = (weights == null ? 1.0 : weights.apply(e).doubleValue());
+                if (!(weight[i] >= 0))
+                    throw new IllegalArgumentException("Edge " + e.getId() + ": illegal weight: " + weight[i]);
+                i++;
+            }
+        }
+
+        if (directed) {
+            outStart = new int[n + 1];
+            outNode = new int[m];
+            outWeight = new double[m];
+            fillAdjacency(n, source, target, weight, m, outStart, outNode, outWeight);
+            inStart = new int[n + 1];
+            inNode = new int[m];
+            inWeight = new double[m];
+            fillAdjacency(n, target, source, weight, m, inStart, inNode, inWeight);
+        } else {
+            final var from = Arrays.copyOf(source, 2 * m);
+            final var to = Arrays.copyOf(target, 2 * m);
+            final var both = Arrays.copyOf(weight, 2 * m);
+            System.arraycopy(target, 0, from, m, m);
+            System.arraycopy(source, 0, to, m, m);
+            System.arraycopy(weight, 0, both, m, m);
+            outStart = inStart = new int[n + 1];
+            outNode = inNode = new int[2 * m];
+            outWeight = inWeight = new double[2 * m];
+            fillAdjacency(n, from, to, both, 2 * m, outStart, outNode, outWeight);
+        }
+    }
+
+    /**
+     * sorts the given arcs by their first node, keeping the order of the graph otherwise
+     */
+    private static void fillAdjacency(int n, int[] from, int[] to, double[] weight, int count, int[] start, int[] adjacentNode, double[] adjacentWeight) {
+        for (var i = 0; i < count; i++)
+            start[from[i] + 1]++;
+        for (var v = 0; v < n; v++)
+            start[v + 1] += start[v];
+        final var next = Arrays.copyOf(start, n);
+        for (var i = 0; i < count; i++) {
+            final var pos = next[from[i]]++;
+            adjacentNode[pos] = to[i];
+            adjacentWeight[pos] = weight[i];
+        }
+    }
+
     /**
      * compute single source shortest path from source to sink, non-negative edge weights
      *
      * @param graph  with adjacentEdges labeled by Integers
      * @param source
      * @param sink
-     * @return shortest path from source to sink
+     * @return shortest path from source to sink, excluding the source and sink
      */
     public static List<Node> compute(final Graph graph, Node source, Node sink, Function<Edge, Number> weights) {
-        NodeArray<Node> predecessor = graph.newNodeArray();
-
-        var dist = graph.newNodeDoubleArray();
-        var priorityQueue = newFullQueue(graph, dist);
-
-        // init:
-        for (var v : graph.nodes()) {
-            dist.put(v, 1000000.0);
-            predecessor.put(v, null);
-        }
-        dist.put(source, 0.0);
-
-        // main loop:
-        while (!priorityQueue.isEmpty()) {
-            var size = priorityQueue.size();
-            var u = priorityQueue.first();
-            priorityQueue.remove(u);
-            if (priorityQueue.size() != size - 1)
-                throw new RuntimeException("remove u=" + u + " failed: size=" + size);
-
-            for (var e : u.outEdges()) {
-                var weight = weights.apply(e).doubleValue();
-                var v = e.getOpposite(u);
-                if (dist.get(v) > dist.get(u) + weight) {
-                    // priorty of v changes, so must re-and to queue:
-                    priorityQueue.remove(v);
-                    dist.put(v, dist.get(u) + weight);
-                    priorityQueue.add(v);
-                    predecessor.put(v, u);
+        final var path = new Dijkstra(graph, weights).getShortestPath(source, sink);
+        if (path.isEmpty())
+            throw new RuntimeException("No path from sink back to source");
+        else if (path.size() <= 2)
+            return new ArrayList<>();
+        else
+            return new ArrayList<>(path.subList(1, path.size() - 1));
+    }
+
+    /**
+     * computes a shortest path, stopping as soon as the sink is reached
+     *
+     * @return shortest path from source to sink, including both, or empty list, if there is no such path
+     */
+    public List<Node> getShortestPath(Node source, Node sink) {
+        final var s = node2index.getInt(source);
+        final var t = node2index.getInt(sink);
+        final var distances = newDistances();
+        final var predecessors = new int[nodes.length];
+        run(s, t, distances, predecessors);
+        if (distances[t] == Double.POSITIVE_INFINITY)
+            return new ArrayList<>();
+        final var path = new ArrayList<Node>();
+        for (var v = t; v != -1; v = predecessors[v])
+            path.add(nodes[v]);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * computes the length of a shortest path, stopping as soon as the sink is reached
+     *
+     * @return length of shortest path from source to sink, or Double.POSITIVE_INFINITY, if there is no such path
+     */
+    public double getDistance(Node source, Node sink) {
+        final var t = node2index.getInt(sink);
+        final var distances = newDistances();
+        run(node2index.getInt(source), t, distances, new int[nodes.length]);
+        return distances[t];
+    }
+
+    /**
+     * computes a shortest path by searching forward from the source and backward from the sink at the same time, alternating between
+     * the two searches and stopping as soon as the sum of their smallest tentative distances is not less than the shortest path found so far.
+     * Usually settles far fewer nodes than the one-sided search
+     *
+     * @return shortest path from source to sink, including both, or empty list, if there is no such path
+     */
+    public List<Node> getShortestPathBidirectional(Node source, Node sink) {
+        final var s = node2index.getInt(source);
+        final var t = node2index.getInt(sink);
+        final var path = new ArrayList<Node>();
+        if (s == t) {
+            path.add(source);
+            return path;
+        }
+
+        final var forwardDistances = newDistances();
+        final var forwardPredecessors = new int[nodes.length];
+        final var forwardHeap = new IndexedDoubleHeap(nodes.length);
+        final var backwardDistances = newDistances();
+        final var backwardSuccessors = new int[nodes.length];
+        final var backwardHeap = new IndexedDoubleHeap(nodes.length);
+
+        forwardDistances[s] = 0;
+        forwardPredecessors[s] = -1;
+        forwardHeap.insertOrDecrease(s, 0);
+        backwardDistances[t] = 0;
+        backwardSuccessors[t] = -1;
+        backwardHeap.insertOrDecrease(t, 0);
+
+        var best = Double.POSITIVE_INFINITY;
+        var meetForward = -1; // a shortest path consists of the forward path to meetForward, followed by the backward path from meetBackward
+        var meetBackward = -1;
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty() && forwardHeap.peekMinKey() + backwardHeap.peekMinKey() < best) {
+            final var forward = (forwardHeap.peekMinKey() <= backwardHeap.peekMinKey());
+            final var heap = (forward ? forwardHeap : backwardHeap);
+            final var distances = (forward ? forwardDistances : backwardDistances);
+            final var otherDistances = (forward ? backwardDistances : forwardDistances);
+            final var parents = (forward ? forwardPredecessors : backwardSuccessors);
+            final var start = (forward ? outStart : inStart);
+            final var adjacentNode = (forward ? outNode : inNode);
+            final var adjacentWeight = (forward ? outWeight : inWeight);
+
+            final var u = heap.pollMin();
+            final var du = distances[u];
+            for (var i = start[u]; i < start[u + 1]; i++) {
+                final var v = adjacentNode[i];
+                final var dv = du + adjacentWeight[i];
+                if (dv < distances[v]) {
+                    distances[v] = dv;
+                    parents[v] = u;
+                    heap.insertOrDecrease(v, dv);
+                }
+                if (otherDistances[v] != Double.POSITIVE_INFINITY && dv + otherDistances[v] < best) {
+                    best = dv + otherDistances[v];
+                    meetForward = (forward ? u : v);
+                    meetBackward = (forward ? v : u);
+                }
+            }
+        }
+
+        if (meetForward != -1) {
+            for (var v = meetForward; v != -1; v = forwardPredecessors[v])
+                path.add(nodes[v]);
+            Collections.reverse(path);
+            for (var v = meetBackward; v != -1; v = backwardSuccessors[v])
+                path.add(nodes[v]);
+        }
+        return path;
+    }
+
+    /**
+     * computes the shortest paths from the source to all nodes
+     *
+     * @return tree of shortest paths
+     */
+    public ShortestPathTree computeAll(Node source) {
+        final var s = node2index.getInt(source);
+        final var distances = newDistances();
+        final var predecessors = new int[nodes.length];
+        run(s, -1, distances, predecessors);
+        return new ShortestPathTree(s, distances, predecessors);
+    }
+
+    /**
+     * computes the distances from the source to all nodes into the given array, indexed by node index
+     *
+     * @param source       index of source node
+     * @param distances    distances are written to this array, Double.POSITIVE_INFINITY for unreachable nodes
+     * @param predecessors if non-null, predecessor indices are written to this array, -1 for the source and unreachable nodes
+     */
+    public void computeAll(int source, double[] distances, int[] predecessors) {
+        Arrays.fill(distances, 0, nodes.length, Double.POSITIVE_INFINITY);
+        run(source, -1, distances, (predecessors != null ? predecessors : new int[nodes.length]));
+    }
+
+    /**
+     * runs Dijkstra's algorithm from source until sink is settled, or until all reachable nodes are settled, if sink is -1
+     */
+    private void run(int source, int sink, double[] distances, int[] predecessors) {
+        Arrays.fill(predecessors, 0, nodes.length, -1);
+        if (unitWeights) {
+            runBreadthFirst(source, sink, distances, predecessors);
+            return;
+        }
+        final var heap = new IndexedDoubleHeap(nodes.length);
+        distances[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            final var u = heap.pollMin();
+            if (u == sink)
+                break;
+            final var du = distances[u];
+            for (var i = outStart[u]; i < outStart[u + 1]; i++) {
+                final var v = outNode[i];
+                final var dv = du + outWeight[i];
+                if (dv < distances[v]) {
+                    distances[v] = dv;
+                    predecessors[v] = u;
+                    heap.insertOrDecrease(v, dv);
                 }
             }
         }
-        System.err.println("done main loop");
-        var result = new ArrayList<Node>();
-        var v = sink;
-        while (v != source) {
-            if (v == null)
-                throw new RuntimeException("No path from sink back to source");
-            System.err.println("v: " + v);
-            if (v != sink)
-                result.add(0, v);
-            v = predecessor.get(v);
+    }
+
+    /**
+     * breadth-first search from source, for unit weights
+     */
+    private void runBreadthFirst(int source, int sink, double[] distances, int[] predecessors) {
+        final var queue = new int[nodes.length];
+        var head = 0;
+        var tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            final var u = queue[head++];
+            if (u == sink)
+                break;
+            final var dv = distances[u] + 1;
+            for (var i = outStart[u]; i < outStart[u + 1]; i++) {
+                final var v = outNode[i];
+                if (distances[v] == Double.POSITIVE_INFINITY) {
+                    distances[v] = dv;
+                    predecessors[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+
+    private double[] newDistances() {
+        final var distances = new double[nodes.length];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        return distances;
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return node for index in range 0..getNumberOfNodes()-1
+     */
+    public Node getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @return index of node
+     */
+    public int getIndex(Node v) {
+        return node2index.getInt(v);
+    }
+
+    /**
+     * tree of shortest paths from a single source
+     */
+    public class ShortestPathTree {
+        private final int source;
+        private final double[] distances;
+        private final int[] predecessors;
+
+        private ShortestPathTree(int source, double[] distances, int[] predecessors) {
+            this.source = source;
+            this.distances = distances;
+            this.predecessors = predecessors;
+        }
+
+        public Node getSource() {
+            return nodes[source];
+        }
+
+        /**
+         * @return distance from source to v, or Double.POSITIVE_INFINITY, if v is not reachable
+         */
+        public double getDistance(Node v) {
+            return distances[node2index.getInt(v)];
+        }
+
+        /**
+         * @return predecessor of v on a shortest path from the source, or null, if v is the source or not reachable
+         */
+        public Node getPredecessor(Node v) {
+            final var p = predecessors[node2index.getInt(v)];
+            return (p == -1 ? null : nodes[p]);
+        }
+
+        /**
+         * @return shortest path from source to v, including both, or empty list, if v is not reachable
+         */
+        public List<Node> getPath(Node v) {
+            final var path = new ArrayList<Node>();
+            final var t = node2index.getInt(v);
+            if (distances[t] != Double.POSITIVE_INFINITY) {
+                for (var w = t; w != -1; w = predecessors[w])
+                    path.add(nodes[w]);
+                Collections.reverse(path);
+            }
+            return path;
+        }
+
+        /**
+         * @return distances indexed by node index, see Dijkstra.getIndex(Node)
+         */
+        public double[] getDistances() {
+            return distances;
+        }
+
+        /**
+         * @return predecessor indices indexed by node index, -1 for the source and unreachable nodes
+         */
+        public int[] getPredecessors() {
+            return predecessors;
         }
-        System.err.println("# Dijkstra: " + result.size());
-        return result;
     }
 
     /**
@@ -97,12 +432,13 @@ public class Dijkstra {
      * @param graph
      * @param dist
      * @return full priority queue
-     * @
+     * @deprecated no longer used by compute(), which is based on an indexed heap
      */
+    @Deprecated
     static public SortedSet<Node> newFullQueue(final Graph graph, final NodeDoubleArray dist) {
         var queue = new TreeSet<Node>((v1, v2) -> {
-            var weight1 = dist.get(v1);
-            var weight2 = dist.get(v2);
+            var weight1 = dist.getDouble(v1);
+            var weight2 = dist.getDouble(v2);
             //System.out.println("weight1 " + weight1 + " weight2 " + weight2);
             //System.out.println("graph.getId(v1) " + graph.getId(v1) + " graph.getId(v2) " + graph.getId(v2));
             if (weight1 < weight2)
@@ -45,6 +45,11 @@ import java.util.concurrent.Executors;
  * adapted by Daniel Huson, 5.2013, 2020
  */
 public class FruchtermanReingoldLayout {
+    /**
+     * how repulsive forces are computed: exactly, using all pairs of nodes, or approximately, using a Barnes-Hut quad tree.
+     * Automatic uses the exact computation for graphs with less than getBarnesHutThreshold() nodes
+     */
+    public enum Repulsion {Exact, BarnesHut, Automatic}
 
     private static final float SPEED_DIVISOR = 800;
     private static final float AREA_MULTIPLICATOR = 10000;
@@ -53,6 +58,11 @@ public class FruchtermanReingoldLayout {
     private float area;
     private double gravity;
     private double speed;
+    private Repulsion repulsion = Repulsion.Automatic;
+    private float theta = 0.8f;
+    private int barnesHutThreshold = 500;
+
+    private BarnesHutQuadTree quadTree;
 
     // data
     private final Graph graph;
@@ -109,15 +119,15 @@ public class FruchtermanReingoldLayout {
     private void initialize(NodeSet fixedNodes, NodeArray<APoint2D<?>> node2start) {
         var node2id = graph.newNodeIntArray();
         for (int v = 0; v < nodes.length; v++) {
-            node2id.put(nodes[v], v);
+            node2id.set(nodes[v], v);
             if (fixedNodes != null && fixedNodes.contains(nodes[v]))
                 fixed.set(v);
         }
         {
             int eId = 0;
             for (var e : graph.edges()) {
-                edges[0][eId] = node2id.get(e.getSource());
-                edges[1][eId] = node2id.get(e.getTarget());
+                edges[0][eId] = node2id.getInt(e.getSource());
+                edges[1][eId] = node2id.getInt(e.getTarget());
                 eId++;
             }
         }
@@ -125,7 +135,7 @@ public class FruchtermanReingoldLayout {
         if (graph.getNumberOfNodes() > 0) {
             if (node2start != null) {
                 for (var v : graph.nodes()) {
-                    final int id = node2id.get(v);
+                    final int id = node2id.getInt(v);
                     coordinates[0][id] = (float) node2start.get(v).getX();
                     coordinates[1][id] = (float) node2start.get(v).getY();
                 }
@@ -139,7 +149,7 @@ public class FruchtermanReingoldLayout {
                         stack.push(v);
                         while (stack.size() > 0) {
                             final Node w = stack.pop();
-                            final int id = node2id.get(w);
+                            final int id = node2id.getInt(w);
                             coordinates[0][id] = (float) (100 * Math.sin(2 * Math.PI * count / nodes.length));
                             coordinates[1][id] = (float) (100 * Math.cos(2 * Math.PI * count / nodes.length));
                             count++;
@@ -248,42 +258,11 @@ public class FruchtermanReingoldLayout {
         Arrays.fill(forceDelta[1], 0);
 
         // repulsion
-        {
-            final int threads = Math.min(numberOfThreads, nodes.length);
-            final CountDownLatch countDownLatch = new CountDownLatch(threads);
+        if (isUseBarnesHut())
+            computeRepulsionBarnesHut(k, service, numberOfThreads, progress);
+        else
+            computeRepulsionExact(k, service, numberOfThreads, progress);
 
-            for (int t = 0; t < threads; t++) {
-                final int thread = t;
-                service.submit(() -> {
-                    try {
-                        for (int v1 = thread; v1 < nodes.length; v1 += numberOfThreads) {
-                            for (int v2 = 0; v2 < nodes.length; v2++) {
-                                if (v1 != v2) {
-                                    float xDist = coordinates[0][v1] - coordinates[0][v2];
-                                    float yDist = coordinates[1][v1] - coordinates[1][v2];
-                                    float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);
-                                    if (dist > 0) {
-                                        float repulsiveF = k * k / dist;
-                                        forceDelta[0][v1] += xDist / dist * repulsiveF;
-                                        forceDelta[1][v1] += yDist / dist * repulsiveF;
-                                    }
-                                }
-                            }
-                            progress.checkForCancel();
-                        }
-                    } catch (CanceledException ignored) {
-                    } finally {
-                        countDownLatch.countDown();
-                    }
-                });
-            }
-            try {
-                countDownLatch.await();
-            } catch (InterruptedException e) {
-                Basic.caught(e);
-            }
-            progress.checkForCancel();
-        }
         // attraction
         {
             final int threads = Math.min(numberOfThreads, edges[0].length);
@@ -382,6 +361,94 @@ public class FruchtermanReingoldLayout {
         }
     }
 
+    /**
+     * compute the repulsive forces exactly, using all pairs of nodes
+     */
+    private void computeRepulsionExact(float k, ExecutorService service, int numberOfThreads, ProgressListener progress) throws CanceledException {
+        final int threads = Math.min(numberOfThreads, nodes.length);
+        final CountDownLatch countDownLatch = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            service.submit(() -> {
+                try {
+                    for (int v1 = thread; v1 < nodes.length; v1 += threads) {
+                        for (int v2 = 0; v2 < nodes.length; v2++) {
+                            if (v1 != v2) {
+                                float xDist = coordinates[0][v1] - coordinates[0][v2];
+                                float yDist = coordinates[1][v1] - coordinates[1][v2];
+                                float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);
+                                if (dist > 0) {
+                                    float repulsiveF = k * k / dist;
+                                    forceDelta[0][v1] += xDist / dist * repulsiveF;
+                                    forceDelta[1][v1] += yDist / dist * repulsiveF;
+                                }
+                            }
+                        }
+                        progress.checkForCancel();
+                    }
+                } catch (CanceledException ignored) {
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Basic.caught(e);
+        }
+        progress.checkForCancel();
+    }
+
+    /**
+     * compute the repulsive forces approximately, using a Barnes-Hut quad tree. Takes O(n log n) time, rather than O(n^2)
+     */
+    private void computeRepulsionBarnesHut(float k, ExecutorService service, int numberOfThreads, ProgressListener progress) throws CanceledException {
+        if (quadTree == null)
+            quadTree = new BarnesHutQuadTree();
+        quadTree.build(coordinates[0], coordinates[1], nodes.length);
+
+        final int threads = Math.min(numberOfThreads, nodes.length);
+        final CountDownLatch countDownLatch = new CountDownLatch(threads);
+        final float kSquared = k * k;
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            service.submit(() -> {
+                try {
+                    final int[] stack = BarnesHutQuadTree.createStack();
+                    final double[] force = new double[2];
+                    for (int v = thread; v < nodes.length; v += threads) {
+                        force[0] = 0;
+                        force[1] = 0;
+                        quadTree.addRepulsiveForce(v, kSquared, theta, stack, force);
+                        forceDelta[0][v] += force[0];
+                        forceDelta[1][v] += force[1];
+                        if ((v / threads) % 1000 == 0)
+                            progress.checkForCancel();
+                    }
+                } catch (CanceledException ignored) {
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Basic.caught(e);
+        }
+        progress.checkForCancel();
+    }
+
+    /**
+     * will the next iteration use the Barnes-Hut approximation?
+     */
+    public boolean isUseBarnesHut() {
+        return repulsion == Repulsion.BarnesHut || (repulsion == Repulsion.Automatic && nodes.length >= barnesHutThreshold);
+    }
+
     public float getArea() {
         return area;
     }
@@ -405,4 +472,46 @@ public class FruchtermanReingoldLayout {
     public void setSpeed(double speed) {
         this.speed = speed;
     }
+
+    public Repulsion getRepulsion() {
+        return repulsion;
+    }
+
+    /**
+     * set how repulsive forces are computed
+     *
+     * @param repulsion Exact, BarnesHut or Automatic
+     */
+    public void setRepulsion(Repulsion repulsion) {
+        this.repulsion = repulsion;
+    }
+
+    public float getTheta() {
+        return theta;
+    }
+
+    /**
+     * set the accuracy of the Barnes-Hut approximation. A group of nodes of width w at distance d is treated as a single mass, if w/d is less than theta.
+     * Smaller values are more accurate and slower, 0 gives the exact forces
+     *
+     * @param theta non-negative value, typically between 0.5 and 1.2
+     */
+    public void setTheta(float theta) {
+        if (theta < 0)
+            throw new IllegalArgumentException("theta must be non-negative: " + theta);
+        this.theta = theta;
+    }
+
+    public int getBarnesHutThreshold() {
+        return barnesHutThreshold;
+    }
+
+    /**
+     * set the number of nodes from which on the Automatic mode uses the Barnes-Hut approximation
+     *
+     * @param barnesHutThreshold number of nodes
+     */
+    public void setBarnesHutThreshold(int barnesHutThreshold) {
+        this.barnesHutThreshold = barnesHutThreshold;
+    }
 }
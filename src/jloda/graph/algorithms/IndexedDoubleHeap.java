@@ -0,0 +1,146 @@
+/*
+ * IndexedDoubleHeap.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * binary min-heap of int items 0..capacity-1 with double keys, supporting decrease-key in O(log n).
+ * The position of each item in the heap is kept in an index array. Items with equal keys are ordered by their index
+ * Daniel Huson, 2021
+ */
+final class IndexedDoubleHeap {
+    private final int[] heap; // items in heap order
+    private final int[] position; // position of item in heap, or -1
+    private final double[] key;
+    private int size;
+
+    /**
+     * constructor
+     *
+     * @param capacity items must be in the range 0..capacity-1
+     */
+    IndexedDoubleHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+        key = new double[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int item) {
+        return position[item] != -1;
+    }
+
+    /**
+     * inserts the item, or decreases its key, if it is already contained and the new key is smaller
+     *
+     * @return true, if the item was inserted or its key was decreased
+     */
+    boolean insertOrDecrease(int item, double value) {
+        var pos = position[item];
+        if (pos == -1) {
+            pos = size++;
+            heap[pos] = item;
+            position[item] = pos;
+        } else if (!(value < key[item]))
+            return false;
+        key[item] = value;
+        siftUp(pos);
+        return true;
+    }
+
+    /**
+     * @return the smallest key
+     */
+    double peekMinKey() {
+        return key[heap[0]];
+    }
+
+    /**
+     * removes the item with the smallest key
+     *
+     * @return the item
+     */
+    int pollMin() {
+        final var item = heap[0];
+        position[item] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return item;
+    }
+
+    /**
+     * removes all items
+     */
+    void clear() {
+        for (var i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        final var item = heap[pos];
+        while (pos > 0) {
+            final var parentPos = (pos - 1) >>> 1;
+            final var parent = heap[parentPos];
+            if (!less(item, parent))
+                break;
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = item;
+        position[item] = pos;
+    }
+
+    private void siftDown(int pos) {
+        final var item = heap[pos];
+        final var half = size >>> 1;
+        while (pos < half) {
+            var childPos = 2 * pos + 1;
+            var child = heap[childPos];
+            if (childPos + 1 < size && less(heap[childPos + 1], child))
+                child = heap[++childPos];
+            if (!less(child, item))
+                break;
+            heap[pos] = child;
+            position[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = item;
+        position[item] = pos;
+    }
+
+    private boolean less(int a, int b) {
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+    }
+}
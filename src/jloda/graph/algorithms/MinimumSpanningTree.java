@@ -22,54 +22,237 @@ package jloda.graph.algorithms;
 import jloda.graph.Edge;
 import jloda.graph.EdgeSet;
 import jloda.graph.Graph;
-import jloda.util.Pair;
 import jloda.util.ProgressListener;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
- * compute the edges of a minimum spanning tree
+ * compute the edges of a minimum spanning tree, or of a minimum spanning network.
+ * Edges are sorted by weight using a stable radix sort on primitive keys, so edges of equal weight are considered
+ * in the order of the graph, and components are maintained in a union-find data structure over node indices.
+ * The sequential (Kruskal) and parallel (Boruvka) algorithms compute the same tree
  * Daniel Huson, 3.2019
  */
 public class MinimumSpanningTree {
 
     /**
-     * compute a minimum spanning tree
+     * compute a minimum spanning tree, using Kruskal's algorithm
      *
      * @param graph
      * @param weightFunction
-     * @param progress
-     * @return
+     * @param progress       progress listener, may be null
+     * @return edges of minimum spanning tree, or forest, if the graph is not connected
      */
     public static EdgeSet apply(Graph graph, Function<Edge, Number> weightFunction, ProgressListener progress) {
-        final var edges = new ArrayList<Pair<Double, Edge>>(graph.getNumberOfEdges());
-        for (var e : graph.edges()) {
-            edges.add(new Pair<>(weightFunction.apply(e).doubleValue(), e));
-        }
-        edges.sort(Comparator.comparingDouble(Pair::getFirst));
+        final var edges = new EdgeData(graph, weightFunction);
+        final var order = edges.sortByWeight();
+        final var components = new UnionFind(graph.getNumberOfNodes());
 
-        var component = graph.newNodeIntArray();
-        int count = 0;
-        for (var v : graph.nodes()) {
-            component.put(v, ++count);
+        if (progress != null)
+            progress.setMaximum(order.length);
+        final var result = graph.newEdgeSet();
+        for (var i = 0; i < order.length && components.getNumberOfSets() > 1; i++) {
+            final var e = order[i];
+            if (components.union(edges.source[e], edges.target[e]))
+                result.add(edges.edges[e]);
+            if (progress != null && (i & 0xFFFF) == 0)
+                progress.setProgressIgnoreCancel(i);
         }
+        return result;
+    }
+
+    /**
+     * compute a minimum spanning tree, using Boruvka's algorithm. In each round, the lightest edge leaving each component is
+     * determined in parallel, and then all these edges are added to the tree. There are at most log(n) rounds
+     *
+     * @param graph
+     * @param weightFunction
+     * @param numberOfThreads number of threads to use
+     * @return edges of minimum spanning tree, or forest, if the graph is not connected
+     */
+    public static EdgeSet applyParallel(Graph graph, Function<Edge, ? extends Number> weightFunction, int numberOfThreads) {
+        final var edges = new EdgeData(graph, weightFunction);
+        final var order = edges.sortByWeight();
+        final var m = order.length;
+        final var n = graph.getNumberOfNodes();
 
-        var result = graph.newEdgeSet();
-        for (Pair<Double, Edge> pair : edges) {
-            var e = pair.getSecond();
-            final int oldComponent = component.get(e.getSource());
-            final int newComponent = component.get(e.getTarget());
-
-            if (oldComponent != newComponent) {
-                result.add(e);
-                for (var v : graph.nodes()) {
-                    if (component.get(v) == oldComponent)
-                        component.put(v, newComponent);
+        // edges are compared by their rank in the sorted order, which breaks ties in the same way as apply()
+        final var rank = new int[m];
+        for (var i = 0; i < m; i++)
+            rank[order[i]] = i;
+
+        final var components = new UnionFind(n);
+        final var component = new int[n];
+        final var lightest = new AtomicIntegerArray(n);
+        final var active = new int[m]; // edges that may still connect different components
+        for (var e = 0; e < m; e++)
+            active[e] = e;
+        var numberOfActive = m;
+
+        final var result = graph.newEdgeSet();
+        final var pool = (numberOfThreads > 1 ? new ForkJoinPool(numberOfThreads) : null);
+        try {
+            while (numberOfActive > 0 && components.getNumberOfSets() > 1) {
+                for (var v = 0; v < n; v++) {
+                    component[v] = components.find(v);
+                    lightest.set(v, Integer.MAX_VALUE);
                 }
+
+                final IntConsumer findLightest = i -> {
+                    final var e = active[i];
+                    final var a = component[edges.source[e]];
+                    final var b = component[edges.target[e]];
+                    if (a != b) {
+                        updateMinimum(lightest, a, rank[e]);
+                        updateMinimum(lightest, b, rank[e]);
+                    }
+                };
+                final var count = numberOfActive;
+                if (pool != null)
+                    pool.submit(() -> IntStream.range(0, count).parallel().forEach(findLightest)).join();
+                else
+                    IntStream.range(0, count).forEach(findLightest);
+
+                for (var c = 0; c < n; c++) {
+                    if (lightest.get(c) != Integer.MAX_VALUE) {
+                        final var e = order[lightest.get(c)];
+                        if (components.union(edges.source[e], edges.target[e]))
+                            result.add(edges.edges[e]);
+                    }
+                }
+
+                var keep = 0;
+                for (var i = 0; i < numberOfActive; i++) {
+                    final var e = active[i];
+                    if (components.find(edges.source[e]) != components.find(edges.target[e]))
+                        active[keep++] = e;
+                }
+                numberOfActive = keep;
             }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
         }
         return result;
     }
+
+    private static void updateMinimum(AtomicIntegerArray array, int index, int value) {
+        var current = array.get(index);
+        while (value < current && !array.compareAndSet(index, current, value)) {
+            current = array.get(index);
+        }
+    }
+
+    /**
+     * compute a minimum spanning network, that is, the union of all minimum spanning trees.
+     * Edges are processed in classes of equal weight, and all edges of a class are added whose nodes are not connected by lighter edges
+     *
+     * @param graph
+     * @param weightFunction
+     * @param progress       progress listener, may be null
+     * @return edges of minimum spanning network
+     */
+    public static EdgeSet applyMinimumSpanningNetwork(Graph graph, Function<Edge, ? extends Number> weightFunction, ProgressListener progress) {
+        final var edges = new EdgeData(graph, weightFunction);
+        final var order = edges.sortByWeight();
+        final var components = new UnionFind(graph.getNumberOfNodes());
+
+        if (progress != null)
+            progress.setMaximum(order.length);
+        final var result = graph.newEdgeSet();
+        for (var i = 0; i < order.length && components.getNumberOfSets() > 1; ) {
+            final var weight = edges.weight[order[i]];
+            var j = i;
+            while (j < order.length && Double.compare(edges.weight[order[j]], weight) == 0) {
+                final var e = order[j++];
+                if (components.find(edges.source[e]) != components.find(edges.target[e]))
+                    result.add(edges.edges[e]);
+            }
+            for (var k = i; k < j; k++) {
+                components.union(edges.source[order[k]], edges.target[order[k]]);
+            }
+            i = j;
+            if (progress != null)
+                progress.setProgressIgnoreCancel(i);
+        }
+        return result;
+    }
+
+    /**
+     * the edges of a graph, with end nodes given as indices and with weights
+     */
+    private static class EdgeData {
+        final Edge[] edges;
+        final int[] source;
+        final int[] target;
+        final double[] weight;
+
+        EdgeData(Graph graph, Function<Edge, ? extends Number> weightFunction) {
+            final var node2index = graph.newNodeIntArray();
+            {
+                var i = 0;
+                for (var v : graph.nodes())
+                    node2index.set(v, i++);
+            }
+            final var m = graph.getNumberOfEdges();
+            edges = new Edge[m];
+            source = new int[m];
+            target = new int[m];
+            weight = new double[m];
+            var i = 0;
+            for (var e : graph.edges()) {
+                edges[i] = e;
+                source[i] = node2index.getInt(e.getSource());
+                target[i] = node2index.getInt(e.getTarget());
+                weight[i++] = weightFunction.apply(e).doubleValue();
+            }
+        }
+
+        /**
+         * sorts the edges by weight, using a stable least-significant-digit radix sort on the bits of the weights
+         *
+         * @return edge indices in order of increasing weight
+         */
+        int[] sortByWeight() {
+            final var m = weight.length;
+            var keys = new long[m];
+            for (var e = 0; e < m; e++) {
+                final var bits = Double.doubleToLongBits(weight[e] == 0 ? 0.0 : weight[e]); // treat -0.0 as 0.0
+                keys[e] = bits ^ ((bits >> 63) | Long.MIN_VALUE); // unsigned order of keys is numerical order of weights
+            }
+            var order = new int[m];
+            for (var e = 0; e < m; e++)
+                order[e] = e;
+
+            var nextKeys = new long[m];
+            var nextOrder = new int[m];
+            final var counts = new int[(1 << 16) + 1];
+            for (var shift = 0; shift < 64; shift += 16) {
+                Arrays.fill(counts, 0);
+                for (var i = 0; i < m; i++)
+                    counts[(int) ((keys[i] >>> shift) & 0xFFFF) + 1]++;
+                if (m > 0 && counts[(int) ((keys[0] >>> shift) & 0xFFFF) + 1] == m)
+                    continue; // all keys have the same digit
+                for (var d = 0; d < (1 << 16); d++)
+                    counts[d + 1] += counts[d];
+                for (var i = 0; i < m; i++) {
+                    final var pos = counts[(int) ((keys[i] >>> shift) & 0xFFFF)]++;
+                    nextKeys[pos] = keys[i];
+                    nextOrder[pos] = order[i];
+                }
+                final var tmpKeys = keys;
+                keys = nextKeys;
+                nextKeys = tmpKeys;
+                final var tmpOrder = order;
+                order = nextOrder;
+                nextOrder = tmpOrder;
+            }
+            return order;
+        }
+    }
 }
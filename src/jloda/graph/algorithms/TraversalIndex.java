@@ -0,0 +1,264 @@
+/*
+ * TraversalIndex.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph.algorithms;
+
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+
+/**
+ * index of a rooted tree, computed once by an iterative traversal, for running many passes over the tree as loops over int arrays.
+ * Nodes are numbered 0..n-1 in pre-order, so the root has index 0, every node has a smaller index than its descendants,
+ * and the subtree below node i consists of the nodes i..i+getSubtreeSize(i)-1.
+ * Also provides the post-order and the Euler tour of the tree
+ * Daniel Huson, 2021
+ */
+public class TraversalIndex {
+    private final Node[] nodes;
+    private final NodeIntArray node2index;
+    private final int[] parent;
+    private final int[] subtreeSize;
+    private final int[] depth;
+    private final int[] postOrder;
+    private final int[] eulerTour;
+    private final int[] firstOccurrence;
+
+    /**
+     * constructor
+     *
+     * @param root the root of the tree, children are given by out edges
+     * @throws IllegalArgumentException if a node is reachable from the root by more than one path
+     */
+    public TraversalIndex(Node root) {
+        node2index = root.getOwner().newNodeIntArray();
+
+        var count = 0;
+        var capacity = 16;
+        var preOrderNodes = new Node[capacity];
+        var parentList = new int[capacity];
+        var depthList = new int[capacity];
+        var postOrderList = new int[capacity];
+        var postCount = 0;
+        var eulerList = new int[2 * capacity];
+        var eulerCount = 0;
+
+        // explicit stack of nodes and their out-edge iterators
+        var stack = new int[capacity];
+        @SuppressWarnings("unchecked")
+        var iterators = (Iterator<Edge>[]) new Iterator<?>[capacity];
+        var top = -1;
+
+        node2index.set(root, 0);
+        preOrderNodes[count] = root;
+        parentList[count] = -1;
+        depthList[count] = 0;
+        count++;
+        eulerList[eulerCount++] = 0;
+        stack[++top] = 0;
+        iterators[top] = root.outEdges().iterator();
+
+        while (top >= 0) {
+            final var v = stack[top];
+            final var it = iterators[top];
+            if (it.hasNext()) {
+                final var w = it.next().getTarget();
+                if (node2index.get(w) != null)
+                    throw new IllegalArgumentException("Not a tree: node " + w.getId() + " is reachable from the root by more than one path");
+                if (count == capacity) {
+                    capacity *= 2;
+                    preOrderNodes = Arrays.copyOf(preOrderNodes, capacity);
+                    parentList = Arrays.copyOf(parentList, capacity);
+                    depthList = Arrays.copyOf(depthList, capacity);
+                    postOrderList = Arrays.copyOf(postOrderList, capacity);
+                    eulerList = Arrays.copyOf(eulerList, 2 * capacity);
+                    stack = Arrays.copyOf(stack, capacity);
+                    iterators = Arrays.copyOf(iterators, capacity);
+                }
+                final var i = count++;
+                node2index.set(w, i);
+                preOrderNodes[i] = w;
+                parentList[i] = v;
+                depthList[i] = depthList[v] + 1;
+                eulerList[eulerCount++] = i;
+                stack[++top] = i;
+                iterators[top] = w.outEdges().iterator();
+            } else {
+                iterators[top] = null;
+                top--;
+                postOrderList[postCount++] = v;
+                if (top >= 0)
+                    eulerList[eulerCount++] = stack[top];
+            }
+        }
+
+        nodes = Arrays.copyOf(preOrderNodes, count);
+        parent = Arrays.copyOf(parentList, count);
+        depth = Arrays.copyOf(depthList, count);
+        postOrder = Arrays.copyOf(postOrderList, count);
+        eulerTour = Arrays.copyOf(eulerList, eulerCount);
+
+        subtreeSize = new int[count];
+        for (var i = count - 1; i >= 0; i--) {
+            subtreeSize[i]++;
+            if (parent[i] != -1)
+                subtreeSize[parent[i]] += subtreeSize[i];
+        }
+        firstOccurrence = new int[count];
+        for (var k = eulerCount - 1; k >= 0; k--)
+            firstOccurrence[eulerTour[k]] = k;
+    }
+
+    /**
+     * @return number of nodes in the tree
+     */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return node with the given pre-order index
+     */
+    public Node getNode(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * @return pre-order index of node, or -1, if the node is not contained in the tree
+     */
+    public int getIndex(Node v) {
+        final var i = node2index.get(v);
+        return (i == null ? -1 : i);
+    }
+
+    public Node getRoot() {
+        return nodes[0];
+    }
+
+    /**
+     * @return index of parent, or -1 for the root
+     */
+    public int getParent(int i) {
+        return parent[i];
+    }
+
+    /**
+     * @return number of nodes in the subtree rooted at i, including i
+     */
+    public int getSubtreeSize(int i) {
+        return subtreeSize[i];
+    }
+
+    /**
+     * @return number of edges between the root and i
+     */
+    public int getDepth(int i) {
+        return depth[i];
+    }
+
+    public boolean isLeaf(int i) {
+        return subtreeSize[i] == 1;
+    }
+
+    /**
+     * @return true, if i is an ancestor of j, or i=j
+     */
+    public boolean isAncestor(int i, int j) {
+        return i <= j && j < i + subtreeSize[i];
+    }
+
+    /**
+     * @return index of first child of i, or -1 if i is a leaf. The next child of c is getNextSibling(c)
+     */
+    public int getFirstChild(int i) {
+        return (subtreeSize[i] > 1 ? i + 1 : -1);
+    }
+
+    /**
+     * @return index of next sibling of i, or -1 if i is the last child of its parent
+     */
+    public int getNextSibling(int i) {
+        final var p = parent[i];
+        final var next = i + subtreeSize[i];
+        return (p != -1 && next < p + subtreeSize[p] ? next : -1);
+    }
+
+    /**
+     * @return parent indices, indexed by pre-order index
+     */
+    public int[] getParents() {
+        return parent;
+    }
+
+    /**
+     * @return subtree sizes, indexed by pre-order index
+     */
+    public int[] getSubtreeSizes() {
+        return subtreeSize;
+    }
+
+    /**
+     * @return depths, indexed by pre-order index
+     */
+    public int[] getDepths() {
+        return depth;
+    }
+
+    /**
+     * @return pre-order indices of all nodes, in post-order
+     */
+    public int[] getPostOrder() {
+        return postOrder;
+    }
+
+    /**
+     * @return Euler tour of the tree, as pre-order indices. Has length 2n-1 and lists a node each time the traversal enters or returns to it
+     */
+    public int[] getEulerTour() {
+        return eulerTour;
+    }
+
+    /**
+     * @return position of the first occurrence of i in the Euler tour
+     */
+    public int getFirstOccurrence(int i) {
+        return firstOccurrence[i];
+    }
+
+    /**
+     * applies the method to all nodes in pre-order, so that every node is processed after its parent
+     */
+    public void topDown(IntConsumer method) {
+        for (var i = 0; i < nodes.length; i++)
+            method.accept(i);
+    }
+
+    /**
+     * applies the method to all nodes in post-order, so that every node is processed after its children
+     */
+    public void bottomUp(IntConsumer method) {
+        for (var i : postOrder)
+            method.accept(i);
+    }
+}
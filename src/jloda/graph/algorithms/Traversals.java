@@ -22,11 +22,15 @@ package jloda.graph.algorithms;
 import jloda.graph.Graph;
 import jloda.graph.Node;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
- * tree and graph traversals
+ * tree and graph traversals. These use an explicit stack, so that they can be applied to very deep trees and long paths,
+ * and visit nodes in the same order as the corresponding recursive traversals.
+ * For many passes over the same tree, see TraversalIndex
  * Daniel Huson, 6.2021
  */
 public class Traversals {
@@ -38,10 +42,8 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void preOrderTreeTraversal(Node root, Consumer<Node> method) {
-        method.accept(root);
-        for (var child : root.children()) {
-            preOrderTreeTraversal(child, method);
-        }
+        treeTraversal(root, v -> true, method, v -> {
+        });
     }
 
     /**
@@ -52,12 +54,8 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void preOrderTreeTraversal(Node root, Function<Node, Boolean> ok, Consumer<Node> method) {
-        if (ok.apply(root)) {
-            method.accept(root);
-            for (var child : root.children()) {
-                preOrderTreeTraversal(child, ok, method);
-            }
-        }
+        treeTraversal(root, ok, method, v -> {
+        });
     }
 
     /**
@@ -67,10 +65,8 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void postOrderTreeTraversal(Node root, Consumer<Node> method) {
-        for (var child : root.children()) {
-            postOrderTreeTraversal(child, method);
-        }
-        method.accept(root);
+        treeTraversal(root, v -> true, v -> {
+        }, method);
     }
 
     /**
@@ -81,11 +77,22 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void postOrderTreeTraversal(Node root, Function<Node, Boolean> ok, Consumer<Node> method) {
+        treeTraversal(root, ok, v -> {
+        }, method);
+    }
+
+    /**
+     * depth-first tree traversal, applying the pre-method to each node before its children and the post-method after them
+     *
+     * @param root   root node
+     * @param ok     only visit nodes for which this evaluates to true
+     * @param pre    method applied in pre-order
+     * @param post   method applied in post-order
+     */
+    public static void treeTraversal(Node root, Function<Node, Boolean> ok, Consumer<Node> pre, Consumer<Node> post) {
         if (ok.apply(root)) {
-            for (var child : root.children()) {
-                postOrderTreeTraversal(child, ok, method);
-            }
-            method.accept(root);
+            pre.accept(root);
+            depthFirst(root, v -> v.children().iterator(), ok, pre, post);
         }
     }
 
@@ -96,20 +103,7 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void preOrderGraphTraversal(Graph graph, Consumer<Node> method) {
-        var visited = graph.newNodeSet();
-        Function<Node, Boolean> check = v -> {
-            if (visited.contains(v))
-                return false;
-            else {
-                visited.add(v);
-                return true;
-            }
-        };
-        for (var v : graph.nodes()) {
-            if (check.apply(v)) {
-                preOrderGraphTraversalRec(v, check, method);
-            }
-        }
+        preOrderGraphTraversal(graph, v -> true, method);
     }
 
     /**
@@ -120,29 +114,8 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void preOrderGraphTraversal(Graph graph, Function<Node, Boolean> ok, Consumer<Node> method) {
-        var visited = graph.newNodeSet();
-        Function<Node, Boolean> check = v -> {
-            if (!ok.apply(v) || visited.contains(v))
-                return false;
-            else {
-                visited.add(v);
-                return true;
-            }
-        };
-        for (var v : graph.nodes()) {
-            if (check.apply(v)) {
-                preOrderGraphTraversalRec(v, check, method);
-            }
-        }
-    }
-
-    private static void preOrderGraphTraversalRec(Node v, Function<Node, Boolean> check, Consumer<Node> method) {
-        method.accept(v);
-        for (var w : v.adjacentNodes()) {
-            if (check.apply(w)) {
-                preOrderGraphTraversalRec(w, check, method);
-            }
-        }
+        graphTraversal(graph, ok, method, v -> {
+        });
     }
 
     /**
@@ -152,20 +125,7 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void postOrderGraphTraversal(Graph graph, Consumer<Node> method) {
-        var visited = graph.newNodeSet();
-        Function<Node, Boolean> check = v -> {
-            if (visited.contains(v))
-                return false;
-            else {
-                visited.add(v);
-                return true;
-            }
-        };
-        for (var v : graph.nodes()) {
-            if (check.apply(v)) {
-                postOrderGraphTraversalRec(v, check, method);
-            }
-        }
+        postOrderGraphTraversal(graph, v -> true, method);
     }
 
     /**
@@ -176,6 +136,20 @@ public class Traversals {
      * @param method method to be applied
      */
     public static void postOrderGraphTraversal(Graph graph, Function<Node, Boolean> ok, Consumer<Node> method) {
+        graphTraversal(graph, ok, v -> {
+        }, method);
+    }
+
+    /**
+     * depth-first graph traversal, applying the pre-method to each node when it is first reached and the post-method once all its
+     * adjacent nodes have been processed
+     *
+     * @param graph the graph
+     * @param ok    only visit nodes for which this evaluates to true
+     * @param pre   method applied in pre-order
+     * @param post  method applied in post-order
+     */
+    public static void graphTraversal(Graph graph, Function<Node, Boolean> ok, Consumer<Node> pre, Consumer<Node> post) {
         var visited = graph.newNodeSet();
         Function<Node, Boolean> check = v -> {
             if (!ok.apply(v) || visited.contains(v))
@@ -187,17 +161,35 @@ public class Traversals {
         };
         for (var v : graph.nodes()) {
             if (check.apply(v)) {
-                postOrderGraphTraversalRec(v, check, method);
+                pre.accept(v);
+                depthFirst(v, w -> w.adjacentNodes().iterator(), check, pre, post);
             }
         }
     }
 
-    private static void postOrderGraphTraversalRec(Node v, Function<Node, Boolean> check, Consumer<Node> method) {
-        for (var w : v.adjacentNodes()) {
-            if (check.apply(w)) {
-                postOrderGraphTraversalRec(w, check, method);
+    /**
+     * iterative depth-first search from start, which has already been checked and pre-visited. A node is checked when it is reached in
+     * the iteration over the next nodes of its predecessor, as in a recursive search
+     */
+    private static void depthFirst(Node start, Function<Node, Iterator<Node>> next, Function<Node, Boolean> check, Consumer<Node> pre, Consumer<Node> post) {
+        final var nodes = new ArrayList<Node>();
+        final var iterators = new ArrayList<Iterator<Node>>();
+        nodes.add(start);
+        iterators.add(next.apply(start));
+        while (!nodes.isEmpty()) {
+            final var top = nodes.size() - 1;
+            final var it = iterators.get(top);
+            if (it.hasNext()) {
+                final var w = it.next();
+                if (check.apply(w)) {
+                    pre.accept(w);
+                    nodes.add(w);
+                    iterators.add(next.apply(w));
+                }
+            } else {
+                iterators.remove(top);
+                post.accept(nodes.remove(top));
             }
         }
-        method.accept(v);
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * UnionFind.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.graph.algorithms;
+
+/**
+ * union-find data structure over the elements 0..n-1, with union by rank and path halving
+ * Daniel Huson, 2021
+ */
+final class UnionFind {
+    private final int[] parent;
+    private final byte[] rank;
+    private int numberOfSets;
+
+    UnionFind(int n) {
+        parent = new int[n];
+        for (var i = 0; i < n; i++)
+            parent[i] = i;
+        rank = new byte[n];
+        numberOfSets = n;
+    }
+
+    /**
+     * @return representative of the set containing a
+     */
+    int find(int a) {
+        while (parent[a] != a) {
+            parent[a] = parent[parent[a]];
+            a = parent[a];
+        }
+        return a;
+    }
+
+    /**
+     * merges the sets containing a and b
+     *
+     * @return true, if a and b were in different sets
+     */
+    boolean union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return false;
+        if (rank[a] < rank[b]) {
+            final var tmp = a;
+            a = b;
+            b = tmp;
+        }
+        parent[b] = a;
+        if (rank[a] == rank[b])
+            rank[a]++;
+        numberOfSets--;
+        return true;
+    }
+
+    int getNumberOfSets() {
+        return numberOfSets;
+    }
+}
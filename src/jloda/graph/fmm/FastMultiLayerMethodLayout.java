@@ -25,17 +25,21 @@ import jloda.util.IteratorUtils;
 import jloda.util.Single;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 
 /**
- * implementation of the fast multilayer method (note: without multipole algorithm)
+ * implementation of the fast multilayer method
  * Original C++ author: Stefan Hachul, original license: GPL
  * Reimplemented in Java by Daniel Huson, 3.2021
  */
 public class FastMultiLayerMethodLayout {
+    private static final int NODES_PER_TASK = 1024;
+
     /**
      * run the algorithm
      *
@@ -128,20 +132,27 @@ public class FastMultiLayerMethodLayout {
 
         var topLevel = MultiLevel.createMultiLevelRepresentations(options, graph, nodeAttributes, edgeAttributes, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes);
 
-        var box = new LayoutBox();
-        for (int level = topLevel; level >= 0; level--) {
-            if (level == topLevel) {
-                createInitialPlacement(options, multiLevelGraph[level], multiLevelNodeAttributes[level], multiLevelEdgeAttributes[level], box);
-            } else {
-                MultiLevel.findInitialPlacementForLevel(level, options, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes);
-                box.update(multiLevelGraph[level], multiLevelNodeAttributes[level]);
-            }
-            callForceCalculationStep(options, box, multiLevelGraph[level], multiLevelNodeAttributes[level], multiLevelEdgeAttributes[level], level, topLevel);
+        final var pool = (options.getNumberOfThreads() > 1 ? new ForkJoinPool(options.getNumberOfThreads()) : null);
+        try {
+            var random = new Random(options.getRandSeed());
+            var box = new LayoutBox();
+            for (int level = topLevel; level >= 0; level--) {
+                if (level == topLevel) {
+                    createInitialPlacement(options, multiLevelGraph[level], multiLevelNodeAttributes[level], multiLevelEdgeAttributes[level], box);
+                } else {
+                    MultiLevel.findInitialPlacementForLevel(level, options, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes, random, pool);
+                    box.update(multiLevelGraph[level], multiLevelNodeAttributes[level]);
+                }
+                callForceCalculationStep(options, box, multiLevelGraph[level], multiLevelNodeAttributes[level], multiLevelEdgeAttributes[level], level, topLevel, pool);
 
-            if (options.getNumberOfChainSmoothingRounds() > 0)
-                smooth(options, multiLevelGraph[level], multiLevelNodeAttributes[level]);
-            if (true && options.getStepsForRotatingComponents() > 0)
-                RotateLayout.apply(options, graph, nodeAttributes);
+                if (options.getNumberOfChainSmoothingRounds() > 0)
+                    smooth(options, multiLevelGraph[level], multiLevelNodeAttributes[level]);
+                if (true && options.getStepsForRotatingComponents() > 0)
+                    RotateLayout.apply(options, graph, nodeAttributes);
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
         }
     }
 
@@ -152,7 +163,7 @@ public class FastMultiLayerMethodLayout {
 
         var x = 0.0;
         var inEdge = (Edge) null;
-        var random = new Random();
+        var random = new Random(options.getRandSeed());
 
         do {
             nodeAttributes.get(v).setPosition(x, 0.1 * options.getUnitEdgeLength() * random.nextDouble());
@@ -178,7 +189,7 @@ public class FastMultiLayerMethodLayout {
         var total = graph.edgeStream().mapToDouble(e -> edgeAttributes.get(e).getLength()).sum();
         var v = graph.getFirstNode();
         var inEdge = (Edge) null;
-        var random = new Random();
+        var random = new Random(options.getRandSeed());
         var part = 0.0;
         var radius = total / (2 * Math.PI);
         var x = Math.cos(0) * radius;
@@ -207,7 +218,7 @@ public class FastMultiLayerMethodLayout {
         return true;
     }
 
-    private static void callForceCalculationStep(FastMultiLayerMethodOptions options, LayoutBox layoutBox, Graph graph, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes, int level, int maxLevel) {
+    private static void callForceCalculationStep(FastMultiLayerMethodOptions options, LayoutBox layoutBox, Graph graph, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes, int level, int maxLevel, ForkJoinPool pool) {
         final int ITERBOUND = 10000; //guarantees termination if stopCriterion() == Threshold
 
         if (graph.getNumberOfNodes() > 1) {
@@ -215,10 +226,8 @@ public class FastMultiLayerMethodLayout {
             var maxMultiIterations = getMaxMultiIterations(options, level, maxLevel, graph.getNumberOfNodes());
             var activeForceVectorLength = options.getThreshold() + 1.0;
 
-            NodeArray<DPoint> forces_rep = graph.newNodeArray();
-            NodeArray<DPoint> forces_attr = graph.newNodeArray();
-            NodeArray<DPoint> forces = graph.newNodeArray();
-            NodeArray<DPoint> lastNodeMovement = graph.newNodeArray(); //stores the force vectors F of the last iterations (needed to avoid oscillations)
+            final var layout = new LayoutArrays(graph, nodeAttributes, edgeAttributes);
+            final var forces = new ForceBuffers(layout, pool);
 
             var averageIdealEdgeLength = computeAverageIdealEdgeLength(graph, edgeAttributes);//needed for easy scaling of the forces
 
@@ -226,28 +235,29 @@ public class FastMultiLayerMethodLayout {
             while (((options.getStopCriterion() == FastMultiLayerMethodOptions.StopCriterion.FixedIterations) && (iter <= maxMultiIterations))
                     || ((options.getStopCriterion() == FastMultiLayerMethodOptions.StopCriterion.Threshold) && (activeForceVectorLength >= options.getThreshold()) && iter <= ITERBOUND)
                     || ((options.getStopCriterion() == FastMultiLayerMethodOptions.StopCriterion.FixedIterationsOrThreshold) && (iter <= maxMultiIterations) && (activeForceVectorLength >= options.getThreshold()))) {
-                calculateForces(options, graph, layoutBox, averageIdealEdgeLength, coolFactor, nodeAttributes, edgeAttributes, forces, forces_attr, forces_rep, lastNodeMovement, iter, options.getFineTuningIterations());
+                calculateForces(options, layout, layoutBox, averageIdealEdgeLength, coolFactor, forces, iter, options.getFineTuningIterations());
                 if (options.getStopCriterion() != FastMultiLayerMethodOptions.StopCriterion.FixedIterations)
-                    activeForceVectorLength = getAverageLength(forces);
+                    activeForceVectorLength = getAverageLength(forces.x, forces.y, layout.getNumberOfNodes());
                 iter++;
             }
+            layout.writePositions(nodeAttributes);
 
             if (level == 0) {
                 fixTwistedSplits(graph, nodeAttributes);
-                callPostprocessingStep(options, graph, layoutBox, averageIdealEdgeLength, nodeAttributes, edgeAttributes, forces, forces_attr, forces_rep, lastNodeMovement);
+                layout.readPositions(nodeAttributes);
+                callPostprocessingStep(options, layout, layoutBox, averageIdealEdgeLength, forces);
+                layout.writePositions(nodeAttributes);
             }
         }
     }
 
-    private static double getAverageLength(NodeArray<DPoint> points) {
+    private static double getAverageLength(double[] x, double[] y, int n) {
         var sum = 0.0;
-        var count = 0;
-        for (var point : points) {
-            sum += point.norm();
-            count++;
+        for (var i = 0; i < n; i++) {
+            sum += Math.sqrt(x[i] * x[i] + y[i] * y[i]);
         }
-        if (count > 0)
-            return sum / count;
+        if (n > 0)
+            return sum / n;
         else
             return 0;
     }
@@ -345,13 +355,13 @@ public class FastMultiLayerMethodLayout {
                 for (var v : diNodes) {
                     var u = v.getFirstAdjacentEdge().getOpposite(v);
                     var w = v.getLastAdjacentEdge().getOpposite(v);
-                    angles.put(v, DPoint.angle(nodeAttributes.get(u).getPosition(), nodeAttributes.get(v).getPosition(), nodeAttributes.get(w).getPosition()));
+                    angles.set(v, DPoint.angle(nodeAttributes.get(u).getPosition(), nodeAttributes.get(v).getPosition(), nodeAttributes.get(w).getPosition()));
                 }
-                diNodes.sort((v, w) -> Double.compare(Math.abs(Math.PI - angles.get(w)), Math.abs(Math.PI - angles.get(v))));
-                if (Math.abs(Math.PI - angles.get(diNodes.get(0))) < 0.1)
+                diNodes.sort((v, w) -> Double.compare(Math.abs(Math.PI - angles.getDouble(w)), Math.abs(Math.PI - angles.getDouble(v))));
+                if (Math.abs(Math.PI - angles.getDouble(diNodes.get(0))) < 0.1)
                     break;
                 for (var v : diNodes) {
-                    if (Math.abs(Math.PI - angles.get(diNodes.get(0))) < 0.1)
+                    if (Math.abs(Math.PI - angles.getDouble(diNodes.get(0))) < 0.1)
                         break;
                     var u = v.getFirstAdjacentEdge().getOpposite(v);
                     var w = v.getLastAdjacentEdge().getOpposite(v);
@@ -363,71 +373,75 @@ public class FastMultiLayerMethodLayout {
         }
     }
 
-    private static void callPostprocessingStep(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, double averageIdealEdgeLength, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes, NodeArray<DPoint> F, NodeArray<DPoint> F_attr, NodeArray<DPoint> F_rep, NodeArray<DPoint> lastNodeMovement) {
+    private static void callPostprocessingStep(FastMultiLayerMethodOptions options, LayoutArrays layout, LayoutBox layoutBox, double averageIdealEdgeLength, ForceBuffers forces) {
         {
             var coolFactor = new Single<>(0f);
             for (int i = 1; i <= 10; i++)
-                calculateForces(options, graph, layoutBox, averageIdealEdgeLength, coolFactor, nodeAttributes, edgeAttributes, F, F_attr, F_rep, lastNodeMovement, i, 1);
+                calculateForces(options, layout, layoutBox, averageIdealEdgeLength, coolFactor, forces, i, 1);
         }
         if (options.isResizeDrawing()) {
-            adaptDrawingToIdealAverageEdgeLength(options, graph, nodeAttributes, edgeAttributes);
-            layoutBox.update(graph, nodeAttributes);
+            adaptDrawingToIdealAverageEdgeLength(options, layout);
+            layoutBox.update(layout.getX(), layout.getY(), layout.getNumberOfNodes());
         }
 
         {
             var coolFactor = new Single<>(0f);
             for (int i = 1; i <= options.getFineTuningIterations(); i++)
-                calculateForces(options, graph, layoutBox, averageIdealEdgeLength, coolFactor, nodeAttributes, edgeAttributes, F, F_attr, F_rep, lastNodeMovement, i, 2);
+                calculateForces(options, layout, layoutBox, averageIdealEdgeLength, coolFactor, forces, i, 2);
         }
 
         if (options.isResizeDrawing())
-            adaptDrawingToIdealAverageEdgeLength(options, graph, nodeAttributes, edgeAttributes);
+            adaptDrawingToIdealAverageEdgeLength(options, layout);
 
     }
 
-    private static void adaptDrawingToIdealAverageEdgeLength(FastMultiLayerMethodOptions options, Graph graph, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes) {
+    private static void adaptDrawingToIdealAverageEdgeLength(FastMultiLayerMethodOptions options, LayoutArrays layout) {
+        final var x = layout.getX();
+        final var y = layout.getY();
         var sumIdealEdgeLength = 0.0;
         var sumRealEdgeLength = 0.0;
 
-        for (var e : graph.edges()) {
-            sumIdealEdgeLength += edgeAttributes.get(e).getLength();
-            sumRealEdgeLength += nodeAttributes.get(e.getTarget()).getPosition().distance(nodeAttributes.get(e.getSource()).getPosition());
+        for (var e = 0; e < layout.getNumberOfEdges(); e++) {
+            final var u = layout.getEdgeSource(e);
+            final var v = layout.getEdgeTarget(e);
+            sumIdealEdgeLength += layout.getEdgeLength(e);
+            sumRealEdgeLength += Math.sqrt((x[v] - x[u]) * (x[v] - x[u]) + (y[v] - y[u]) * (y[v] - y[u]));
         }
 
         var scalingFactor = (sumRealEdgeLength == 0 ? 1.0 : sumIdealEdgeLength / sumRealEdgeLength);
 
-        for (var v : graph.nodes()) {
-            var va = nodeAttributes.get(v);
-            va.setPosition(options.getResizingScalar() * scalingFactor * va.getX(), options.getResizingScalar() * scalingFactor * va.getY());
+        for (var v = 0; v < layout.getNumberOfNodes(); v++) {
+            x[v] = options.getResizingScalar() * scalingFactor * x[v];
+            y[v] = options.getResizingScalar() * scalingFactor * y[v];
         }
     }
 
-    private static void calculateForces(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, double averageIdealEdgeLength,
-                                        Single<Float> coolFactor, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes,
-                                        NodeArray<DPoint> forces, NodeArray<DPoint> forces_attr, NodeArray<DPoint> forces_rep,
-                                        NodeArray<DPoint> lastNodeMovement, int iter, int fineTuningStep) {
+    private static void calculateForces(FastMultiLayerMethodOptions options, LayoutArrays layout, LayoutBox layoutBox, double averageIdealEdgeLength,
+                                        Single<Float> coolFactor, ForceBuffers forces, int iter, int fineTuningStep) {
 
         if (options.getAllowedPositions() != FastMultiLayerMethodOptions.AllowedPositions.All)
-            makePositionsInteger(graph, layoutBox, averageIdealEdgeLength, nodeAttributes);
-
-        calculateAttractiveForces(options, graph, nodeAttributes, edgeAttributes, forces_attr);
-        calculateRepulsiveForces(options, graph, layoutBox, nodeAttributes, edgeAttributes, forces_rep);
-        addAttractiveRepulsiveForces(options, graph, layoutBox, averageIdealEdgeLength, coolFactor, forces_attr, forces_rep, forces, iter, fineTuningStep);
-        preventOscillations(graph, forces, lastNodeMovement, iter);
-        moveNodes(graph, nodeAttributes, forces);
-        layoutBox.update(graph, nodeAttributes);
+            makePositionsInteger(layout, layoutBox, averageIdealEdgeLength);
+
+        calculateAttractiveForces(options, layout, forces.attrX, forces.attrY, forces.pool);
+        calculateRepulsiveForces(options, layout, layoutBox, forces);
+        addAttractiveRepulsiveForces(options, layout.getNumberOfNodes(), layoutBox, averageIdealEdgeLength, coolFactor, forces, iter, fineTuningStep);
+        preventOscillations(layout.getNumberOfNodes(), forces, iter);
+        moveNodes(layout, forces.x, forces.y, forces.pool);
+        layoutBox.update(layout.getX(), layout.getY(), layout.getNumberOfNodes());
     }
 
-    private static void makePositionsInteger(Graph graph, LayoutBox layoutBox, double averageIdealEdgeLength, NodeArray<NodeAttributes> nodeAttributes) {
-        var maxIntegerPosition = 100 * averageIdealEdgeLength * graph.getNumberOfNodes() * graph.getNumberOfNodes();
+    private static void makePositionsInteger(LayoutArrays layout, LayoutBox layoutBox, double averageIdealEdgeLength) {
+        final var n = layout.getNumberOfNodes();
+        final var x = layout.getX();
+        final var y = layout.getY();
+        var maxIntegerPosition = 100 * averageIdealEdgeLength * n * n;
 
         //restrict positions to lie in [-max_integer_position,max_integer_position]
         //X [-max_integer_position,max_integer_position]
-        for (var v : graph.nodes()) {
-            var va = nodeAttributes.get(v);
-            if ((va.getX() > maxIntegerPosition) || (va.getY() > maxIntegerPosition) || (va.getX() < maxIntegerPosition * (-1.0)) || (va.getY() < maxIntegerPosition * (-1.0))) {
+        for (var v = 0; v < n; v++) {
+            if ((x[v] > maxIntegerPosition) || (y[v] > maxIntegerPosition) || (x[v] < maxIntegerPosition * (-1.0)) || (y[v] < maxIntegerPosition * (-1.0))) {
 
-                var oldPoint = new DPoint(va.getX(), va.getY());
+                var oldPoint = new DPoint(x[v], y[v]);
                 var lt = new DPoint(maxIntegerPosition * (-1.0), maxIntegerPosition);
                 var rt = new DPoint(maxIntegerPosition, maxIntegerPosition);
                 var lb = new DPoint(maxIntegerPosition * (-1.0), maxIntegerPosition * (-1.0));
@@ -440,23 +454,18 @@ public class FastMultiLayerMethodLayout {
                 var bottom_bound = new DLine(lb, rb);
 
                 var cross_point = new DPointMutable();
-                if (s.intersection(left_bound, cross_point)) {
-                    va.setPosition(cross_point);
-                } else if (s.intersection(right_bound, cross_point)) {
-                    va.setPosition(cross_point);
-                } else if (s.intersection(top_bound, cross_point)) {
-                    va.setPosition(cross_point);
-                } else if (s.intersection(bottom_bound, cross_point)) {
-                    va.setPosition(cross_point);
+                if (s.intersection(left_bound, cross_point) || s.intersection(right_bound, cross_point)
+                        || s.intersection(top_bound, cross_point) || s.intersection(bottom_bound, cross_point)) {
+                    x[v] = cross_point.getX();
+                    y[v] = cross_point.getY();
                 } else System.err.println("Error FMMMLayout:: makePositionsInteger()");
             }
         }
 
         //make positions integer
-        for (var v : graph.nodes()) {
-            var va = nodeAttributes.get(v);
-            var new_x = Math.floor(va.getX());
-            var new_y = Math.floor(va.getY());
+        for (var v = 0; v < n; v++) {
+            var new_x = Math.floor(x[v]);
+            var new_y = Math.floor(y[v]);
             if (new_x < layoutBox.getLeft()) {
                 layoutBox.setLength(layoutBox.getLength() + 2);
                 layoutBox.setLeft(layoutBox.getLeft() - 2);
@@ -465,54 +474,62 @@ public class FastMultiLayerMethodLayout {
                 layoutBox.setLength(layoutBox.getLength() + 2);
                 layoutBox.setDown(layoutBox.getLeft() - 2);
             }
-            va.setPosition(new_x, new_y);
+            x[v] = new_x;
+            y[v] = new_y;
         }
     }
 
-    private static void calculateAttractiveForces(FastMultiLayerMethodOptions options, Graph graph, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes, NodeArray<DPoint> force) {
-        //initialisation
-        for (var v : graph.nodes())
-            force.put(v, DPoint.ORIGIN);
-
-        //calculation
-        for (var e : graph.edges()) {
-            var u = e.getSource();
-            var v = e.getTarget();
-            var vector_v_minus_u = nodeAttributes.get(v).getPosition().subtract(nodeAttributes.get(u).getPosition());
-            var norm_v_minus_u = vector_v_minus_u.norm();
-            DPoint fu;
-            if (vector_v_minus_u.equals(DPoint.ORIGIN))
-                fu = DPoint.ORIGIN;
-            else // if(!N.f_near_machine_precision(norm_v_minus_u,f_u))
-            {
-                var scalar = attractionScalar(options, norm_v_minus_u, edgeAttributes.get(e).getLength()) / norm_v_minus_u;
-                fu = new DPoint(scalar * vector_v_minus_u.getX(), scalar * vector_v_minus_u.getY());
+    /**
+     * calculates the attractive forces. The force on each node is summed over its incident edges, so nodes can be processed in parallel
+     */
+    private static void calculateAttractiveForces(FastMultiLayerMethodOptions options, LayoutArrays layout, double[] fx, double[] fy, ForkJoinPool pool) {
+        final var x = layout.getX();
+        final var y = layout.getY();
+
+        ParallelRange.apply(pool, 0, layout.getNumberOfNodes(), NODES_PER_TASK, (from, to) -> {
+            for (var v = from; v < to; v++) {
+                var forceX = 0.0;
+                var forceY = 0.0;
+                for (var i = layout.getIncidenceStart(v); i < layout.getIncidenceStart(v + 1); i++) {
+                    final var e = layout.getIncidentEdge(i);
+                    final var u = (layout.getEdgeSource(e) == v ? layout.getEdgeTarget(e) : layout.getEdgeSource(e));
+                    final var dx = x[u] - x[v];
+                    final var dy = y[u] - y[v];
+                    if (dx != 0 || dy != 0) {
+                        final var norm_u_minus_v = Math.sqrt(dx * dx + dy * dy);
+                        final var scalar = attractionScalar(options, norm_u_minus_v, layout.getEdgeLength(e)) / norm_u_minus_v;
+                        forceX += scalar * dx;
+                        forceY += scalar * dy;
+                    }
+                }
+                fx[v] = forceX;
+                fy[v] = forceY;
             }
-            force.put(v, force.get(v).subtract(fu));
-            force.put(u, force.get(u).add(fu));
-        }
+        });
     }
 
-    private static void calculateRepulsiveForces(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes, NodeArray<DPoint> force) {
+    private static void calculateRepulsiveForces(FastMultiLayerMethodOptions options, LayoutArrays layout, LayoutBox layoutBox, ForceBuffers forces) {
+        final var n = layout.getNumberOfNodes();
         switch (options.getRepulsiveForcesCalculation()) {
             case Exact: {
-                FruchtermanReingold.calculateExactRepulsiveForces(graph, nodeAttributes, force);
+                FruchtermanReingold.calculateExactRepulsiveForces(layout.getX(), layout.getY(), n, forces.repX, forces.repY, forces.pool);
                 break;
             }
             default:
             case GridApproximation: {
-                FruchtermanReingold.calculateApproxRepulsiveForces(options, graph, layoutBox, nodeAttributes, force);
+                FruchtermanReingold.calculateApproxRepulsiveForces(options, layoutBox, layout.getX(), layout.getY(), n, forces.repX, forces.repY, forces.pool);
                 break;
             }
-            /*
-            default:
-                MultipoleMethod.calculate_repulsive_forces(options,graph,box, nodeAttributes, force);
+            case MultipoleMethod: {
+                if (forces.multipoleMethod == null)
+                    forces.multipoleMethod = new MultipoleMethod(options.getNmPrecision(), options.getNmParticlesInLeaves());
+                forces.multipoleMethod.calculateRepulsiveForces(layout.getX(), layout.getY(), n, forces.repX, forces.repY, forces.pool);
                 break;
-             */
+            }
         }
     }
 
-    private static void addAttractiveRepulsiveForces(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, double averageIdealEdgeLength, Single<Float> coolFactor, NodeArray<DPoint> force_attr, NodeArray<DPoint> force_rep, NodeArray<DPoint> force, int iter, int fineTuningStep) {
+    private static void addAttractiveRepulsiveForces(FastMultiLayerMethodOptions options, int n, LayoutBox layoutBox, double averageIdealEdgeLength, Single<Float> coolFactor, ForceBuffers forces, int iter, int fineTuningStep) {
         //set cool_factor
         if (!options.isCoolTemperature())
             coolFactor.set(1.0f);
@@ -545,39 +562,46 @@ public class FastMultiLayerMethodLayout {
         } else //adjustPostRepStrengthDynamically())
         {
             act_spring_strength = options.getPostSpringStrength();
-            act_rep_force_strength = getPostRepForceStrength(graph.getNumberOfNodes());
+            act_rep_force_strength = getPostRepForceStrength(n);
         }
 
-        for (var v : graph.nodes()) {
-            var force_attr_v = force_attr.get(v);
-            var force_rep_v = force_rep.get(v);
-
-            var force_v = new DPointMutable();
-
-            force_v.setX(act_spring_strength * force_attr_v.getX() + act_rep_force_strength * force_rep_v.getX());
-            force_v.setY(act_spring_strength * force_attr_v.getY() + act_rep_force_strength * force_rep_v.getY());
-            force_v.setX(averageIdealEdgeLength * averageIdealEdgeLength * force_v.getX());
-            force_v.setY(averageIdealEdgeLength * averageIdealEdgeLength * force_v.getY());
-
-            var norm_f = force_v.norm();
-            if (force_v.equals(DPoint.ORIGIN)) {
-                // nothing
-            } else if (NumericalStability.nearMachinePrecision(norm_f, force_v)) {
-                layoutBox.restrictToBox(force_v);
-            } else {
-                var scalar = Math.min(norm_f * coolFactor.get() * options.getForceScalingFactor(), layoutBox.computeMaxRadius(iter)) / norm_f;
-                force_v.setX(scalar * force_v.getX());
-                force_v.setY(scalar * force_v.getY());
+        final var maxRadius = layoutBox.computeMaxRadius(iter);
+        final var scale = coolFactor.get() * options.getForceScalingFactor();
+        final var springStrength = act_spring_strength;
+        final var repForceStrength = act_rep_force_strength;
+
+        ParallelRange.apply(forces.pool, 0, n, NODES_PER_TASK, (from, to) -> {
+            for (var v = from; v < to; v++) {
+                var fx = springStrength * forces.attrX[v] + repForceStrength * forces.repX[v];
+                var fy = springStrength * forces.attrY[v] + repForceStrength * forces.repY[v];
+                fx = averageIdealEdgeLength * averageIdealEdgeLength * fx;
+                fy = averageIdealEdgeLength * averageIdealEdgeLength * fy;
+
+                var norm_f = Math.sqrt(fx * fx + fy * fy);
+                if (fx == 0 && fy == 0) {
+                    // nothing
+                } else if (norm_f < NumericalStability.POS_SMALL_LIMIT || norm_f > NumericalStability.POS_BIG_LIMIT) { // rare
+                    var force_v = new DPointMutable(fx, fy);
+                    NumericalStability.nearMachinePrecision(norm_f, 31L * (31L * options.getRandSeed() + iter) + v, force_v);
+                    layoutBox.restrictToBox(force_v);
+                    fx = force_v.getX();
+                    fy = force_v.getY();
+                } else {
+                    var scalar = Math.min(norm_f * scale, maxRadius) / norm_f;
+                    fx = scalar * fx;
+                    fy = scalar * fy;
+                }
+                forces.x[v] = fx;
+                forces.y[v] = fy;
             }
-            force.put(v, force_v.asDPoint());
-        }
+        });
     }
 
     private static double getPostRepForceStrength(int n) {
         return Math.min(0.2, 400.0 / (double) n);
     }
 
-    private static void preventOscillations(Graph graph, NodeArray<DPoint> force, NodeArray<DPoint> lastNodeMovement, int iter) {
+    private static void preventOscillations(int n, ForceBuffers forces, int iter) {
         final double pi_times_1_over_6 = 0.52359878;
         final double pi_times_2_over_6 = 2 * pi_times_1_over_6;
         final double pi_times_3_over_6 = 3 * pi_times_1_over_6;
@@ -589,52 +613,112 @@ public class FastMultiLayerMethodLayout {
         final double pi_times_10_over_6 = 10 * pi_times_1_over_6;
         final double pi_times_11_over_6 = 11 * pi_times_1_over_6;
 
+        final var fx = forces.x;
+        final var fy = forces.y;
+        final var lastX = forces.lastX;
+        final var lastY = forces.lastY;
+
         if (iter == 1) { // initialize last node movement
-            for (var v : graph.nodes()) {
-                lastNodeMovement.put(v, force.get(v));
-            }
+            System.arraycopy(fx, 0, lastX, 0, n);
+            System.arraycopy(fy, 0, lastY, 0, n);
         } else if (iter > 1) {
-            for (var v : graph.nodes()) {
-                var force_new = force.get(v);
-                var norm_new = force_new.norm();
-                var force_old = lastNodeMovement.get(v);
-                var norm_old = force_old.norm();
-                if ((norm_new > 0) && (norm_old > 0)) {//if2
-                    var quot_old_new = norm_old / norm_new;
-
-                    //prevent oscillations
-                    var fi = DPoint.angle(DPoint.ORIGIN, force_old, force_new);
-                    if (((fi <= pi_times_1_over_6) || (fi >= pi_times_11_over_6)) && ((norm_new > (norm_old * 2.0)))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 2.0));
-                    } else if ((fi >= pi_times_1_over_6) && (fi <= pi_times_2_over_6) && (norm_new > (norm_old * 1.5))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 1.5));
-                    } else if ((fi >= pi_times_2_over_6) && (fi <= pi_times_3_over_6) && (norm_new > (norm_old))) {
-                        force.put(v, force_new.scaleBy(quot_old_new));
-                    } else if ((fi >= pi_times_3_over_6) && (fi <= pi_times_4_over_6) && (norm_new > (norm_old * 0.66666666))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 0.66666666));
-                    } else if ((fi >= pi_times_4_over_6) && (fi <= pi_times_5_over_6) && (norm_new > (norm_old * 0.5))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 0.5));
-                    } else if ((fi >= pi_times_5_over_6) && (fi <= pi_times_7_over_6) && (norm_new > (norm_old * 0.33333333))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 0.33333333));
-                    } else if ((fi >= pi_times_7_over_6) && (fi <= pi_times_8_over_6) && (norm_new > (norm_old * 0.5))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 0.5));
-                    } else if ((fi >= pi_times_8_over_6) && (fi <= pi_times_9_over_6) && (norm_new > (norm_old * 0.66666666))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 0.66666666));
-                    } else if ((fi >= pi_times_9_over_6) && (fi <= pi_times_10_over_6) && (norm_new > (norm_old))) {
-                        force.put(v, force_new.scaleBy(quot_old_new));
-                    } else if ((fi >= pi_times_10_over_6) && (fi <= pi_times_11_over_6) && (norm_new > (norm_old * 1.5))) {
-                        force.put(v, force_new.scaleBy(quot_old_new * 1.5));
+            ParallelRange.apply(forces.pool, 0, n, NODES_PER_TASK, (from, to) -> {
+                for (var v = from; v < to; v++) {
+                    var norm_new = Math.sqrt(fx[v] * fx[v] + fy[v] * fy[v]);
+                    var norm_old = Math.sqrt(lastX[v] * lastX[v] + lastY[v] * lastY[v]);
+                    if ((norm_new > 0) && (norm_old > 0)) {//if2
+                        var quot_old_new = norm_old / norm_new;
+
+                        //prevent oscillations
+                        var fi = angle(lastX[v], lastY[v], fx[v], fy[v]);
+                        var factor = 1.0;
+                        if (((fi <= pi_times_1_over_6) || (fi >= pi_times_11_over_6)) && ((norm_new > (norm_old * 2.0)))) {
+                            factor = quot_old_new * 2.0;
+                        } else if ((fi >= pi_times_1_over_6) && (fi <= pi_times_2_over_6) && (norm_new > (norm_old * 1.5))) {
+                            factor = quot_old_new * 1.5;
+                        } else if ((fi >= pi_times_2_over_6) && (fi <= pi_times_3_over_6) && (norm_new > (norm_old))) {
+                            factor = quot_old_new;
+                        } else if ((fi >= pi_times_3_over_6) && (fi <= pi_times_4_over_6) && (norm_new > (norm_old * 0.66666666))) {
+                            factor = quot_old_new * 0.66666666;
+                        } else if ((fi >= pi_times_4_over_6) && (fi <= pi_times_5_over_6) && (norm_new > (norm_old * 0.5))) {
+                            factor = quot_old_new * 0.5;
+                        } else if ((fi >= pi_times_5_over_6) && (fi <= pi_times_7_over_6) && (norm_new > (norm_old * 0.33333333))) {
+                            factor = quot_old_new * 0.33333333;
+                        } else if ((fi >= pi_times_7_over_6) && (fi <= pi_times_8_over_6) && (norm_new > (norm_old * 0.5))) {
+                            factor = quot_old_new * 0.5;
+                        } else if ((fi >= pi_times_8_over_6) && (fi <= pi_times_9_over_6) && (norm_new > (norm_old * 0.66666666))) {
+                            factor = quot_old_new * 0.66666666;
+                        } else if ((fi >= pi_times_9_over_6) && (fi <= pi_times_10_over_6) && (norm_new > (norm_old))) {
+                            factor = quot_old_new;
+                        } else if ((fi >= pi_times_10_over_6) && (fi <= pi_times_11_over_6) && (norm_new > (norm_old * 1.5))) {
+                            factor = quot_old_new * 1.5;
+                        }
+                        fx[v] *= factor;
+                        fy[v] *= factor;
                     }
+                    lastX[v] = fx[v];
+                    lastY[v] = fy[v];
                 }
-                lastNodeMovement.put(v, force.get(v));
-            }
+            });
         }
     }
 
-    private static void moveNodes(Graph graph, NodeArray<NodeAttributes> nodeAttributes, NodeArray<DPoint> forces) {
-        for (var v : graph.nodes()) {
-            var na = nodeAttributes.get(v);
-            na.setPosition(na.getPosition().add(forces.get(v)));
+    /**
+     * angle between two vectors, in the range 0 to 2*PI, as computed by DPoint.angle(DPoint.ORIGIN,(dx1,dy1),(dx2,dy2))
+     */
+    private static double angle(double dx1, double dy1, double dx2, double dy2) {
+        var norm = Math.sqrt((dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2));
+        var cosfi = (dx1 * dx2 + dy1 * dy2) / norm;
+
+        double fi;
+        if (cosfi >= 1.0)
+            fi = 0;
+        else if (cosfi <= -1.0)
+            fi = Math.PI;
+        else {
+            fi = Math.acos(cosfi);
+            if (dx1 * dy2 < dy1 * dx2) fi = -fi;
+            if (fi < 0) fi += 2 * Math.PI;
+        }
+        return fi;
+    }
+
+    private static void moveNodes(LayoutArrays layout, double[] fx, double[] fy, ForkJoinPool pool) {
+        final var x = layout.getX();
+        final var y = layout.getY();
+        ParallelRange.apply(pool, 0, layout.getNumberOfNodes(), NODES_PER_TASK, (from, to) -> {
+            for (var v = from; v < to; v++) {
+                x[v] += fx[v];
+                y[v] += fy[v];
+            }
+        });
+    }
+
+    /**
+     * buffers for the forces acting on the nodes, indexed as in LayoutArrays
+     */
+    private static class ForceBuffers {
+        final double[] attrX;
+        final double[] attrY;
+        final double[] repX;
+        final double[] repY;
+        final double[] x;
+        final double[] y;
+        final double[] lastX; //stores the force vectors F of the last iterations (needed to avoid oscillations)
+        final double[] lastY;
+        final ForkJoinPool pool; // used to process nodes in parallel, or null
+        MultipoleMethod multipoleMethod;
+
+        ForceBuffers(LayoutArrays layout, ForkJoinPool pool) {
+            this.pool = pool;
+            attrX = layout.newBuffer();
+            attrY = layout.newBuffer();
+            repX = layout.newBuffer();
+            repY = layout.newBuffer();
+            x = layout.newBuffer();
+            y = layout.newBuffer();
+            lastX = layout.newBuffer();
+            lastY = layout.newBuffer();
         }
     }
 
@@ -739,7 +823,7 @@ public class FastMultiLayerMethodLayout {
             }
         } else { // random
             layoutBox.init(graph, nodeAttributes);
-            var random = new Random();
+            var random = new Random(options.getRandSeed());
             if (options.getInitialPlacementForces() == FastMultiLayerMethodOptions.InitialPlacementForces.RandomTime)//(RANDOM based on actual CPU-time)
                 random.setSeed(System.currentTimeMillis());
             for (var v : graph.nodes()) {
@@ -70,7 +70,7 @@ public class FastMultiLayerMethodOptions {
     private int springStrength;
     private int repForcesStrength;
 
-    public enum RepulsiveForcesCalculation {Exact, GridApproximation /* , MultipoleMethod*/}
+    public enum RepulsiveForcesCalculation {Exact, GridApproximation, MultipoleMethod}
 
     private RepulsiveForcesCalculation repulsiveForcesCalculation;
 
@@ -100,6 +100,9 @@ public class FastMultiLayerMethodOptions {
 
     //setting options for different repulsive force calculation methods
     private int frGridQuotient;
+    private int nmPrecision;
+    private int nmParticlesInLeaves;
+    private int numberOfThreads;
 
     // options added by DHH
     private boolean useSimpleAlgorithmForChainsAndCycles;
@@ -131,7 +134,7 @@ public class FastMultiLayerMethodOptions {
         setForceModel(ForceModel.New);
         setSpringStrength(1);
         setRepForcesStrength(1);
-        setRepulsiveForcesCalculation(RepulsiveForcesCalculation.GridApproximation);
+        setRepulsiveForcesCalculation(RepulsiveForcesCalculation.MultipoleMethod);
         setStopCriterion(StopCriterion.FixedIterationsOrThreshold);
         setThreshold(0.01f);
         setFixedIterations(30);
@@ -151,6 +154,10 @@ public class FastMultiLayerMethodOptions {
 
         //setting options for different repulsive force calculation methods
         setFrGridQuotient(2);
+        setNmPrecision(4);
+        setNmParticlesInLeaves(25);
+
+        setNumberOfThreads(Runtime.getRuntime().availableProcessors());
 
         setUseSimpleAlgorithmForChainsAndCycles(true);
     }
@@ -404,6 +411,40 @@ public class FastMultiLayerMethodOptions {
         this.frGridQuotient = frGridQuotient;
     }
 
+    public int getNmPrecision() {
+        return nmPrecision;
+    }
+
+    /**
+     * number of terms used in the multipole and local expansions of the multipole method
+     */
+    public void setNmPrecision(int nmPrecision) {
+        this.nmPrecision = nmPrecision;
+    }
+
+    public int getNmParticlesInLeaves() {
+        return nmParticlesInLeaves;
+    }
+
+    /**
+     * maximal number of nodes in a leaf of the quad tree used by the multipole method
+     */
+    public void setNmParticlesInLeaves(int nmParticlesInLeaves) {
+        this.nmParticlesInLeaves = nmParticlesInLeaves;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * number of threads used for the force calculation and placement steps. The layout computed for a given
+     * random seed does not depend on this number
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
     public boolean isUseSimpleAlgorithmForChainsAndCycles() {
         return useSimpleAlgorithmForChainsAndCycles;
     }
@@ -23,19 +23,22 @@ import jloda.graph.Node;
 import jloda.graph.NodeArray;
 import jloda.graph.fmm.FastMultiLayerMethodOptions;
 import jloda.graph.fmm.geometry.DPoint;
-import jloda.graph.fmm.geometry.DPointMutable;
 import jloda.graph.fmm.geometry.LayoutBox;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * implementation of the fast multilayer method (note: without multipole algorithm)
+ * implementation of the exact and the grid-based repulsive forces of the fast multilayer method (the multipole method is implemented in MultipoleMethod)
+ * Forces are accumulated in primitive arrays indexed by node, see LayoutArrays, so that no objects are allocated per pair of nodes
  * Original C++ author: Stefan Hachul, original license: GPL
  * Reimplemented in Java by Daniel Huson, 3.2021
  */
 public class FruchtermanReingold {
+    private static final int CELLS_PER_TASK = 32;
+    private static final int NODES_PER_TASK = 64;
+
     /**
      * calculate exact repulsive forces using Fruchterman-Reingold
      *
@@ -44,92 +47,234 @@ public class FruchtermanReingold {
      * @param force
      */
     public static void calculateExactRepulsiveForces(Graph graph, NodeArray<NodeAttributes> nodeAttributes, NodeArray<DPoint> force) {
-        for (var v : graph.nodes()) {
-            force.put(v, DPoint.ORIGIN);
-        }
+        final var nodes = graph.getNodesAsList().toArray(new Node[0]);
+        final var x = new double[nodes.length];
+        final var y = new double[nodes.length];
+        final var fx = new double[nodes.length];
+        final var fy = new double[nodes.length];
+        getPositions(nodes, nodeAttributes, x, y);
+        calculateExactRepulsiveForces(x, y, nodes.length, fx, fy);
+        putForces(nodes, fx, fy, force);
+    }
 
-        for (var u : graph.nodes()) {
-            var pos_u = nodeAttributes.get(u).getPosition();
-            for (var v : graph.nodes(u)) {
-                var pos_v = nodeAttributes.get(v).getPosition();
-                if (pos_u.equals(pos_v)) {//if2  (Exception handling if two nodes have the same position)
-                    pos_u = NumericalStability.chooseDistinctRandomPointInRadiusEpsilon(pos_u);
-                }
-                var vector_v_minus_u = pos_v.subtract(pos_u);
-                var norm_v_minus_u = vector_v_minus_u.norm();
-                var f_rep_u_on_v = new DPointMutable();
+    /**
+     * calculate approximate repulsive forces using a grid, as suggested by Fruchterman-Reingold
+     */
+    public static void calculateApproxRepulsiveForces(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, NodeArray<NodeAttributes> nodeAttributes, NodeArray<DPoint> force) {
+        final var nodes = graph.getNodesAsList().toArray(new Node[0]);
+        final var x = new double[nodes.length];
+        final var y = new double[nodes.length];
+        final var fx = new double[nodes.length];
+        final var fy = new double[nodes.length];
+        getPositions(nodes, nodeAttributes, x, y);
+        calculateApproxRepulsiveForces(options, layoutBox, x, y, nodes.length, fx, fy, null);
+        putForces(nodes, fx, fy, force);
+    }
 
-                if (!NumericalStability.repulsionNearMachinePrecision(norm_v_minus_u, f_rep_u_on_v)) {
-                    var scalar = repulsionScalar(norm_v_minus_u) / norm_v_minus_u;
-                    f_rep_u_on_v.setPosition(vector_v_minus_u.scaleBy(scalar));
+    /**
+     * calculate exact repulsive forces using Fruchterman-Reingold
+     *
+     * @param x  x-coordinates of nodes
+     * @param y  y-coordinates of nodes
+     * @param n  number of nodes
+     * @param fx the x-components of the forces are written to this array
+     * @param fy the y-components of the forces are written to this array
+     */
+    public static void calculateExactRepulsiveForces(double[] x, double[] y, int n, double[] fx, double[] fy) {
+        Arrays.fill(fx, 0, n, 0);
+        Arrays.fill(fy, 0, n, 0);
+
+        for (var u = 0; u < n; u++) {
+            for (var v = u + 1; v < n; v++) {
+                final var dx = x[v] - x[u];
+                final var dy = y[v] - y[u];
+                final var distSquared = dx * dx + dy * dy;
+                final double forceX; // force of u on v
+                final double forceY;
+                if (distSquared > NumericalStability.POS_SMALL_LIMIT) {
+                    forceX = dx / distSquared;
+                    forceY = dy / distSquared;
+                } else {
+                    forceX = NumericalStability.coincidentRepulsionX(v, u);
+                    forceY = NumericalStability.coincidentRepulsionY(v, u);
                 }
-                force.put(v, force.get(v).add(f_rep_u_on_v));
-                force.put(u, force.get(u).subtract(f_rep_u_on_v));
+                fx[v] += forceX;
+                fy[v] += forceY;
+                fx[u] -= forceX;
+                fy[u] -= forceY;
             }
         }
     }
 
-    public static void calculateApproxRepulsiveForces(FastMultiLayerMethodOptions options, Graph graph, LayoutBox layoutBox, NodeArray<NodeAttributes> nodeAttributes, NodeArray<DPoint> force) {
-        for (var v : graph.nodes()) {
-            force.put(v, DPoint.ORIGIN);
-        }
+    /**
+     * calculate exact repulsive forces, summing the forces on each node separately, so that nodes can be processed in parallel
+     * and the result does not depend on the number of threads
+     *
+     * @param x    x-coordinates of nodes
+     * @param y    y-coordinates of nodes
+     * @param n    number of nodes
+     * @param fx   the x-components of the forces are written to this array
+     * @param fy   the y-components of the forces are written to this array
+     * @param pool fork-join pool used to process the nodes in parallel, or null
+     */
+    public static void calculateExactRepulsiveForces(double[] x, double[] y, int n, double[] fx, double[] fy, ForkJoinPool pool) {
+        ParallelRange.apply(pool, 0, n, NODES_PER_TASK, (from, to) -> {
+            for (var u = from; u < to; u++) {
+                final var xu = x[u];
+                final var yu = y[u];
+                var forceX = 0.0;
+                var forceY = 0.0;
+                for (var v = 0; v < n; v++) {
+                    if (v != u) {
+                        final var dx = xu - x[v];
+                        final var dy = yu - y[v];
+                        final var distSquared = dx * dx + dy * dy;
+                        if (distSquared > NumericalStability.POS_SMALL_LIMIT) {
+                            forceX += dx / distSquared;
+                            forceY += dy / distSquared;
+                        } else {
+                            forceX += NumericalStability.coincidentRepulsionX(u, v);
+                            forceY += NumericalStability.coincidentRepulsionY(u, v);
+                        }
+                    }
+                }
+                fx[u] = forceX;
+                fy[u] = forceY;
+            }
+        });
+    }
 
-        var size = (int) (Math.sqrt(graph.getNumberOfNodes()) / options.getFrGridQuotient());
+    /**
+     * calculate approximate repulsive forces using a grid, as suggested by Fruchterman-Reingold.
+     * Each node is repelled by all nodes in its own grid cell and the eight surrounding cells.
+     * Each node only accumulates its own force, so cells can be processed in parallel and the result does not depend on the number of threads
+     *
+     * @param options   options, provide the grid quotient
+     * @param layoutBox the layout box
+     * @param x         x-coordinates of nodes
+     * @param y         y-coordinates of nodes
+     * @param n         number of nodes
+     * @param fx        the x-components of the forces are written to this array
+     * @param fy        the y-components of the forces are written to this array
+     * @param pool      fork-join pool used to process the grid cells in parallel, or null
+     */
+    public static void calculateApproxRepulsiveForces(FastMultiLayerMethodOptions options, LayoutBox layoutBox, double[] x, double[] y, int n, double[] fx, double[] fy, ForkJoinPool pool) {
+        final var size = (int) (Math.sqrt(n) / options.getFrGridQuotient());
 
         if (size <= 1) {
-            calculateExactRepulsiveForces(graph, nodeAttributes, force);
+            calculateExactRepulsiveForces(x, y, n, fx, fy);
             return;
         }
 
-        final var grid = new Array2D<List<Node>>(size, size);
+        // sort nodes by grid cell, cell c contains cellNodes[cellStart[c]],...,cellNodes[cellStart[c+1]-1]
         final var gridBoxLength = layoutBox.getLength() / (double) (size);
+        final var cellOf = new int[n];
+        final var cellStart = new int[size * size + 1];
+        for (var v = 0; v < n; v++) {
+            final var row = Math.max(0, Math.min(size - 1, (int) ((x[v] - layoutBox.getLeft()) / gridBoxLength)));
+            final var col = Math.max(0, Math.min(size - 1, (int) ((y[v] - layoutBox.getDown()) / gridBoxLength)));
+            cellOf[v] = row * size + col;
+            cellStart[cellOf[v] + 1]++;
+        }
+        for (var c = 0; c < size * size; c++)
+            cellStart[c + 1] += cellStart[c];
+        final var cellNodes = new int[n];
+        {
+            final var next = Arrays.copyOf(cellStart, size * size);
+            for (var v = 0; v < n; v++)
+                cellNodes[next[cellOf[v]]++] = v;
+        }
 
-        for (var v : graph.nodes()) {
-            var va = nodeAttributes.get(v);
-            var x = va.getX() - layoutBox.getLeft();
-            var y = va.getY() - layoutBox.getDown();
-            var x_index = (int) (x / gridBoxLength);
-            var y_index = (int) (y / gridBoxLength);
-            grid.computeIfAbsent(x_index, y_index, (r, c) -> new ArrayList<>()).add(v);
+        final var task = new GridTask(size, cellStart, cellNodes, x, y, fx, fy, 0, size * size);
+        if (pool != null)
+            pool.invoke(task);
+        else
+            task.compute();
+    }
+
+    /**
+     * computes the grid-based repulsive forces for all nodes in a range of cells, splitting the range in fork-join fashion
+     */
+    private static class GridTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int size;
+        private final int[] cellStart;
+        private final int[] cellNodes;
+        private final double[] x;
+        private final double[] y;
+        private final double[] fx;
+        private final double[] fy;
+        private final int fromCell;
+        private final int toCell;
+
+        GridTask(int size, int[] cellStart, int[] cellNodes, double[] x, double[] y, double[] fx, double[] fy, int fromCell, int toCell) {
+            this.size = size;
+            this.cellStart = cellStart;
+            this.cellNodes = cellNodes;
+            this.x = x;
+            this.y = y;
+            this.fx = fx;
+            this.fy = fy;
+            this.fromCell = fromCell;
+            this.toCell = toCell;
         }
 
-        //force calculation
-
-        for (int row_u = 0; row_u < size; row_u++) {
-            for (int col_u = 0; col_u < size; col_u++) {
-                for (var u : grid.getOrDefault(row_u, col_u, Collections.emptyList())) {
-                    var pos_u = nodeAttributes.get(u).getPosition();
-                    for (var row_v = row_u; row_v <= row_u + 1 && row_v < size; row_v++) {
-                        for (var col_v = col_u; col_v <= col_u + 1 && col_v < size; col_v++) {
-                            for (var v : grid.getOrDefault(row_v, col_v, Collections.emptyList())) {
-                                var pos_v = nodeAttributes.get(v).getPosition();
-                                if (pos_u.equals(pos_v)) {
-                                    pos_u = NumericalStability.chooseDistinctRandomPointInRadiusEpsilon(pos_u);
-                                }
-                                var vector_v_minus_u = pos_v.subtract(pos_u);
-                                var norm_v_minus_u = vector_v_minus_u.norm();
-                                var f_rep_u_on_v = new DPointMutable();
-                                if (!NumericalStability.repulsionNearMachinePrecision(norm_v_minus_u, f_rep_u_on_v)) {
-                                    var scalar = repulsionScalar(norm_v_minus_u) / norm_v_minus_u;
-                                    f_rep_u_on_v.setPosition(vector_v_minus_u.scaleBy(scalar));
+        @Override
+        protected void compute() {
+            if (toCell - fromCell > CELLS_PER_TASK && getPool() != null) {
+                final var middle = (fromCell + toCell) >>> 1;
+                invokeAll(new GridTask(size, cellStart, cellNodes, x, y, fx, fy, fromCell, middle),
+                        new GridTask(size, cellStart, cellNodes, x, y, fx, fy, middle, toCell));
+                return;
+            }
+            for (var cell = fromCell; cell < toCell; cell++) {
+                final var row = cell / size;
+                final var col = cell % size;
+                for (var i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    final var u = cellNodes[i];
+                    final var xu = x[u];
+                    final var yu = y[u];
+                    var forceX = 0.0;
+                    var forceY = 0.0;
+                    for (var r = Math.max(0, row - 1); r <= row + 1 && r < size; r++) {
+                        for (var c = Math.max(0, col - 1); c <= col + 1 && c < size; c++) {
+                            final var other = r * size + c;
+                            for (var j = cellStart[other]; j < cellStart[other + 1]; j++) {
+                                final var v = cellNodes[j];
+                                if (v != u) {
+                                    final var dx = xu - x[v];
+                                    final var dy = yu - y[v];
+                                    final var distSquared = dx * dx + dy * dy;
+                                    if (distSquared > NumericalStability.POS_SMALL_LIMIT) {
+                                        forceX += dx / distSquared;
+                                        forceY += dy / distSquared;
+                                    } else {
+                                        forceX += NumericalStability.coincidentRepulsionX(u, v);
+                                        forceY += NumericalStability.coincidentRepulsionY(u, v);
+                                    }
                                 }
-                                force.put(v, force.get(v).add(f_rep_u_on_v));
-                                force.put(u, force.get(u).subtract(f_rep_u_on_v));
                             }
                         }
                     }
+                    fx[u] = forceX;
+                    fy[u] = forceY;
                 }
             }
         }
     }
 
-    private static double repulsionScalar(double d) {
-        if (d > 0) {
-            return 1 / d;
+    private static void getPositions(Node[] nodes, NodeArray<NodeAttributes> nodeAttributes, double[] x, double[] y) {
+        for (var i = 0; i < nodes.length; i++) {
+            final var attributes = nodeAttributes.get(nodes[i]);
+            x[i] = attributes.getX();
+            y[i] = attributes.getY();
+        }
+    }
 
-        } else {
-            System.err.println("Error: repulsionScalar(): d=0");
-            return 0;
+    private static void putForces(Node[] nodes, double[] fx, double[] fy, NodeArray<DPoint> force) {
+        for (var i = 0; i < nodes.length; i++) {
+            force.put(nodes[i], new DPoint(fx[i], fy[i]));
         }
     }
 }
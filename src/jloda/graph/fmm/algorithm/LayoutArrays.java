@@ -0,0 +1,167 @@
+/*
+ *  LayoutArrays.java Copyright (C) 2021.
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jloda.graph.fmm.algorithm;
+
+import jloda.graph.EdgeArray;
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.graph.NodeArray;
+
+import java.util.Arrays;
+
+/**
+ * dense, index-mapped representation of a graph used by the force calculation step of the fast multilayer method.
+ * Nodes are numbered 0..n-1 in the order of the graph and positions, forces and edges are kept in primitive arrays,
+ * so that the force calculation does not allocate objects
+ * Daniel Huson, 3.2021
+ */
+public class LayoutArrays {
+    private final Node[] nodes;
+    private final double[] x;
+    private final double[] y;
+
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private final double[] edgeLength;
+
+    private final int[] incidenceStart; // the edges incident to node v are incidentEdges[incidenceStart[v]..incidenceStart[v+1]-1]
+    private final int[] incidentEdges;
+
+    /**
+     * constructor
+     *
+     * @param graph          the graph
+     * @param nodeAttributes node attributes, provide the positions
+     * @param edgeAttributes edge attributes, provide the ideal edge lengths
+     */
+    public LayoutArrays(Graph graph, NodeArray<NodeAttributes> nodeAttributes, EdgeArray<EdgeAttributes> edgeAttributes) {
+        nodes = new Node[graph.getNumberOfNodes()];
+        x = new double[nodes.length];
+        y = new double[nodes.length];
+        final var node2index = graph.newNodeIntArray();
+        {
+            var i = 0;
+            for (var v : graph.nodes()) {
+                nodes[i] = v;
+                node2index.set(v, i++);
+            }
+        }
+        readPositions(nodeAttributes);
+
+        edgeSource = new int[graph.getNumberOfEdges()];
+        edgeTarget = new int[edgeSource.length];
+        edgeLength = new double[edgeSource.length];
+        {
+            var i = 0;
+            for (var e : graph.edges()) {
+                edgeSource[i] = node2index.getInt(e.getSource());
+                edgeTarget[i] = node2index.getInt(e.getTarget());
+                edgeLength[i++] = edgeAttributes.get(e).getLength();
+            }
+        }
+
+        incidenceStart = new int[nodes.length + 1];
+        incidentEdges = new int[2 * edgeSource.length];
+        for (var e = 0; e < edgeSource.length; e++) {
+            incidenceStart[edgeSource[e] + 1]++;
+            incidenceStart[edgeTarget[e] + 1]++;
+        }
+        for (var v = 0; v < nodes.length; v++)
+            incidenceStart[v + 1] += incidenceStart[v];
+        {
+            final var next = Arrays.copyOf(incidenceStart, nodes.length);
+            for (var e = 0; e < edgeSource.length; e++) {
+                incidentEdges[next[edgeSource[e]]++] = e;
+                incidentEdges[next[edgeTarget[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * copies the positions from the node attributes into this
+     */
+    public void readPositions(NodeArray<NodeAttributes> nodeAttributes) {
+        for (var i = 0; i < nodes.length; i++) {
+            final var attributes = nodeAttributes.get(nodes[i]);
+            x[i] = attributes.getX();
+            y[i] = attributes.getY();
+        }
+    }
+
+    /**
+     * copies the positions from this into the node attributes
+     */
+    public void writePositions(NodeArray<NodeAttributes> nodeAttributes) {
+        for (var i = 0; i < nodes.length; i++) {
+            nodeAttributes.get(nodes[i]).setPosition(x[i], y[i]);
+        }
+    }
+
+    /**
+     * creates a new force buffer, one entry per node and coordinate
+     */
+    public double[] newBuffer() {
+        return new double[nodes.length];
+    }
+
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    public Node getNode(int i) {
+        return nodes[i];
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public int getNumberOfEdges() {
+        return edgeSource.length;
+    }
+
+    public int getEdgeSource(int e) {
+        return edgeSource[e];
+    }
+
+    public int getEdgeTarget(int e) {
+        return edgeTarget[e];
+    }
+
+    public double getEdgeLength(int e) {
+        return edgeLength[e];
+    }
+
+    /**
+     * the edges incident to node v are getIncidentEdge(i) for i from getIncidenceStart(v) to getIncidenceStart(v+1)-1, in increasing order
+     */
+    public int getIncidenceStart(int v) {
+        return incidenceStart[v];
+    }
+
+    public int getIncidentEdge(int i) {
+        return incidentEdges[i];
+    }
+}
+
+// EOF
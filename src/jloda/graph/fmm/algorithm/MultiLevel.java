@@ -8,6 +8,7 @@ import jloda.util.Counter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -16,7 +17,7 @@ import java.util.Random;
  * Reimplemented in Java by Daniel Huson, 3.2021
  */
 public class MultiLevel {
-    private static final Random random = new Random();
+    private static final int NODES_PER_TASK = 256;
 
     /**
      * creates the multi-level representation
@@ -293,7 +294,7 @@ public class MultiLevel {
             var tEdgeLength = multiLevelNodeAttributes[level].get(e.getTarget()).getDedicatedSunDistance();
             var newLength = sEdgeLength + eLength + tEdgeLength;
             var eNew = multiLevelEdgeAttributes[level].get(e).getHigherLevelEdge();
-            newEdgeLengths.put(eNew, newLength);
+            newEdgeLengths.set(eNew, newLength);
 
             multiLevelNodeAttributes[level].get(e.getSource()).getLambdas().add(sEdgeLength / newLength);
             multiLevelNodeAttributes[level].get(e.getTarget()).getLambdas().add(tEdgeLength / newLength);
@@ -327,12 +328,12 @@ public class MultiLevel {
                 prev = e;
             else {
                 if (e.getSource() == prev.getSource() && e.getTarget() == prev.getTarget() || e.getSource() == prev.getTarget() && e.getTarget() == prev.getSource()) {
-                    newEdgeLengths.put(prev, newEdgeLengths.get(prev) + newEdgeLengths.get(e));
+                    newEdgeLengths.set(prev, newEdgeLengths.getDouble(prev) + newEdgeLengths.getDouble(e));
                     nextGraph.deleteEdge(e);
                     counter++;
                 } else {
                     if (counter > 1) {
-                        newEdgeLengths.put(prev, newEdgeLengths.get(prev) / counter);
+                        newEdgeLengths.set(prev, newEdgeLengths.getDouble(prev) / counter);
                         counter = 1;
                     }
                     prev = e;
@@ -340,34 +341,46 @@ public class MultiLevel {
             }
         }
         if (counter > 1)
-            newEdgeLengths.put(prev, newEdgeLengths.get(prev) / counter);
+            newEdgeLengths.set(prev, newEdgeLengths.getDouble(prev) / counter);
 
         for (var e : nextGraph.edges()) {
-            multiLevelEdgeAttributes[level + 1].get(e).setLength(newEdgeLengths.get(e));
+            multiLevelEdgeAttributes[level + 1].get(e).setLength(newEdgeLengths.getDouble(e));
         }
     }
 
-    public static void findInitialPlacementForLevel(int level, FastMultiLayerMethodOptions options, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes) {
-        setInitialPositionsOfSunNodes(level, multiLevelGraph, multiLevelNodeAttributes);
+    /**
+     * places the nodes of the given level, using the positions of the nodes of the next higher level.
+     * Sun nodes and placement sectors are computed in parallel, planet and moon nodes are placed sequentially,
+     * as each placement depends on the nodes placed before it
+     *
+     * @param random random number generator used to waggle positions
+     * @param pool   fork-join pool used to process nodes in parallel, or null
+     */
+    public static void findInitialPlacementForLevel(int level, FastMultiLayerMethodOptions options, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes,
+                                                    EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, Random random, ForkJoinPool pool) {
+        final var highNodes = multiLevelGraph[level + 1].getNodesAsList().toArray(new Node[0]);
+        setInitialPositionsOfSunNodes(level, highNodes, multiLevelNodeAttributes, pool);
         var pmNodes = new ArrayList<Node>();
-        setInitialPositionsOfPlanetAndModeNodes(level, options, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes, pmNodes);
-        setInitialPositionsOfPMNodes(level, options, multiLevelNodeAttributes, multiLevelEdgeAttributes, pmNodes);
+        setInitialPositionsOfPlanetAndModeNodes(level, options, highNodes, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes, pmNodes, random, pool);
+        setInitialPositionsOfPMNodes(level, options, multiLevelNodeAttributes, multiLevelEdgeAttributes, pmNodes, random);
     }
 
-    private static void setInitialPositionsOfSunNodes(int level, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes) {
-        //multiLevelNodeAttributes[level+1]=multiLevelGraph[level+1].newNodeArray();
-        for (var vHigh : multiLevelGraph[level + 1].nodes()) {
-            var na = multiLevelNodeAttributes[level + 1].get(vHigh);
-            var vAct = na.getLowerLevelNode();
-            multiLevelNodeAttributes[level].get(vAct).setPosition(na.getPosition());
-            multiLevelNodeAttributes[level].get(vAct).placed();
-        }
+    private static void setInitialPositionsOfSunNodes(int level, Node[] highNodes, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, ForkJoinPool pool) {
+        ParallelRange.apply(pool, 0, highNodes.length, NODES_PER_TASK, (from, to) -> {
+            for (var i = from; i < to; i++) {
+                var na = multiLevelNodeAttributes[level + 1].get(highNodes[i]);
+                var vAct = na.getLowerLevelNode();
+                multiLevelNodeAttributes[level].get(vAct).setPosition(na.getPosition());
+                multiLevelNodeAttributes[level].get(vAct).placed();
+            }
+        });
     }
 
-    private static void setInitialPositionsOfPlanetAndModeNodes(int level, FastMultiLayerMethodOptions options, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, ArrayList<Node> pmNodes) {
+    private static void setInitialPositionsOfPlanetAndModeNodes(int level, FastMultiLayerMethodOptions options, Node[] highNodes, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes,
+                                                                EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, ArrayList<Node> pmNodes, Random random, ForkJoinPool pool) {
         final var list = new ArrayList<DPoint>();
 
-        createAllPlacementSectors(multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes, level);
+        createAllPlacementSectors(highNodes, multiLevelGraph, multiLevelNodeAttributes, multiLevelEdgeAttributes, level, pool);
 
         for (var v : multiLevelGraph[level].nodes()) {
             var va = multiLevelNodeAttributes[level].get(v);
@@ -385,14 +398,14 @@ public class MultiLevel {
 
                         if (va.getDedicatedSunNode() == aa.getDedicatedSunNode() && aa.getType() != NodeAttributes.Type.Sun && aa.isPlaced()) {
                             var newPosition = calculatePosition(dedicatedSunPosition, aa.getPosition(),
-                                    va.getDedicatedSunDistance(), multiLevelEdgeAttributes[level].get(e).getLength());
+                                    va.getDedicatedSunDistance(), multiLevelEdgeAttributes[level].get(e).getLength(), random);
                             list.add(newPosition);
                         }
                     }
                 }
                 if (va.getLambdas().size() == 0) {
                     if (list.size() == 0) {
-                        var newPosition = createRandomPosition(dedicatedSunPosition, va.getDedicatedSunDistance(), va.getAngle1(), va.getAngle2());
+                        var newPosition = createRandomPosition(dedicatedSunPosition, va.getDedicatedSunDistance(), va.getAngle1(), va.getAngle2(), random);
                         list.add(newPosition);
                     }
                 } else {
@@ -401,7 +414,7 @@ public class MultiLevel {
                     for (var adjSun : va.getNeighborSunNodes()) {
                         var lambda = va.getLambdas().get(lambdaPos);
                         var adjSunPosition = multiLevelNodeAttributes[level].get(adjSun).getPosition();
-                        var newPosition = getWaggledInbetweenPosition(dedicatedSunPosition, adjSunPosition, lambda);
+                        var newPosition = getWaggledInbetweenPosition(dedicatedSunPosition, adjSunPosition, lambda, random);
                         list.add(newPosition);
                         lambdaPos = (lambdaPos + 1 < va.getLambdas().size() ? lambdaPos + 1 : 0);
                     }
@@ -412,115 +425,121 @@ public class MultiLevel {
         }
     }
 
-    private static void createAllPlacementSectors(Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, int level) {
-        var adjPositions = new ArrayList<DPoint>();
-
-        for (var vHigh : multiLevelGraph[level + 1].nodes()) {
-            var vha = multiLevelNodeAttributes[level + 1].get(vHigh);
-            adjPositions.clear();
-
-            var vHighPosition = vha.getPosition();
-            for (var eHigh : vHigh.adjacentEdges()) {
-                if (multiLevelEdgeAttributes[level + 1].get(eHigh).isExtraEdge()) {
-                    var wHigh = eHigh.getOpposite(vHigh);
-                    var wa = multiLevelNodeAttributes[level + 1].get(wHigh);
-                    var wHighPosition = new DPoint(wa.getX(), wa.getY());
-                    adjPositions.add(wHighPosition);
+    private static void createAllPlacementSectors(Node[] highNodes, Graph[] multiLevelGraph, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, int level, ForkJoinPool pool) {
+        ParallelRange.apply(pool, 0, highNodes.length, NODES_PER_TASK, (from, to) -> {
+            var adjPositions = new ArrayList<DPoint>();
+
+            for (var h = from; h < to; h++) {
+                var vHigh = highNodes[h];
+                var vha = multiLevelNodeAttributes[level + 1].get(vHigh);
+                adjPositions.clear();
+
+                var vHighPosition = vha.getPosition();
+                for (var eHigh : vHigh.adjacentEdges()) {
+                    if (multiLevelEdgeAttributes[level + 1].get(eHigh).isExtraEdge()) {
+                        var wHigh = eHigh.getOpposite(vHigh);
+                        var wa = multiLevelNodeAttributes[level + 1].get(wHigh);
+                        var wHighPosition = new DPoint(wa.getX(), wa.getY());
+                        adjPositions.add(wHighPosition);
+                    }
                 }
-            }
-            double angle_1;
-            double angle_2;
-            if (adjPositions.size() == 0) {
-                angle_1 = 0;
-                angle_2 = 6.2831853;
-            } else if (adjPositions.size() == 1) //special case
-            {
-                //create angle_1
-                var start_pos = adjPositions.get(0);
-                var xParallelPosition = new DPoint(vHighPosition.getX() + 1, vHighPosition.getY());
-                angle_1 = DPoint.angle(vHighPosition, xParallelPosition, start_pos);
-                //create angle_2
-                angle_2 = angle_1 + Math.PI;
-            } else { //usual case
-                int MAX = 10; //the biggest of at most MAX random selected sectors is choosen
-                int steps = 1;
-                var i = 0;
-
-                angle_1 = 0;
-                angle_2 = 0;
-                double act_angle_1;
-                double act_angle_2;
-
-                do {
-                    //create act_angle_1
-                    var startPos = adjPositions.get(i++);
+                double angle_1;
+                double angle_2;
+                if (adjPositions.size() == 0) {
+                    angle_1 = 0;
+                    angle_2 = 6.2831853;
+                } else if (adjPositions.size() == 1) //special case
+                {
+                    //create angle_1
+                    var start_pos = adjPositions.get(0);
                     var xParallelPosition = new DPoint(vHighPosition.getX() + 1, vHighPosition.getY());
-                    act_angle_1 = DPoint.angle(vHighPosition, xParallelPosition, startPos);
-                    //create act_angle_2
-                    boolean first_angle = true;
-                    double min_next_angle = 0;
-
-                    for (int j = 0; j < adjPositions.size(); j++) {
-                        var nextAngle = DPoint.angle(vHighPosition, startPos, adjPositions.get(j));
-                        if (j != i && (first_angle || nextAngle < min_next_angle)) {
-                            min_next_angle = nextAngle;
-                            first_angle = false;
+                    angle_1 = DPoint.angle(vHighPosition, xParallelPosition, start_pos);
+                    //create angle_2
+                    angle_2 = angle_1 + Math.PI;
+                } else { //usual case
+                    int MAX = 10; //the biggest of at most MAX random selected sectors is choosen
+                    int steps = 1;
+                    var i = 0;
+
+                    angle_1 = 0;
+                    angle_2 = 0;
+                    double act_angle_1;
+                    double act_angle_2;
+
+                    do {
+                        //create act_angle_1
+                        var startPos = adjPositions.get(i++);
+                        var xParallelPosition = new DPoint(vHighPosition.getX() + 1, vHighPosition.getY());
+                        act_angle_1 = DPoint.angle(vHighPosition, xParallelPosition, startPos);
+                        //create act_angle_2
+                        boolean first_angle = true;
+                        double min_next_angle = 0;
+
+                        for (int j = 0; j < adjPositions.size(); j++) {
+                            var nextAngle = DPoint.angle(vHighPosition, startPos, adjPositions.get(j));
+                            if (j != i && (first_angle || nextAngle < min_next_angle)) {
+                                min_next_angle = nextAngle;
+                                first_angle = false;
+                            }
                         }
+                        act_angle_2 = act_angle_1 + min_next_angle;
+                        if (i == 0 || ((act_angle_2 - act_angle_1) > (angle_2 - angle_1))) {
+                            angle_1 = act_angle_1;
+                            angle_2 = act_angle_2;
+                        }
+                        i++;
+                        steps++;
                     }
-                    act_angle_2 = act_angle_1 + min_next_angle;
-                    if (i == 0 || ((act_angle_2 - act_angle_1) > (angle_2 - angle_1))) {
-                        angle_1 = act_angle_1;
-                        angle_2 = act_angle_2;
-                    }
-                    i++;
-                    steps++;
-                }
-                while ((steps <= MAX) && i < adjPositions.size());
+                    while ((steps <= MAX) && i < adjPositions.size());
 
-                if (angle_1 == angle_2)
-                    angle_2 = angle_1 + Math.PI;
-            }
+                    if (angle_1 == angle_2)
+                        angle_2 = angle_1 + Math.PI;
+                }
 
-            var sunNode = vha.getLowerLevelNode();
-            multiLevelNodeAttributes[level].get(sunNode).setAngle1(angle_1);
-            multiLevelNodeAttributes[level].get(sunNode).setAngle2(angle_2);
-        } // for all nodes
+                var sunNode = vha.getLowerLevelNode();
+                multiLevelNodeAttributes[level].get(sunNode).setAngle1(angle_1);
+                multiLevelNodeAttributes[level].get(sunNode).setAngle2(angle_2);
+            } // for all nodes
+        });
 
         //import the angle values from the values of the dedicated sun nodes
-        for (var v : multiLevelGraph[level].nodes()) {
-            var va = multiLevelNodeAttributes[level].get(v);
-            var dedicatedSun = va.getDedicatedSunNode();
-            va.setAngle1(multiLevelNodeAttributes[level].get(dedicatedSun).getAngle1());
-            va.setAngle2(multiLevelNodeAttributes[level].get(dedicatedSun).getAngle2());
-        }
+        final var nodes = multiLevelGraph[level].getNodesAsList().toArray(new Node[0]);
+        ParallelRange.apply(pool, 0, nodes.length, NODES_PER_TASK, (from, to) -> {
+            for (var i = from; i < to; i++) {
+                var va = multiLevelNodeAttributes[level].get(nodes[i]);
+                var dedicatedSun = va.getDedicatedSunNode();
+                va.setAngle1(multiLevelNodeAttributes[level].get(dedicatedSun).getAngle1());
+                va.setAngle2(multiLevelNodeAttributes[level].get(dedicatedSun).getAngle2());
+            }
+        });
     }
 
-    private static DPoint calculatePosition(DPoint s, DPoint t, double dist_s, double dist_t) {
+    private static DPoint calculatePosition(DPoint s, DPoint t, double dist_s, double dist_t, Random random) {
         var dist_st = s.distance(t);
         var lambda = (dist_s + (dist_st - dist_s - dist_t) / 2) / dist_st;
 
         if (Double.isNaN(lambda))
             System.err.println("NaN");
-        return getWaggledInbetweenPosition(s, t, lambda);
+        return getWaggledInbetweenPosition(s, t, lambda, random);
     }
 
-    private static DPoint getWaggledInbetweenPosition(DPoint s, DPoint t, double lambda) {
+    private static DPoint getWaggledInbetweenPosition(DPoint s, DPoint t, double lambda, Random random) {
         final var WAGGLEFACTOR = 0.05;
         var inbetweenPoint = new DPoint(s.getX() + lambda * (t.getX() - s.getX()), s.getY() + lambda * (t.getY() - s.getY()));
         var dist_st = Math.sqrt((s.getX() - t.getX()) * (s.getX() - t.getX()) + (s.getY() - t.getY()) * (s.getY() - t.getY()));
         var radius = WAGGLEFACTOR * dist_st;
         var rand_radius = radius * random.nextDouble();
-        return createRandomPosition(inbetweenPoint, rand_radius, 0, 2 * Math.PI);
+        return createRandomPosition(inbetweenPoint, rand_radius, 0, 2 * Math.PI, random);
     }
 
-    private static DPoint createRandomPosition(DPoint center, double radius, double angle1, double angle2) {
+    private static DPoint createRandomPosition(DPoint center, double radius, double angle1, double angle2, Random random) {
         var rnd_angle = angle1 + (angle2 - angle1) * random.nextDouble();
         var dx = Math.cos(rnd_angle) * radius;
         var dy = Math.sin(rnd_angle) * radius;
         return new DPoint(center.getX() + dx, center.getY() + dy);
     }
 
-    private static void setInitialPositionsOfPMNodes(int level, FastMultiLayerMethodOptions options, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, ArrayList<Node> pmNodes) {
+    private static void setInitialPositionsOfPMNodes(int level, FastMultiLayerMethodOptions options, NodeArray<NodeAttributes>[] multiLevelNodeAttributes, EdgeArray<EdgeAttributes>[] multiLevelEdgeAttributes, ArrayList<Node> pmNodes, Random random) {
         var list = new ArrayList<DPoint>();
 
         for (var v : pmNodes) {
@@ -538,7 +557,7 @@ public class MultiLevel {
                     var ea = multiLevelEdgeAttributes[level].get(e);
 
                     if (!ea.isMoonEdge() && va.getDedicatedSunNode() == aa.getDedicatedSunNode() && aa.getType() != NodeAttributes.Type.Sun && aa.isPlaced()) {
-                        var newPosition = calculatePosition(sunPos, aa.getPosition(), sunDist, ea.getLength());
+                        var newPosition = calculatePosition(sunPos, aa.getPosition(), sunDist, ea.getLength(), random);
                         list.add(newPosition);
                     }
                 }
@@ -548,7 +567,7 @@ public class MultiLevel {
                 var moonPos = ma.getPosition();
                 var moonDist = ma.getDedicatedSunDistance();
                 var lambda = sunDist / moonDist;
-                var newPosition = getWaggledInbetweenPosition(sunPos, moonPos, lambda);
+                var newPosition = getWaggledInbetweenPosition(sunPos, moonPos, lambda, random);
                 list.add(newPosition);
             }
 
@@ -557,7 +576,7 @@ public class MultiLevel {
                 for (var adjSun : va.getNeighborSunNodes()) {
                     var lambda = va.getLambdas().get(i);
                     var adjSunPos = multiLevelNodeAttributes[level].get(adjSun).getPosition();
-                    var newPosition = getWaggledInbetweenPosition(sunPos, adjSunPos, lambda);
+                    var newPosition = getWaggledInbetweenPosition(sunPos, adjSunPos, lambda, random);
                     list.add(newPosition);
                     if (i + 1 < va.getLambdas().size() - 1)
                         i++;
@@ -0,0 +1,586 @@
+/*
+ *  MultipoleMethod.java Copyright (C) 2021.
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jloda.graph.fmm.algorithm;
+
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.graph.NodeArray;
+import jloda.graph.fmm.FastMultiLayerMethodOptions;
+import jloda.graph.fmm.geometry.DPoint;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * computes the repulsive forces of the fast multilayer method using the fast multipole method.
+ * Repulsion between two nodes at positions z and z' is (z-z')/|z-z'|^2, which is the complex conjugate of the
+ * derivative of log(z-z'). Nodes are placed in a reduced quad tree (empty quadrants are omitted and cells with only one non-empty
+ * quadrant are shrunk to it), multipole expansions are computed bottom-up, converted into local expansions for
+ * all pairs of well-separated cells (found by a simultaneous traversal of the tree with itself),
+ * and these are then shifted top-down and evaluated at the nodes. Nearby nodes interact directly.
+ * Runs in O(n log n) time per call.
+ * <p>
+ * The traversal only records the interacting pairs of cells. The local expansion of each cell and the force on each node are then
+ * accumulated separately, so these steps can be run in parallel and the result does not depend on the number of threads.
+ * <p>
+ * Expansions and translations follow: L. Greengard and V. Rokhlin, A fast algorithm for particle simulations, J. Comp. Phys. 73 (1987).
+ * The reduced quad tree follows the FM^3 implementation of Stefan Hachul (OGDF, GPL)
+ * Daniel Huson, 3.2021
+ */
+public class MultipoleMethod {
+    private static final int MAX_DEPTH = 40;
+    /**
+     * two cells are well separated if the sum of their radii is at most this factor times the distance of their centers
+     */
+    private static final double SEPARATION = 0.5;
+    private static final int CELLS_PER_TASK = 32;
+
+    private final int precision;
+    private final int particlesInLeaves;
+    private final double[][] binomial;
+
+    private int n;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] fx = new double[0];
+    private double[] fy = new double[0];
+    private int[] particles = new int[0];
+    private int[] buffer = new int[0];
+
+    private int numberOfCells;
+    private int[] start = new int[16];
+    private int[] end = new int[16];
+    private int[] firstChild = new int[16]; // children are consecutive, -1 for leaf
+    private int[] numberOfChildren = new int[16];
+    private double[] centerX = new double[16];
+    private double[] centerY = new double[16];
+    private double[] radius = new double[16];
+    private int[] depth = new int[16];
+    private double[] multipoleRe = new double[0]; // precision+1 coefficients per cell
+    private double[] multipoleIm = new double[0];
+    private double[] localRe = new double[0];
+    private double[] localIm = new double[0];
+
+    // scratch for complex powers
+    private final double[] powRe;
+    private final double[] powIm;
+
+    private int[] pairStack = new int[64];
+
+    // interacting pairs of cells, recorded in both directions, and sorted by the first cell
+    private int numberOfFarPairs;
+    private int[] farPairs = new int[64];
+    private int[] farStart = new int[0];
+    private int[] farCells = new int[0];
+    private int numberOfNearPairs;
+    private int[] nearPairs = new int[64];
+    private int[] nearStart = new int[0];
+    private int[] nearCells = new int[0];
+
+    /**
+     * constructor
+     *
+     * @param precision         number of terms of the multipole and local expansions
+     * @param particlesInLeaves maximal number of nodes in a leaf of the quad tree
+     */
+    public MultipoleMethod(int precision, int particlesInLeaves) {
+        this.precision = Math.max(1, precision);
+        this.particlesInLeaves = Math.max(1, particlesInLeaves);
+        binomial = new double[2 * this.precision + 1][2 * this.precision + 1];
+        for (var i = 0; i < binomial.length; i++) {
+            binomial[i][0] = 1;
+            for (var j = 1; j <= i; j++)
+                binomial[i][j] = binomial[i - 1][j - 1] + (j < i ? binomial[i - 1][j] : 0);
+        }
+        powRe = new double[2 * this.precision + 2];
+        powIm = new double[2 * this.precision + 2];
+    }
+
+    /**
+     * calculate repulsive forces using the fast multipole method
+     *
+     * @param options        options, provide precision and number of particles in leaves
+     * @param graph          the graph
+     * @param nodeAttributes node attributes, provide the positions
+     * @param force          the repulsive force on each node is written to this array
+     */
+    public static void calculateRepulsiveForces(FastMultiLayerMethodOptions options, Graph graph, NodeArray<NodeAttributes> nodeAttributes, NodeArray<DPoint> force) {
+        final var nodes = graph.getNodesAsList().toArray(new Node[0]);
+        final var x = new double[nodes.length];
+        final var y = new double[nodes.length];
+        for (var i = 0; i < nodes.length; i++) {
+            final var attributes = nodeAttributes.get(nodes[i]);
+            x[i] = attributes.getX();
+            y[i] = attributes.getY();
+        }
+        final var fx = new double[nodes.length];
+        final var fy = new double[nodes.length];
+        new MultipoleMethod(options.getNmPrecision(), options.getNmParticlesInLeaves()).calculateRepulsiveForces(x, y, nodes.length, fx, fy);
+        for (var i = 0; i < nodes.length; i++) {
+            force.put(nodes[i], new DPoint(fx[i], fy[i]));
+        }
+    }
+
+    /**
+     * calculate repulsive forces using the fast multipole method
+     *
+     * @param x  x-coordinates
+     * @param y  y-coordinates
+     * @param n  number of points
+     * @param fx the x-components of the forces are written to this array
+     * @param fy the y-components of the forces are written to this array
+     */
+    public void calculateRepulsiveForces(double[] x, double[] y, int n, double[] fx, double[] fy) {
+        calculateRepulsiveForces(x, y, n, fx, fy, null);
+    }
+
+    /**
+     * calculate repulsive forces using the fast multipole method
+     *
+     * @param x    x-coordinates
+     * @param y    y-coordinates
+     * @param n    number of points
+     * @param fx   the x-components of the forces are written to this array
+     * @param fy   the y-components of the forces are written to this array
+     * @param pool fork-join pool used to compute local expansions and forces in parallel, or null
+     */
+    public void calculateRepulsiveForces(double[] x, double[] y, int n, double[] fx, double[] fy, ForkJoinPool pool) {
+        this.n = n;
+        this.x = x;
+        this.y = y;
+        this.fx = fx;
+        this.fy = fy;
+        Arrays.fill(fx, 0, n, 0);
+        Arrays.fill(fy, 0, n, 0);
+        if (n < 2)
+            return;
+        buildTree();
+        computeMultipoleExpansions();
+        collectInteractions();
+        ParallelRange.apply(pool, 0, numberOfCells, CELLS_PER_TASK, this::computeLocalExpansions);
+        shiftLocalExpansions();
+        ParallelRange.apply(pool, 0, numberOfCells, CELLS_PER_TASK, this::computeForces);
+    }
+
+    /**
+     * builds the reduced quad tree
+     */
+    private void buildTree() {
+        if (particles.length < n) {
+            particles = new int[n];
+            buffer = new int[n];
+        }
+        for (var i = 0; i < n; i++)
+            particles[i] = i;
+
+        var minX = Double.MAX_VALUE;
+        var minY = Double.MAX_VALUE;
+        var maxX = -Double.MAX_VALUE;
+        var maxY = -Double.MAX_VALUE;
+        for (var i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        numberOfCells = 0;
+        newCell(0, n, 0.5 * (minX + maxX), 0.5 * (minY + maxY), 0.5 * Math.max(maxX - minX, maxY - minY));
+
+        // cells are processed in order of creation, so children always have larger indices than their parents
+        for (var cell = 0; cell < numberOfCells; cell++) {
+            var half = radius[cell] / Math.sqrt(2);
+            while (end[cell] - start[cell] > particlesInLeaves && depth[cell] < MAX_DEPTH) {
+                final var counts = partition(cell);
+                var nonEmpty = 0;
+                for (var c : counts)
+                    if (c > 0)
+                        nonEmpty++;
+                half *= 0.5;
+                depth[cell]++;
+                if (nonEmpty == 1) { // shrink the cell to its only non-empty quadrant
+                    final var q = firstNonEmpty(counts);
+                    centerX[cell] += ((q & 1) == 1 ? half : -half);
+                    centerY[cell] += ((q & 2) == 2 ? half : -half);
+                    radius[cell] = half * Math.sqrt(2);
+                } else {
+                    var from = start[cell];
+                    final var cx = centerX[cell];
+                    final var cy = centerY[cell];
+                    firstChild[cell] = numberOfCells;
+                    numberOfChildren[cell] = nonEmpty;
+                    for (var q = 0; q < 4; q++) {
+                        if (counts[q] > 0) {
+                            final var child = newCell(from, from + counts[q], cx + ((q & 1) == 1 ? half : -half), cy + ((q & 2) == 2 ? half : -half), half);
+                            depth[child] = depth[cell];
+                            from += counts[q];
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        final var size = numberOfCells * (precision + 1);
+        if (multipoleRe.length < size) {
+            multipoleRe = new double[size];
+            multipoleIm = new double[size];
+            localRe = new double[size];
+            localIm = new double[size];
+        } else {
+            Arrays.fill(multipoleRe, 0, size, 0);
+            Arrays.fill(multipoleIm, 0, size, 0);
+            Arrays.fill(localRe, 0, size, 0);
+            Arrays.fill(localIm, 0, size, 0);
+        }
+    }
+
+    /**
+     * sorts the particles of a cell by quadrant (0=SW, 1=SE, 2=NW, 3=NE) and returns the size of each quadrant
+     */
+    private int[] partition(int cell) {
+        final var counts = new int[4];
+        final var cx = centerX[cell];
+        final var cy = centerY[cell];
+        for (var i = start[cell]; i < end[cell]; i++) {
+            counts[quadrant(particles[i], cx, cy)]++;
+        }
+        final var offset = new int[]{start[cell], start[cell] + counts[0], start[cell] + counts[0] + counts[1], start[cell] + counts[0] + counts[1] + counts[2]};
+        for (var i = start[cell]; i < end[cell]; i++) {
+            final var p = particles[i];
+            buffer[offset[quadrant(p, cx, cy)]++] = p;
+        }
+        System.arraycopy(buffer, start[cell], particles, start[cell], end[cell] - start[cell]);
+        return counts;
+    }
+
+    private int quadrant(int p, double cx, double cy) {
+        return (x[p] >= cx ? 1 : 0) + (y[p] >= cy ? 2 : 0);
+    }
+
+    private static int firstNonEmpty(int[] counts) {
+        for (var q = 0; q < counts.length; q++)
+            if (counts[q] > 0)
+                return q;
+        return -1;
+    }
+
+    private int newCell(int from, int to, double cx, double cy, double halfSize) {
+        if (numberOfCells == start.length) {
+            final var length = 2 * start.length;
+            start = Arrays.copyOf(start, length);
+            end = Arrays.copyOf(end, length);
+            firstChild = Arrays.copyOf(firstChild, length);
+            numberOfChildren = Arrays.copyOf(numberOfChildren, length);
+            centerX = Arrays.copyOf(centerX, length);
+            centerY = Arrays.copyOf(centerY, length);
+            radius = Arrays.copyOf(radius, length);
+            depth = Arrays.copyOf(depth, length);
+        }
+        final var cell = numberOfCells++;
+        start[cell] = from;
+        end[cell] = to;
+        firstChild[cell] = -1;
+        numberOfChildren[cell] = 0;
+        centerX[cell] = cx;
+        centerY[cell] = cy;
+        radius[cell] = halfSize * Math.sqrt(2);
+        depth[cell] = 0;
+        return cell;
+    }
+
+    /**
+     * computes the multipole expansions of all cells, bottom-up
+     */
+    private void computeMultipoleExpansions() {
+        final var p = precision;
+        for (var cell = numberOfCells - 1; cell >= 0; cell--) {
+            final var base = cell * (p + 1);
+            if (firstChild[cell] == -1) { // leaf: a_0=number of particles, a_k=-sum (z_i-z_c)^k/k
+                multipoleRe[base] = end[cell] - start[cell];
+                for (var i = start[cell]; i < end[cell]; i++) {
+                    final var zr = x[particles[i]] - centerX[cell];
+                    final var zi = y[particles[i]] - centerY[cell];
+                    var pr = 1.0;
+                    var pi = 0.0;
+                    for (var k = 1; k <= p; k++) {
+                        final var tr = pr * zr - pi * zi;
+                        pi = pr * zi + pi * zr;
+                        pr = tr;
+                        multipoleRe[base + k] -= pr / k;
+                        multipoleIm[base + k] -= pi / k;
+                    }
+                }
+            } else { // shift expansions of children: b_l = -a_0 z^l/l + sum_{k=1}^l a_k z^(l-k) binomial(l-1,k-1)
+                for (var child = firstChild[cell]; child < firstChild[cell] + numberOfChildren[cell]; child++) {
+                    final var childBase = child * (p + 1);
+                    computePowers(centerX[child] - centerX[cell], centerY[child] - centerY[cell], p, powRe, powIm);
+                    final var a0 = multipoleRe[childBase];
+                    multipoleRe[base] += a0;
+                    for (var l = 1; l <= p; l++) {
+                        var re = -a0 * powRe[l] / l;
+                        var im = -a0 * powIm[l] / l;
+                        for (var k = 1; k <= l; k++) {
+                            final var c = binomial[l - 1][k - 1];
+                            final var ar = multipoleRe[childBase + k];
+                            final var ai = multipoleIm[childBase + k];
+                            re += c * (ar * powRe[l - k] - ai * powIm[l - k]);
+                            im += c * (ar * powIm[l - k] + ai * powRe[l - k]);
+                        }
+                        multipoleRe[base + l] += re;
+                        multipoleIm[base + l] += im;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * traverses all pairs of cells, starting with the root paired with itself. Well-separated pairs are recorded as far pairs,
+     * pairs of leaves that are not well separated are recorded as near pairs, and all other pairs are refined
+     */
+    private void collectInteractions() {
+        numberOfFarPairs = 0;
+        numberOfNearPairs = 0;
+        var top = 0;
+        pairStack[top++] = 0;
+        pairStack[top++] = 0;
+        while (top > 0) {
+            final var b = pairStack[--top];
+            final var a = pairStack[--top];
+            if (a == b) {
+                if (firstChild[a] == -1)
+                    addNearPair(a, a);
+                else {
+                    final var first = firstChild[a];
+                    final var last = first + numberOfChildren[a];
+                    for (var i = first; i < last; i++) {
+                        for (var j = i; j < last; j++) {
+                            top = push(top, i, j);
+                        }
+                    }
+                }
+            } else if (isWellSeparated(a, b)) {
+                addFarPair(a, b);
+                addFarPair(b, a);
+            } else if (firstChild[a] == -1 && firstChild[b] == -1) {
+                addNearPair(a, b);
+                addNearPair(b, a);
+            } else {
+                final var splitA = (firstChild[b] == -1 || (firstChild[a] != -1 && radius[a] >= radius[b]));
+                final var split = (splitA ? a : b);
+                final var other = (splitA ? b : a);
+                for (var child = firstChild[split]; child < firstChild[split] + numberOfChildren[split]; child++) {
+                    top = push(top, child, other);
+                }
+            }
+        }
+
+        if (farStart.length < numberOfCells + 1) {
+            farStart = new int[numberOfCells + 1];
+            nearStart = new int[numberOfCells + 1];
+        }
+        if (farCells.length < numberOfFarPairs)
+            farCells = new int[numberOfFarPairs];
+        if (nearCells.length < numberOfNearPairs)
+            nearCells = new int[numberOfNearPairs];
+        sortPairs(farPairs, numberOfFarPairs, farStart, farCells);
+        sortPairs(nearPairs, numberOfNearPairs, nearStart, nearCells);
+    }
+
+    private void addFarPair(int target, int source) {
+        if (2 * numberOfFarPairs + 2 > farPairs.length)
+            farPairs = Arrays.copyOf(farPairs, 2 * farPairs.length);
+        farPairs[2 * numberOfFarPairs] = target;
+        farPairs[2 * numberOfFarPairs + 1] = source;
+        numberOfFarPairs++;
+    }
+
+    private void addNearPair(int target, int source) {
+        if (2 * numberOfNearPairs + 2 > nearPairs.length)
+            nearPairs = Arrays.copyOf(nearPairs, 2 * nearPairs.length);
+        nearPairs[2 * numberOfNearPairs] = target;
+        nearPairs[2 * numberOfNearPairs + 1] = source;
+        numberOfNearPairs++;
+    }
+
+    /**
+     * stable counting sort of pairs by their first cell: the second cells of all pairs with first cell c are written to cells[cellStart[c]..cellStart[c+1]-1]
+     */
+    private void sortPairs(int[] pairs, int numberOfPairs, int[] cellStart, int[] cells) {
+        Arrays.fill(cellStart, 0, numberOfCells + 1, 0);
+        for (var i = 0; i < numberOfPairs; i++)
+            cellStart[pairs[2 * i] + 1]++;
+        for (var c = 0; c < numberOfCells; c++)
+            cellStart[c + 1] += cellStart[c];
+        for (var i = 0; i < numberOfPairs; i++) {
+            cells[cellStart[pairs[2 * i]]++] = pairs[2 * i + 1];
+        }
+        for (var c = numberOfCells; c > 0; c--)
+            cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+    }
+
+    private int push(int top, int a, int b) {
+        if (top + 2 > pairStack.length)
+            pairStack = Arrays.copyOf(pairStack, 2 * pairStack.length);
+        pairStack[top++] = a;
+        pairStack[top++] = b;
+        return top;
+    }
+
+    private boolean isWellSeparated(int a, int b) {
+        final var dx = centerX[a] - centerX[b];
+        final var dy = centerY[a] - centerY[b];
+        final var r = radius[a] + radius[b];
+        return r * r < SEPARATION * SEPARATION * (dx * dx + dy * dy);
+    }
+
+    /**
+     * computes the local expansions of a range of cells from the multipole expansions of all cells that they are well separated from
+     */
+    private void computeLocalExpansions(int fromCell, int toCell) {
+        final var powRe = new double[2 * precision + 2];
+        final var powIm = new double[2 * precision + 2];
+        for (var target = fromCell; target < toCell; target++) {
+            for (var i = farStart[target]; i < farStart[target + 1]; i++) {
+                addToLocalExpansion(target, farCells[i], powRe, powIm);
+            }
+        }
+    }
+
+    /**
+     * converts the multipole expansion of the source cell into a local expansion about the center of the target cell and adds it:
+     * b_l = -a_0/(l z^l) + 1/z^l sum_{k=1}^p (-1)^k a_k/z^k binomial(l+k-1,k-1), with z the center of the source relative to the target
+     */
+    private void addToLocalExpansion(int target, int source, double[] powRe, double[] powIm) {
+        final var p = precision;
+        final var sourceBase = source * (p + 1);
+        final var targetBase = target * (p + 1);
+        final var zr = centerX[source] - centerX[target];
+        final var zi = centerY[source] - centerY[target];
+        final var norm = zr * zr + zi * zi;
+        computePowers(zr / norm, -zi / norm, 2 * p, powRe, powIm); // powers of 1/z
+        final var a0 = multipoleRe[sourceBase];
+        for (var l = 1; l <= p; l++) {
+            var re = -a0 * powRe[l] / l;
+            var im = -a0 * powIm[l] / l;
+            for (var k = 1; k <= p; k++) {
+                final var c = ((k & 1) == 1 ? -binomial[l + k - 1][k - 1] : binomial[l + k - 1][k - 1]);
+                final var ar = multipoleRe[sourceBase + k];
+                final var ai = multipoleIm[sourceBase + k];
+                re += c * (ar * powRe[l + k] - ai * powIm[l + k]);
+                im += c * (ar * powIm[l + k] + ai * powRe[l + k]);
+            }
+            localRe[targetBase + l] += re;
+            localIm[targetBase + l] += im;
+        }
+    }
+
+    /**
+     * shifts local expansions top-down
+     */
+    private void shiftLocalExpansions() {
+        final var p = precision;
+        for (var cell = 0; cell < numberOfCells; cell++) {
+            final var base = cell * (p + 1);
+            // c_l = sum_{k>=l} b_k binomial(k,l) d^(k-l)
+            for (var child = firstChild[cell]; child < firstChild[cell] + numberOfChildren[cell]; child++) {
+                final var childBase = child * (p + 1);
+                computePowers(centerX[child] - centerX[cell], centerY[child] - centerY[cell], p, powRe, powIm);
+                for (var l = 1; l <= p; l++) {
+                    var re = 0.0;
+                    var im = 0.0;
+                    for (var k = l; k <= p; k++) {
+                        final var c = binomial[k][l];
+                        final var br = localRe[base + k];
+                        final var bi = localIm[base + k];
+                        re += c * (br * powRe[k - l] - bi * powIm[k - l]);
+                        im += c * (br * powIm[k - l] + bi * powRe[k - l]);
+                    }
+                    localRe[childBase + l] += re;
+                    localIm[childBase + l] += im;
+                }
+            }
+        }
+    }
+
+    /**
+     * computes the forces on all particles in the leaves of a range of cells, evaluating the local expansion of the leaf and adding
+     * the direct forces of all particles in the same or nearby leaves
+     */
+    private void computeForces(int fromCell, int toCell) {
+        final var p = precision;
+        for (var cell = fromCell; cell < toCell; cell++) {
+            if (firstChild[cell] == -1) {
+                final var base = cell * (p + 1);
+                for (var i = start[cell]; i < end[cell]; i++) {
+                    final var v = particles[i];
+                    final var xv = x[v];
+                    final var yv = y[v];
+                    // force is the conjugate of the derivative sum_{l>=1} l b_l w^(l-1)
+                    final var wr = xv - centerX[cell];
+                    final var wi = yv - centerY[cell];
+                    var re = 0.0;
+                    var im = 0.0;
+                    for (var l = p; l >= 1; l--) { // Horner
+                        final var tr = re * wr - im * wi + l * localRe[base + l];
+                        im = re * wi + im * wr + l * localIm[base + l];
+                        re = tr;
+                    }
+                    var forceX = re;
+                    var forceY = -im;
+                    for (var j = nearStart[cell]; j < nearStart[cell + 1]; j++) {
+                        final var other = nearCells[j];
+                        for (var k = start[other]; k < end[other]; k++) {
+                            final var u = particles[k];
+                            if (u != v) {
+                                final var dx = xv - x[u];
+                                final var dy = yv - y[u];
+                                final var distSquared = dx * dx + dy * dy;
+                                if (distSquared > NumericalStability.POS_SMALL_LIMIT) {
+                                    forceX += dx / distSquared;
+                                    forceY += dy / distSquared;
+                                } else { // rare: nodes on top of each other
+                                    forceX += NumericalStability.coincidentRepulsionX(v, u);
+                                    forceY += NumericalStability.coincidentRepulsionY(v, u);
+                                }
+                            }
+                        }
+                    }
+                    fx[v] = forceX;
+                    fy[v] = forceY;
+                }
+            }
+        }
+    }
+
+    /**
+     * computes powers 0..k of the complex number (re,im) into powRe and powIm
+     */
+    private static void computePowers(double re, double im, int k, double[] powRe, double[] powIm) {
+        powRe[0] = 1;
+        powIm[0] = 0;
+        for (var i = 1; i <= k; i++) {
+            powRe[i] = powRe[i - 1] * re - powIm[i - 1] * im;
+            powIm[i] = powRe[i - 1] * im + powIm[i - 1] * re;
+        }
+    }
+}
+
+// EOF
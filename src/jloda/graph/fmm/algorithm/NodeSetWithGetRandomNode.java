@@ -27,9 +27,9 @@ public class NodeSetWithGetRandomNode {
         int i = 0;
         for (var v : graph.nodes()) {
             array[i] = v;
-            positionInArray.put(v, i);
+            positionInArray.set(v, i);
             i++;
-            massOfStar.put(v, 1);
+            massOfStar.set(v, 1);
         }
         lastSelectableIndexOfNode = array.length - 1;
     }
@@ -42,9 +42,9 @@ public class NodeSetWithGetRandomNode {
         int i = 0;
         for (var v : graph.nodes()) {
             array[i] = v;
-            positionInArray.put(v, i);
+            positionInArray.set(v, i);
             i++;
-            massOfStar.put(v, nodeAttributes.get(v).getMass());
+            massOfStar.set(v, nodeAttributes.get(v).getMass());
         }
         lastSelectableIndexOfNode = array.length - 1;
 
@@ -55,17 +55,17 @@ public class NodeSetWithGetRandomNode {
     }
 
     public boolean isDeleted(Node v) {
-        return positionInArray.get(v) > lastSelectableIndexOfNode;
+        return positionInArray.getInt(v) > lastSelectableIndexOfNode;
     }
 
     public void delete(Node v) {
         if (!isDeleted(v)) {
-            var pos = positionInArray.get(v);
+            var pos = positionInArray.getInt(v);
             var w = array[lastSelectableIndexOfNode];
             array[pos] = w;
-            positionInArray.put(w, pos);
+            positionInArray.set(w, pos);
             array[lastSelectableIndexOfNode] = v;
-            positionInArray.put(v, lastSelectableIndexOfNode);
+            positionInArray.set(v, lastSelectableIndexOfNode);
             lastSelectableIndexOfNode--;
         }
     }
@@ -87,12 +87,12 @@ public class NodeSetWithGetRandomNode {
             var newRandomNode = array[newRandomIndex];
             array[last_trie_index] = newRandomNode;
             array[newRandomIndex] = lastTrieNode;
-            positionInArray.put(newRandomNode, last_trie_index);
-            positionInArray.put(lastTrieNode, newRandomIndex);
+            positionInArray.set(newRandomNode, last_trie_index);
+            positionInArray.set(lastTrieNode, newRandomIndex);
 
-            if (massOfStar.get(array[last_trie_index]) < minMass) {
+            if (massOfStar.getInt(array[last_trie_index]) < minMass) {
                 randomNode = array[last_trie_index];
-                minMass = massOfStar.get(randomNode);
+                minMass = massOfStar.getInt(randomNode);
             }
             i++;
             last_trie_index -= 1;
@@ -112,12 +112,12 @@ public class NodeSetWithGetRandomNode {
             var newRandomNode = array[newRandomIndex];
             array[last_trie_index] = newRandomNode;
             array[newRandomIndex] = lastTrieNode;
-            positionInArray.put(newRandomNode, last_trie_index);
-            positionInArray.put(lastTrieNode, newRandomIndex);
+            positionInArray.set(newRandomNode, last_trie_index);
+            positionInArray.set(lastTrieNode, newRandomIndex);
 
-            if (massOfStar.get(array[last_trie_index]) > maxMass) {
+            if (massOfStar.getInt(array[last_trie_index]) > maxMass) {
                 randomNode = array[last_trie_index];
-                maxMass = massOfStar.get(randomNode);
+                maxMass = massOfStar.getInt(randomNode);
             }
             i++;
             last_trie_index -= 1;
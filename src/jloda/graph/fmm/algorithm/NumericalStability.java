@@ -47,6 +47,20 @@ public class NumericalStability {
     }
 
     public static boolean nearMachinePrecision(double distance, DPointMutable force) {
+        return nearMachinePrecision(distance, force, random);
+    }
+
+    /**
+     * same as nearMachinePrecision(distance,force), but uses a random number generator with the given seed, so that the result is reproducible
+     */
+    public static boolean nearMachinePrecision(double distance, long seed, DPointMutable force) {
+        if (distance < POS_SMALL_LIMIT || distance > POS_BIG_LIMIT)
+            return nearMachinePrecision(distance, force, new Random(seed));
+        else
+            return false;
+    }
+
+    private static boolean nearMachinePrecision(double distance, DPointMutable force, Random random) {
         if (distance < POS_SMALL_LIMIT) {
             //create random number in range (0,1)
             double randx = random.nextDouble();
@@ -127,4 +141,25 @@ public class NumericalStability {
             return oldPoint;
         }
     }
+
+    /**
+     * x-component of the repulsive force on node u exerted by node v, when both are at the same position.
+     * The force has magnitude 1/epsilon^2 and a pseudo-random direction that only depends on u and v, so layouts are reproducible
+     * and the force on v is opposite to the force on u
+     */
+    public static double coincidentRepulsionX(int u, int v) {
+        return (u < v ? 1 : -1) * Math.cos(coincidentAngle(u, v)) / (epsilon * epsilon);
+    }
+
+    /**
+     * y-component of the repulsive force on node u exerted by node v, when both are at the same position
+     */
+    public static double coincidentRepulsionY(int u, int v) {
+        return (u < v ? 1 : -1) * Math.sin(coincidentAngle(u, v)) / (epsilon * epsilon);
+    }
+
+    private static double coincidentAngle(int u, int v) {
+        final long hash = (Math.min(u, v) * 0x9E3779B97F4A7C15L) ^ (Math.max(u, v) * 0xC2B2AE3D27D4EB4FL);
+        return 2 * Math.PI * ((hash >>> 11) * 0x1.0p-53);
+    }
 }
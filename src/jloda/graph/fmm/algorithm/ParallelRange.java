@@ -0,0 +1,77 @@
+/*
+ *  ParallelRange.java Copyright (C) 2021.
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jloda.graph.fmm.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * applies a body to a range of indices, split into sub-ranges that are processed in parallel by a fork-join pool.
+ * Bodies must only write to entries that belong to their own indices, so that the result does not depend on the number of threads
+ * Daniel Huson, 3.2021
+ */
+public class ParallelRange extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int grainSize;
+    private final Body body;
+
+    private ParallelRange(int from, int to, int grainSize, Body body) {
+        this.from = from;
+        this.to = to;
+        this.grainSize = grainSize;
+        this.body = body;
+    }
+
+    /**
+     * applies the body to all indices from-(to-1)
+     *
+     * @param pool      the fork-join pool, or null, to run sequentially
+     * @param from      first index
+     * @param to        last index plus one
+     * @param grainSize ranges of at most this size are not split
+     * @param body      the body
+     */
+    public static void apply(ForkJoinPool pool, int from, int to, int grainSize, Body body) {
+        if (pool == null || pool.getParallelism() < 2 || to - from <= grainSize)
+            body.apply(from, to);
+        else
+            pool.invoke(new ParallelRange(from, to, Math.max(1, grainSize), body));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > grainSize) {
+            final var middle = (from + to) >>> 1;
+            invokeAll(new ParallelRange(from, middle, grainSize, body), new ParallelRange(middle, to, grainSize, body));
+        } else
+            body.apply(from, to);
+    }
+
+    /**
+     * body applied to a range of indices
+     */
+    public interface Body {
+        void apply(int from, int to);
+    }
+}
+
+// EOF
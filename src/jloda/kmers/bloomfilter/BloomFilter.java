@@ -26,6 +26,7 @@ import jloda.util.ByteOutputBuffer;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * implementation of a Bloom filter
@@ -39,7 +40,10 @@ public class BloomFilter {
     private final LongBitSet bitSet;
     private final long totalBits;
     private final long hashBits;
-    private int itemsAdded = 0;
+    private volatile int itemsAdded = 0;
+
+    private static final AtomicIntegerFieldUpdater<BloomFilter> itemsAddedUpdater = AtomicIntegerFieldUpdater.newUpdater(BloomFilter.class, "itemsAdded");
+    private final Object[] stripes = createStripes(); // adds of the same item always lock the same stripe, so that adding is thread-safe
 
     /**
      * basic constructor
@@ -153,17 +157,59 @@ public class BloomFilter {
      *
      * @return true, if definitely newly added
      */
-    public synchronized boolean add(byte[] string, int offset, int length) {
+    public boolean add(byte[] string, int offset, int length) {
         boolean definitelyAdded = false;
-        for (int i = 0; i < numberOfHashFunctions; i++) {
-            long hash = Math.abs(MurmurHash.hash64(string, offset, length, i));
-            if (bitSet.add(hash & hashBits))
-                definitelyAdded = true;
+        final long firstHash = MurmurHash.hash64(string, offset, length, 0);
+        synchronized (stripes[(int) (firstHash & 1023)]) {
+            for (int i = 0; i < numberOfHashFunctions; i++) {
+                long hash = Math.abs(i == 0 ? firstHash : MurmurHash.hash64(string, offset, length, i));
+                if (bitSet.add(hash & hashBits))
+                    definitelyAdded = true;
+            }
         }
-        itemsAdded++;
+        itemsAddedUpdater.incrementAndGet(this);
         return definitelyAdded;
     }
 
+    /**
+     * adds an item given by a well-mixed 64-bit key, such as a k-mer hash value. The hash functions are derived from the key by double hashing
+     *
+     * @return true, if definitely newly added
+     */
+    public boolean add(long key) {
+        final long h2 = mix64(key) | 1L;
+        boolean definitelyAdded = false;
+        long hash = key;
+        synchronized (stripes[(int) (h2 >>> 54)]) {
+            for (int i = 0; i < numberOfHashFunctions; i++) {
+                if (bitSet.add((hash & Long.MAX_VALUE) & hashBits))
+                    definitelyAdded = true;
+                hash += h2;
+            }
+        }
+        itemsAddedUpdater.incrementAndGet(this);
+        return definitelyAdded;
+    }
+
+    private static Object[] createStripes() {
+        final Object[] stripes = new Object[1024];
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new Object();
+        return stripes;
+    }
+
+    /**
+     * finalization step of 64-bit MurmurHash3
+     */
+    private static long mix64(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
     /**
      * adds a string
      *
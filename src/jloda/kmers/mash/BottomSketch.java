@@ -0,0 +1,206 @@
+/*
+ * BottomSketch.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.kmers.mash;
+
+import java.util.Arrays;
+
+/**
+ * maintains the sketchSize smallest distinct hash values seen so far and, optionally, the corresponding k-mers.
+ * Uses a primitive long max-heap together with an open-addressing hash set, so no objects are created per candidate
+ * Daniel Huson, 2021
+ */
+class BottomSketch {
+    private static final long EMPTY = Long.MAX_VALUE; // never kept, as only values smaller than the current maximum are accepted
+
+    private final int sketchSize;
+    private final long[] heap; // max-heap, heap[0] is largest kept value
+    private final byte[][] heapKMers; // k-mers parallel to heap, or null
+    private int size = 0;
+
+    private final long[] table; // open-addressing set of values in heap
+    private final int mask;
+    private final int shift;
+
+    /**
+     * constructor
+     *
+     * @param sketchSize number of values to keep
+     * @param saveKMers  keep the k-mer associated with each value?
+     */
+    BottomSketch(int sketchSize, boolean saveKMers) {
+        this.sketchSize = sketchSize;
+        heap = new long[sketchSize];
+        heapKMers = saveKMers ? new byte[sketchSize][] : null;
+        var capacity = Integer.highestOneBit(Math.max(2, 2 * sketchSize - 1)) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    boolean isSaveKMers() {
+        return heapKMers != null;
+    }
+
+    /**
+     * is the given hash value smaller than the largest one currently kept, or is the sketch not yet full?
+     */
+    boolean accepts(long hash) {
+        return hash != EMPTY && (size < sketchSize ? sketchSize > 0 : hash < heap[0]);
+    }
+
+    /**
+     * adds a hash value that was accepted. The k-mer is only used (and copied) when saving k-mers
+     */
+    void add(long hash, byte[] kMer) {
+        if (!insertIntoTable(hash))
+            return; // already present
+        final byte[] kMerCopy = (heapKMers != null ? kMer.clone() : null);
+        if (size < sketchSize) {
+            var pos = size++;
+            while (pos > 0) {
+                var parent = (pos - 1) >>> 1;
+                if (heap[parent] >= hash)
+                    break;
+                heap[pos] = heap[parent];
+                if (heapKMers != null)
+                    heapKMers[pos] = heapKMers[parent];
+                pos = parent;
+            }
+            heap[pos] = hash;
+            if (heapKMers != null)
+                heapKMers[pos] = kMerCopy;
+        } else {
+            removeFromTable(heap[0]);
+            var pos = 0;
+            while (true) {
+                var child = 2 * pos + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && heap[child + 1] > heap[child])
+                    child++;
+                if (heap[child] <= hash)
+                    break;
+                heap[pos] = heap[child];
+                if (heapKMers != null)
+                    heapKMers[pos] = heapKMers[child];
+                pos = child;
+            }
+            heap[pos] = hash;
+            if (heapKMers != null)
+                heapKMers[pos] = kMerCopy;
+        }
+    }
+
+    /**
+     * number of values currently kept
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * get the kept values in ascending order
+     */
+    long[] getSortedValues() {
+        var values = Arrays.copyOf(heap, size);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * adds all values (and k-mers) kept by another bottom sketch, so that this keeps the smallest values of the union
+     */
+    void addAll(BottomSketch other) {
+        for (var i = 0; i < other.size; i++) {
+            final var hash = other.heap[i];
+            if (accepts(hash))
+                add(hash, heapKMers != null ? other.heapKMers[i] : null);
+        }
+    }
+
+    /**
+     * sets the hash values and k-mers of the sketch. The k-mers are given in the same order as the values
+     *
+     * @param reportTooFew report, if fewer values than the sketch size were seen
+     */
+    void apply(MashSketch sketch, boolean reportTooFew) {
+        if (reportTooFew && size < sketchSize)
+            System.err.printf("Warning: Computing sketch %s: Too few k-mers: %,d of %,d%n", sketch.getName(), size, sketchSize);
+        if (heapKMers == null)
+            sketch.setValues(getSortedValues());
+        else {
+            final var order = new Integer[size];
+            for (var i = 0; i < size; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(heap[a], heap[b]));
+            final var values = new long[size];
+            final var kMers = new byte[size][];
+            for (var i = 0; i < size; i++) {
+                values[i] = heap[order[i]];
+                kMers[i] = heapKMers[order[i]];
+            }
+            sketch.setValues(values);
+            sketch.setKMers(kMers);
+        }
+    }
+
+    private int slot(long hash) {
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * @return true, if newly inserted
+     */
+    private boolean insertIntoTable(long hash) {
+        var i = slot(hash);
+        while (table[i] != EMPTY) {
+            if (table[i] == hash)
+                return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+        return true;
+    }
+
+    /**
+     * removes a value using backward-shift deletion, so that no tombstones are needed
+     */
+    private void removeFromTable(long hash) {
+        var i = slot(hash);
+        while (table[i] != hash) {
+            i = (i + 1) & mask;
+        }
+        var j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == EMPTY)
+                break;
+            var home = slot(table[j]);
+            // move table[j] into the gap at i, unless its home lies cyclically in (i, j]
+            if (i <= j ? (i < home && home <= j) : (i < home || home <= j))
+                continue;
+            table[i] = table[j];
+            i = j;
+        }
+        table[i] = EMPTY;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * MashDistanceMatrix.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.kmers.mash;
+
+import jloda.kmers.GenomeDistanceType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * computes all-vs-all or query-vs-database mash distances using multiple threads. Sketches are processed in tiles
+ * of pairs so that the sketches being compared stay in cache. If a maximum distance is set, then each merge of two
+ * sketches is abandoned as soon as the intersection can no longer become large enough
+ * Daniel Huson, 2021
+ */
+public class MashDistanceMatrix {
+    private final List<MashSketch> sketches;
+    private final int sketchSize;
+    private final int kSize;
+
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+    private int tileSize = 64;
+    private double maxDistance = Double.POSITIVE_INFINITY;
+    private GenomeDistanceType genomeDistanceType = GenomeDistanceType.Mash;
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder earlyExits = new LongAdder();
+    private long nanosElapsed;
+
+    /**
+     * consumes a distance computed for a pair of sketches
+     */
+    public interface DistanceConsumer {
+        void accept(int i, int j, float distance);
+    }
+
+    /**
+     * constructor
+     *
+     * @param sketches the sketches, must all be comparable
+     */
+    public MashDistanceMatrix(List<MashSketch> sketches) {
+        if (sketches.size() == 0)
+            throw new IllegalArgumentException("No sketches");
+        checkComparable(sketches.get(0), sketches);
+        this.sketches = sketches;
+        this.sketchSize = sketches.get(0).getSketchSize();
+        this.kSize = sketches.get(0).getkSize();
+    }
+
+    /**
+     * computes all pairwise distances
+     *
+     * @return lower triangle, with distance of i and j&lt;i in entry [i][j]. Distances larger than the maximum distance are set to {@link Float#POSITIVE_INFINITY}
+     */
+    public float[][] computeAllVsAll() {
+        final var triangle = new float[sketches.size()][];
+        for (var i = 0; i < triangle.length; i++)
+            triangle[i] = new float[i];
+        run(sketches, true, (i, j, d) -> triangle[i][j] = d, false);
+        return triangle;
+    }
+
+    /**
+     * computes all pairwise distances and reports all pairs i&gt;j whose distance does not exceed the maximum distance.
+     * The consumer is called by one thread at a time
+     */
+    public void computeAllVsAll(DistanceConsumer consumer) {
+        run(sketches, true, consumer, true);
+    }
+
+    /**
+     * computes the distances between all queries and all sketches of this database
+     *
+     * @return matrix with distance of query q and database sketch i in entry [q][i]. Distances larger than the maximum distance are set to {@link Float#POSITIVE_INFINITY}
+     */
+    public float[][] computeQueryVsDatabase(List<MashSketch> queries) {
+        checkComparable(sketches.get(0), queries);
+        final var matrix = new float[queries.size()][sketches.size()];
+        run(queries, false, (q, i, d) -> matrix[q][i] = d, false);
+        return matrix;
+    }
+
+    /**
+     * computes the distances between all queries and all sketches of this database and reports all pairs (query, database sketch)
+     * whose distance does not exceed the maximum distance. The consumer is called by one thread at a time
+     */
+    public void computeQueryVsDatabase(List<MashSketch> queries, DistanceConsumer consumer) {
+        checkComparable(sketches.get(0), queries);
+        run(queries, false, consumer, true);
+    }
+
+    /**
+     * get the distance of i and j from a triangle computed by {@link #computeAllVsAll()}
+     */
+    public static float get(float[][] triangle, int i, int j) {
+        if (i > j)
+            return triangle[i][j];
+        else if (i < j)
+            return triangle[j][i];
+        else
+            return 0f;
+    }
+
+    /**
+     * runs the computation. If allVsAll, then rows are the database sketches and only pairs row&gt;col are compared
+     *
+     * @param onlyReportClose if true, only distances not exceeding the maximum distance are passed on to the consumer,
+     *                        in batches under a lock. Otherwise, every pair is passed on immediately, so the consumer must be safe to call
+     *                        concurrently for different pairs
+     */
+    private void run(List<MashSketch> rowSketches, boolean allVsAll, DistanceConsumer consumer, boolean onlyReportClose) {
+        comparisons.reset();
+        earlyExits.reset();
+        final var start = System.nanoTime();
+
+        final var rowValues = rowSketches.stream().map(MashSketch::getValues).toArray(long[][]::new);
+        final var colValues = sketches.stream().map(MashSketch::getValues).toArray(long[][]::new);
+
+        final var minIntersection = computeMinIntersection();
+
+        final var rowTiles = (rowValues.length + tileSize - 1) / tileSize;
+        final var colTiles = (colValues.length + tileSize - 1) / tileSize;
+        final var tiles = new ArrayList<int[]>();
+        for (var r = 0; r < rowTiles; r++) {
+            for (var c = 0; c < (allVsAll ? r + 1 : colTiles); c++) {
+                tiles.add(new int[]{r, c});
+            }
+        }
+
+        final var pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            pool.submit(() -> IntStream.range(0, tiles.size()).parallel().forEach(t -> {
+                final var rowStart = tiles.get(t)[0] * tileSize;
+                final var rowEnd = Math.min(rowValues.length, rowStart + tileSize);
+                final var colStart = tiles.get(t)[1] * tileSize;
+                final var colEnd = Math.min(colValues.length, colStart + tileSize);
+
+                var closeRows = (onlyReportClose ? new int[16] : null);
+                var closeCols = (onlyReportClose ? new int[16] : null);
+                var closeDistances = (onlyReportClose ? new float[16] : null);
+                var numberOfClose = 0;
+                var count = 0L;
+                var exits = 0L;
+
+                for (var row = rowStart; row < rowEnd; row++) {
+                    final var top = (allVsAll ? Math.min(colEnd, row) : colEnd);
+                    for (var col = colStart; col < top; col++) {
+                        count++;
+                        final var intersection = computeIntersection(rowValues[row], colValues[col], sketchSize, minIntersection);
+                        final float distance;
+                        if (intersection == -1) {
+                            exits++;
+                            distance = Float.POSITIVE_INFINITY;
+                        } else {
+                            // compare intersection in integer space, so that pairs exactly at the threshold are kept. Also check the
+                            // distance, as the mash distance exceeds its value at intersection 0 for very small intersections:
+                            final var value = computeDistance(intersection);
+                            distance = (intersection >= minIntersection && (minIntersection > 0 || value <= maxDistance) ? (float) value : Float.POSITIVE_INFINITY);
+                        }
+                        if (!onlyReportClose)
+                            consumer.accept(row, col, distance);
+                        else if (distance != Float.POSITIVE_INFINITY) {
+                            if (numberOfClose == closeRows.length) {
+                                closeRows = Arrays.copyOf(closeRows, 2 * numberOfClose);
+                                closeCols = Arrays.copyOf(closeCols, 2 * numberOfClose);
+                                closeDistances = Arrays.copyOf(closeDistances, 2 * numberOfClose);
+                            }
+                            closeRows[numberOfClose] = row;
+                            closeCols[numberOfClose] = col;
+                            closeDistances[numberOfClose++] = distance;
+                        }
+                    }
+                }
+                comparisons.add(count);
+                earlyExits.add(exits);
+
+                if (numberOfClose > 0) {
+                    synchronized (consumer) {
+                        for (var p = 0; p < numberOfClose; p++) {
+                            consumer.accept(closeRows[p], closeCols[p], closeDistances[p]);
+                        }
+                    }
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Computing distances: interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Computing distances: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        nanosElapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * computes the size of the intersection of the bottom sketchSize values of the union of two sketches, as in
+     * {@link MashDistance#computeIntersection(MashSketch, MashSketch)}
+     *
+     * @param minIntersection abandon the merge once it is clear that the intersection will be smaller than this
+     * @return intersection size, or -1, if abandoned
+     */
+    static int computeIntersection(long[] values1, long[] values2, int sketchSize, int minIntersection) {
+        final var length1 = Math.min(sketchSize, values1.length);
+        final var length2 = Math.min(sketchSize, values2.length);
+
+        var intersectionSize = 0;
+        var mergeSize = 0;
+        var i = 0;
+        var j = 0;
+        while (i < length1 && j < length2 && mergeSize < sketchSize) {
+            final var value1 = values1[i];
+            final var value2 = values2[j];
+
+            if (value1 < value2) {
+                i++;
+            } else if (value1 > value2) {
+                j++;
+            } else {
+                intersectionSize++;
+                i++;
+                j++;
+            }
+            mergeSize++;
+            // each remaining merge step can contribute at most one to the intersection:
+            if (intersectionSize + Math.min(sketchSize - mergeSize, Math.min(length1 - i, length2 - j)) < minIntersection)
+                return -1;
+        }
+        return intersectionSize;
+    }
+
+    /**
+     * computes the smallest intersection size for which the distance does not exceed the maximum distance
+     */
+    private int computeMinIntersection() {
+        if (computeDistance(0) <= maxDistance)
+            return 0;
+        else if (genomeDistanceType == GenomeDistanceType.Mash)
+            return MashDistance.computeMinIntersectionSizeForMaxDistance(maxDistance, kSize, sketchSize);
+        else
+            return (int) Math.ceil((1 - maxDistance) * sketchSize - 1e-9); // epsilon, so that rounding errors don't exclude pairs at the threshold
+    }
+
+    /**
+     * computes the distance for a given intersection size
+     */
+    private double computeDistance(int intersection) {
+        final var jaccardIndex = (double) intersection / (double) sketchSize;
+        if (genomeDistanceType == GenomeDistanceType.Mash)
+            return MashDistance.compute(jaccardIndex, kSize);
+        else
+            return 1 - jaccardIndex;
+    }
+
+    private static void checkComparable(MashSketch first, List<MashSketch> sketches) {
+        for (var sketch : sketches) {
+            if (!MashSketch.canCompare(first, sketch))
+                throw new IllegalArgumentException("Incompatible sketches: " + first + " and " + sketch);
+        }
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * set the number of sketches per tile side
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = Math.max(1, tileSize);
+    }
+
+    public double getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * set the maximum distance of interest. Larger distances are not computed exactly
+     */
+    public void setMaxDistance(double maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    public GenomeDistanceType getGenomeDistanceType() {
+        return genomeDistanceType;
+    }
+
+    public void setGenomeDistanceType(GenomeDistanceType genomeDistanceType) {
+        this.genomeDistanceType = genomeDistanceType;
+    }
+
+    /**
+     * number of pairs compared in the last computation
+     */
+    public long getNumberOfComparisons() {
+        return comparisons.sum();
+    }
+
+    /**
+     * number of pairs whose merge was abandoned early in the last computation
+     */
+    public long getNumberOfEarlyExits() {
+        return earlyExits.sum();
+    }
+
+    /**
+     * wall-clock time of the last computation
+     */
+    public double getSecondsElapsed() {
+        return nanosElapsed / 1.0e9;
+    }
+
+    /**
+     * comparisons per second in the last computation
+     */
+    public double getComparisonsPerSecond() {
+        return nanosElapsed > 0 ? getNumberOfComparisons() / getSecondsElapsed() : 0;
+    }
+
+    public String getMetricsString() {
+        return String.format("Comparisons: %,d (early exits: %,d) in %.2fs (%,.0f/s, %d threads)", getNumberOfComparisons(), getNumberOfEarlyExits(), getSecondsElapsed(), getComparisonsPerSecond(), numberOfThreads);
+    }
+}
@@ -21,13 +21,17 @@ package jloda.kmers.mash;
 
 import jloda.kmers.bloomfilter.BloomFilter;
 import jloda.thirdparty.MurmurHash;
+import jloda.thirdparty.NTHash;
 import jloda.util.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * a Mash sketch
@@ -70,98 +74,320 @@ public class MashSketch {
      * compute a mash sketch
      */
     public static MashSketch compute(String name, Collection<byte[]> sequences, boolean isNucleotides, int sketchSize, int kMerSize, int seed, boolean filterUniqueKMers, boolean saveKMers, ProgressListener progress) {
-        final MashSketch sketch = new MashSketch(sketchSize, kMerSize, name, isNucleotides);
+        return compute(name, sequences, isNucleotides, sketchSize, kMerSize, seed, filterUniqueKMers, saveKMers, false, progress);
+    }
 
-        final TreeSet<Long> sortedSet = new TreeSet<>();
-        sortedSet.add(Long.MAX_VALUE);
+    /**
+     * compute a mash sketch
+     *
+     * @param useRollingHash for nucleotides, use a rolling canonical ntHash that requires constant work per base. Note that the
+     *                       resulting hash values differ from the default ones, so only compare sketches computed using the same setting
+     */
+    public static MashSketch compute(String name, Collection<byte[]> sequences, boolean isNucleotides, int sketchSize, int kMerSize, int seed, boolean filterUniqueKMers, boolean saveKMers, boolean useRollingHash, ProgressListener progress) {
+        final MashSketch sketch = new MashSketch(sketchSize, kMerSize, name, isNucleotides);
 
-        final Map<Long, byte[]> hash2kmer = saveKMers ? new HashMap<>() : null;
+        final BottomSketch bottomSketch = new BottomSketch(sketchSize, saveKMers);
 
         final BloomFilter bloomFilter;
         if (filterUniqueKMers)
-            bloomFilter = new BloomFilter(sequences.stream().mapToInt(s -> s.length).sum(), 500000000);
+            bloomFilter = new BloomFilter((int) Math.min(Integer.MAX_VALUE, sequences.stream().mapToLong(s -> s.length).sum()), 500000000);
         else
             bloomFilter = null;
 
         try {
-            final byte[] kMer = new byte[kMerSize]; // will reuse
-            final byte[] kMerReverseComplement = new byte[kMerSize]; // will reuse
-
             for (byte[] sequence : sequences) {
-                final int top = sequence.length - kMerSize;
-                for (int offset = 0; offset < top; offset++) {
-                    if (isNucleotides) {
-                        final int ambiguousPos = Basic.lastIndexOf(sequence, offset, kMerSize, 'N'); // don't use k-mers with ambiguity letters
-                        if (ambiguousPos != -1) {
-                            offset = ambiguousPos; // skip to last ambiguous so that increment will move past
-                            continue;
-                        }
-                    }
-
-                    SequenceUtils.getSegment(sequence, offset, kMerSize, kMer);
+                process(sequence, 0, getNumberOfOffsets(sequence, kMerSize, isNucleotides, useRollingHash), isNucleotides, kMerSize, seed, useRollingHash, bloomFilter, bottomSketch, progress);
+            }
+            bottomSketch.apply(sketch, true);
+            progress.incrementProgress();
+        } catch (CanceledException ignored) {
+        }
+        return sketch;
+    }
 
-                    final byte[] kMerUse;
-                    if (isNucleotides) {
-                        SequenceUtils.getReverseComplement(sequence, offset, kMerSize, kMerReverseComplement);
+    /**
+     * compute a mash sketch using multiple threads. Long sequences are split into segments, and the sequences and
+     * segments are distributed in chunks over the threads. Each chunk produces a partial sketch and the partial
+     * sketches are then merged. Without filtering of unique k-mers, the result is the same as for the single-threaded computation.
+     * When filtering unique k-mers, all threads share one Bloom filter, whose adds only lock a stripe selected by the k-mer.
+     * Whether a k-mer that occurs only once is kept due to a false positive of the Bloom filter depends on the order in which
+     * k-mers are added, so filtered results may differ slightly between runs and from the single-threaded computation
+     *
+     * @throws RuntimeException if a worker fails or the computation is interrupted
+     */
+    public static MashSketch computeParallel(String name, List<byte[]> sequences, boolean isNucleotides, int sketchSize, int kMerSize, int seed, boolean filterUniqueKMers, boolean saveKMers, boolean useRollingHash, int threads, ProgressListener progress) {
+        final MashSketch sketch = new MashSketch(sketchSize, kMerSize, name, isNucleotides);
 
-                        if (SequenceUtils.compare(kMer, kMerReverseComplement) <= 0) {
-                            kMerUse = kMer;
-                        } else {
-                            kMerUse = kMerReverseComplement;
-                        }
-                    } else
-                        kMerUse = kMer;
+        final BloomFilter bloomFilter;
+        if (filterUniqueKMers)
+            bloomFilter = new BloomFilter((int) Math.min(Integer.MAX_VALUE, sequences.stream().mapToLong(s -> s.length).sum()), 500000000);
+        else
+            bloomFilter = null;
 
-                    if (bloomFilter != null && bloomFilter.add(kMerUse)) {
-                        continue; // first time we have seen this k-mer
+        // each segment is given by sequence index, first offset and last offset (exclusive) of the k-mers it covers:
+        final var total = sequences.stream().mapToLong(s -> getNumberOfOffsets(s, kMerSize, isNucleotides, useRollingHash)).sum();
+        final var segmentLength = (int) Math.max(1 << 16, Math.min(Integer.MAX_VALUE, total / (8L * Math.max(1, threads))));
+        final var chunks = new ArrayList<List<int[]>>();
+        {
+            var chunk = new ArrayList<int[]>();
+            var chunkLength = 0L;
+            for (var s = 0; s < sequences.size(); s++) {
+                final var top = getNumberOfOffsets(sequences.get(s), kMerSize, isNucleotides, useRollingHash);
+                for (var from = 0; from < top; from += segmentLength) {
+                    final var to = (int) Math.min(top, (long) from + segmentLength);
+                    chunk.add(new int[]{s, from, to});
+                    chunkLength += to - from;
+                    if (chunkLength >= segmentLength) {
+                        chunks.add(chunk);
+                        chunk = new ArrayList<>();
+                        chunkLength = 0;
                     }
+                }
+            }
+            if (chunk.size() > 0)
+                chunks.add(chunk);
+        }
 
-                    final long hash = MurmurHash.hash64(kMerUse, 0, kMerSize, seed);
-
-                    //  final long hash=(use64Bits? NTHash.NTP64(seqUse,kMerSize,offsetUse):MASK_32BIT&NTHash.NTP64(seqUse,kMerSize,offsetUse));
-
-                    if (hash < sortedSet.last()) {
-                        if (hash2kmer == null) {
-                            if (sortedSet.add(hash) && sortedSet.size() > sketchSize)
-                                sortedSet.pollLast();
-                        } else {
-                            if (sortedSet.add(hash)) {
-                                hash2kmer.put(hash, kMerUse.clone());
-                                if (sortedSet.size() > sketchSize) {
-                                    Long removedHash = sortedSet.pollLast();
-                                    if (removedHash != null)
-                                        hash2kmer.remove(removedHash);
-                                }
-                            }
-                        }
+        final var pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            final var partials = pool.submit(() -> chunks.parallelStream().map(chunk -> {
+                final var partial = new BottomSketch(sketchSize, saveKMers);
+                try {
+                    for (var segment : chunk) {
+                        process(sequences.get(segment[0]), segment[1], segment[2], isNucleotides, kMerSize, seed, useRollingHash, bloomFilter, partial, progress);
                     }
-                    progress.checkForCancel();
+                } catch (CanceledException ex) {
+                    return null;
                 }
-            }
-            {
-                if (sortedSet.contains(Long.MAX_VALUE)) {
-                    sortedSet.remove(Long.MAX_VALUE);
-                    System.err.printf("Warning: Computing sketch %s: Too few k-mers: %,d of %,d%n", sketch.getName(), sortedSet.size(), sketchSize);
+                return partial;
+            }).collect(Collectors.toList())).get();
+
+            if (!partials.contains(null)) {
+                final var bottomSketch = new BottomSketch(sketchSize, saveKMers);
+                for (var partial : partials) {
+                    bottomSketch.addAll(partial);
                 }
-                sketch.hashValues = new long[sortedSet.size()];
-                int pos = 0;
-                for (Long value : sortedSet)
-                    sketch.hashValues[pos++] = value;
+                bottomSketch.apply(sketch, true);
+                progress.incrementProgress();
             }
-            progress.incrementProgress();
         } catch (CanceledException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Computing sketch " + name + ": interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Computing sketch " + name + ": " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdown();
         }
+        return sketch;
+    }
+
+    /**
+     * compute mash sketches for a list of fastA or fastQ files, sketching several files concurrently. The sequences
+     * of each file are streamed, rather than held in memory. Each sketch is named by its file
+     *
+     * @return sketches in the order of the files
+     */
+    public static List<MashSketch> computeForFiles(List<String> fileNames, boolean isNucleotides, int sketchSize, int kMerSize, int seed, boolean filterUniqueKMers, boolean saveKMers, boolean useRollingHash, int threads, ProgressListener progress) throws IOException, CanceledException {
+        final var pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            return pool.submit(() -> fileNames.parallelStream().map(fileName -> {
+                try {
+                    return computeForFile(fileName, isNucleotides, sketchSize, kMerSize, seed, filterUniqueKMers, saveKMers, useRollingHash, progress);
+                } catch (CanceledException ex) {
+                    throw new RuntimeException(ex);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            throw new CanceledException();
+        } catch (ExecutionException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException)
+                    throw ((UncheckedIOException) cause).getCause();
+                else if (cause instanceof CanceledException)
+                    throw (CanceledException) cause;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * compute a mash sketch for a fastA or fastQ file, streaming its sequences
+     */
+    public static MashSketch computeForFile(String fileName, boolean isNucleotides, int sketchSize, int kMerSize, int seed, boolean filterUniqueKMers, boolean saveKMers, boolean useRollingHash, ProgressListener progress) throws IOException, CanceledException {
+        final MashSketch sketch = new MashSketch(sketchSize, kMerSize, Basic.getFileNameWithoutPath(fileName), isNucleotides);
+
+        final BottomSketch bottomSketch = new BottomSketch(sketchSize, saveKMers);
+
+        final BloomFilter bloomFilter;
+        if (filterUniqueKMers)
+            bloomFilter = new BloomFilter((int) Math.min(Integer.MAX_VALUE, Basic.guessUncompressedSizeOfFile(fileName)), 500000000);
+        else
+            bloomFilter = null;
 
-        if (saveKMers && hash2kmer != null) {
-            sketch.kmers = new byte[hash2kmer.size()][];
-            int i = 0;
-            for (byte[] kmer : hash2kmer.values()) {
-                sketch.kmers[i++] = kmer;
+        try (var it = FastAFileIterator.getFastAOrFastQAsFastAIterator(fileName)) {
+            while (it.hasNext()) {
+                final byte[] sequence = it.next().getSecond().getBytes();
+                process(sequence, 0, getNumberOfOffsets(sequence, kMerSize, isNucleotides, useRollingHash), isNucleotides, kMerSize, seed, useRollingHash, bloomFilter, bottomSketch, progress);
             }
         }
+        bottomSketch.apply(sketch, true);
+        progress.incrementProgress();
         return sketch;
     }
 
+    /**
+     * merges sketches by keeping the sketchSize smallest hash values of their union. The sketches must be comparable.
+     * K-mers are kept if all given sketches have them
+     *
+     * @return merged sketch
+     */
+    public static MashSketch merge(String name, Collection<MashSketch> sketches) {
+        if (sketches.size() == 0)
+            throw new IllegalArgumentException("merge: no sketches");
+        final MashSketch first = sketches.iterator().next();
+        for (var other : sketches) {
+            if (!canCompare(first, other))
+                throw new IllegalArgumentException("merge: incompatible sketches: " + first + " and " + other);
+        }
+        final var saveKMers = sketches.stream().allMatch(s -> s.getKmers() != null);
+
+        final BottomSketch bottomSketch = new BottomSketch(first.getSketchSize(), saveKMers);
+        for (var other : sketches) {
+            for (var i = 0; i < other.getValues().length; i++) {
+                final long hash = other.getValue(i);
+                if (!bottomSketch.accepts(hash))
+                    break; // values are sorted, so no later value will be accepted
+                bottomSketch.add(hash, saveKMers ? other.getKmers()[i] : null);
+            }
+        }
+        final MashSketch sketch = new MashSketch(first.getSketchSize(), first.getkSize(), name, first.isNucleotides());
+        bottomSketch.apply(sketch, false);
+        return sketch;
+    }
+
+    /**
+     * get the number of k-mer start offsets considered in a sequence
+     */
+    private static int getNumberOfOffsets(byte[] sequence, int kMerSize, boolean isNucleotides, boolean useRollingHash) {
+        if (isNucleotides && useRollingHash)
+            return Math.max(0, sequence.length - kMerSize + 1);
+        else
+            return Math.max(0, sequence.length - kMerSize);
+    }
+
+    /**
+     * process all k-mers of a sequence that start at offsets from (inclusive) to to (exclusive)
+     */
+    private static void process(byte[] sequence, int from, int to, boolean isNucleotides, int kMerSize, int seed, boolean useRollingHash, BloomFilter bloomFilter, BottomSketch bottomSketch, ProgressListener progress) throws CanceledException {
+        if (isNucleotides && useRollingHash)
+            processRolling(sequence, from, to, kMerSize, seed, bloomFilter, bottomSketch, progress);
+        else
+            processDirect(sequence, from, to, isNucleotides, kMerSize, seed, bloomFilter, bottomSketch, progress);
+    }
+
+    /**
+     * extracts each k-mer and hashes it using murmur hash
+     */
+    private static void processDirect(byte[] sequence, int from, int to, boolean isNucleotides, int kMerSize, int seed, BloomFilter bloomFilter, BottomSketch bottomSketch, ProgressListener progress) throws CanceledException {
+        final byte[] kMer = new byte[kMerSize]; // will reuse
+        final byte[] kMerReverseComplement = new byte[kMerSize]; // will reuse
+
+        for (int offset = from; offset < to; offset++) {
+            if (isNucleotides) {
+                final int ambiguousPos = Basic.lastIndexOf(sequence, offset, kMerSize, 'N'); // don't use k-mers with ambiguity letters
+                if (ambiguousPos != -1) {
+                    offset = ambiguousPos; // skip to last ambiguous so that increment will move past
+                    continue;
+                }
+            }
+
+            SequenceUtils.getSegment(sequence, offset, kMerSize, kMer);
+
+            final byte[] kMerUse;
+            if (isNucleotides) {
+                SequenceUtils.getReverseComplement(sequence, offset, kMerSize, kMerReverseComplement);
+
+                if (SequenceUtils.compare(kMer, kMerReverseComplement) <= 0) {
+                    kMerUse = kMer;
+                } else {
+                    kMerUse = kMerReverseComplement;
+                }
+            } else
+                kMerUse = kMer;
+
+            if (bloomFilter != null && bloomFilter.add(kMerUse)) {
+                continue; // first time we have seen this k-mer
+            }
+
+            final long hash = MurmurHash.hash64(kMerUse, 0, kMerSize, seed);
+
+            if (bottomSketch.accepts(hash))
+                bottomSketch.add(hash, kMerUse);
+            progress.checkForCancel();
+        }
+    }
+
+    /**
+     * rolls a canonical ntHash along a sequence, doing constant work per base. Any letter other than A, C, G or T
+     * (in either case) is treated as ambiguous and no k-mer containing one is used
+     */
+    private static void processRolling(byte[] sequence, int from, int to, int kMerSize, int seed, BloomFilter bloomFilter, BottomSketch bottomSketch, ProgressListener progress) throws CanceledException {
+        final long seedMask = seed * 0x9E3779B97F4A7C15L; // seed 0 gives plain ntHash values
+        final long[] frhValues = new long[2]; // forward and reverse strand hash values, will reuse
+
+        final int top = to + kMerSize - 1;
+        int validRun = 0; // number of consecutive unambiguous bases ending at the current position
+        for (int pos = from; pos < top; pos++) {
+            if (!isACGT[sequence[pos] & 0xff]) {
+                validRun = 0;
+                continue;
+            }
+            validRun++;
+            if (validRun < kMerSize)
+                continue;
+
+            final int offset = pos - kMerSize + 1;
+            final long canonical;
+            if (validRun == kMerSize)
+                canonical = NTHash.NTC64(sequence, offset, kMerSize, frhValues);
+            else
+                canonical = NTHash.NTC64(sequence[offset - 1], sequence[pos], kMerSize, frhValues);
+
+            if (bloomFilter != null && bloomFilter.add(canonical)) {
+                continue; // first time we have seen this k-mer
+            }
+
+            final long hash = canonical ^ seedMask;
+
+            if (bottomSketch.accepts(hash)) {
+                if (bottomSketch.isSaveKMers()) {
+                    final byte[] kMer = new byte[kMerSize];
+                    if (frhValues[0] <= frhValues[1])
+                        SequenceUtils.getSegment(sequence, offset, kMerSize, kMer);
+                    else
+                        SequenceUtils.getReverseComplement(sequence, offset, kMerSize, kMer);
+                    bottomSketch.add(hash, kMer);
+                } else
+                    bottomSketch.add(hash, null);
+            }
+            if ((pos & 0xFFFF) == 0)
+                progress.checkForCancel();
+        }
+        progress.checkForCancel();
+    }
+
+    private static final boolean[] isACGT = new boolean[256];
+
+    static {
+        for (byte a : "ACGTacgt".getBytes())
+            isACGT[a] = true;
+    }
+
     public String getHeader() {
         return String.format("##ComputeMashSketch name='%s' sketchSize=%d kSize=%d type=%s\n", name, sketchSize, kSize, isNucleotides ? "nucl" : "aa");
     }
@@ -258,4 +484,12 @@ public class MashSketch {
     public long getValue(int i) {
         return hashValues[i];
     }
+
+    void setValues(long[] hashValues) {
+        this.hashValues = hashValues;
+    }
+
+    void setKMers(byte[][] kmers) {
+        this.kmers = kmers;
+    }
 }
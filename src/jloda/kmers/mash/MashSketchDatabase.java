@@ -0,0 +1,263 @@
+/*
+ * MashSketchDatabase.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.kmers.mash;
+
+import jloda.kmers.GenomeDistanceType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * a binary mash sketch database, memory-mapped for reading. Sketches can be queried by index without materializing
+ * {@link MashSketch} objects. See {@link MashSketchDatabaseWriter} for the file layout
+ * Daniel Huson, 2021
+ */
+public class MashSketchDatabase implements Closeable {
+    public static final int MAGIC_INT = 1213415758;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int FLAG_NUCLEOTIDES = 1;
+    public static final int FLAG_ROLLING_HASH = 2;
+
+    private final String fileName;
+    private final FileChannel channel;
+
+    private final int kSize;
+    private final int sketchSize;
+    private final int seed;
+    private final int flags;
+    private final int numberOfSketches;
+
+    private final int sketchesPerRegion;
+    private final LongBuffer[] regions;
+
+    private final int[] sizes;
+    private final long[] nameOffsets;
+    private final ByteBuffer names;
+
+    /**
+     * consumes the index and distance of a sketch found by a query
+     */
+    public interface MatchConsumer {
+        void accept(int index, float distance);
+    }
+
+    /**
+     * open a database and map it into memory
+     */
+    public MashSketchDatabase(String fileName) throws IOException {
+        this.fileName = fileName;
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            final var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC_INT)
+                throw new IOException("Not a mash sketch database: " + fileName);
+            final var version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported mash sketch database version: " + version);
+            kSize = header.getInt();
+            sketchSize = header.getInt();
+            seed = header.getInt();
+            flags = header.getInt();
+            final var count = header.getLong();
+            final var nameTableOffset = header.getLong();
+            if (count > Integer.MAX_VALUE - 8 || nameTableOffset != HEADER_SIZE + 8L * sketchSize * count)
+                throw new IOException("Corrupt mash sketch database: " + fileName);
+            numberOfSketches = (int) count;
+
+            // map sketch blocks in regions of less than 2GB, each region holding whole sketches:
+            sketchesPerRegion = Math.max(1, Integer.MAX_VALUE / (8 * Math.max(1, sketchSize)));
+            regions = new LongBuffer[(numberOfSketches + sketchesPerRegion - 1) / sketchesPerRegion];
+            for (var r = 0; r < regions.length; r++) {
+                final var first = (long) r * sketchesPerRegion;
+                final var number = Math.min(sketchesPerRegion, numberOfSketches - first);
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 8L * sketchSize * first, 8L * sketchSize * number)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+
+            final var table = channel.map(FileChannel.MapMode.READ_ONLY, nameTableOffset, 12L * numberOfSketches + 8).order(ByteOrder.LITTLE_ENDIAN);
+            sizes = new int[numberOfSketches];
+            table.asIntBuffer().get(sizes);
+            table.position(4 * numberOfSketches);
+            nameOffsets = new long[numberOfSketches + 1];
+            table.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(nameOffsets);
+            final var namesStart = nameTableOffset + 12L * numberOfSketches + 8;
+            names = channel.map(FileChannel.MapMode.READ_ONLY, namesStart, nameOffsets[numberOfSketches]);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getkSize() {
+        return kSize;
+    }
+
+    public int getSketchSize() {
+        return sketchSize;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    public boolean isNucleotides() {
+        return (flags & FLAG_NUCLEOTIDES) != 0;
+    }
+
+    public boolean isUseRollingHash() {
+        return (flags & FLAG_ROLLING_HASH) != 0;
+    }
+
+    public int getNumberOfSketches() {
+        return numberOfSketches;
+    }
+
+    /**
+     * get the name of the i-th sketch
+     */
+    public String getName(int i) {
+        final var bytes = new byte[(int) (nameOffsets[i + 1] - nameOffsets[i])];
+        names.duplicate().position((int) nameOffsets[i]).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * get the number of hash values of the i-th sketch, usually the sketch size
+     */
+    public int getSize(int i) {
+        return sizes[i];
+    }
+
+    /**
+     * get the j-th hash value of the i-th sketch
+     */
+    public long getValue(int i, int j) {
+        return regions[i / sketchesPerRegion].get((i % sketchesPerRegion) * sketchSize + j);
+    }
+
+    /**
+     * get the hash values of the i-th sketch
+     */
+    public long[] getValues(int i) {
+        final var values = new long[sizes[i]];
+        final var region = regions[i / sketchesPerRegion].duplicate();
+        region.position((i % sketchesPerRegion) * sketchSize);
+        region.get(values);
+        return values;
+    }
+
+    /**
+     * materialize the i-th sketch
+     */
+    public MashSketch getSketch(int i) {
+        final var sketch = new MashSketch(sketchSize, kSize, getName(i), isNucleotides());
+        sketch.setValues(getValues(i));
+        return sketch;
+    }
+
+    /**
+     * computes the intersection size of the query with the i-th sketch, reading the values directly from the mapped file
+     */
+    public int computeIntersection(int i, MashSketch query) {
+        return computeIntersection(i, query.getValues(), 0);
+    }
+
+    /**
+     * computes the mash distance between the query and the i-th sketch
+     */
+    public double computeDistance(int i, MashSketch query, GenomeDistanceType genomeDistanceType) {
+        final var jaccardIndex = (double) computeIntersection(i, query) / (double) sketchSize;
+        if (genomeDistanceType == GenomeDistanceType.Mash)
+            return MashDistance.compute(jaccardIndex, kSize);
+        else
+            return 1 - jaccardIndex;
+    }
+
+    /**
+     * reports all sketches whose mash distance to the query does not exceed the given maximum, abandoning each comparison
+     * as soon as the distance can no longer be small enough
+     */
+    public void findWithinDistance(MashSketch query, double maxDistance, MatchConsumer consumer) {
+        if (query.getkSize() != kSize || query.getSketchSize() != sketchSize || query.isNucleotides() != isNucleotides())
+            throw new IllegalArgumentException("Incompatible query: " + query);
+        final var minIntersection = (MashDistance.compute(0, kSize) <= maxDistance ? 0 : MashDistance.computeMinIntersectionSizeForMaxDistance(maxDistance, kSize, sketchSize));
+        final var values = query.getValues();
+        for (var i = 0; i < numberOfSketches; i++) {
+            final var intersection = computeIntersection(i, values, minIntersection);
+            if (intersection != -1) {
+                final var distance = MashDistance.compute((double) intersection / (double) sketchSize, kSize);
+                if (distance <= maxDistance)
+                    consumer.accept(i, (float) distance);
+            }
+        }
+    }
+
+    /**
+     * merges the query values with the i-th sketch, as in {@link MashDistanceMatrix}
+     *
+     * @return intersection size, or -1, if it will be smaller than minIntersection
+     */
+    private int computeIntersection(int i, long[] values, int minIntersection) {
+        final var region = regions[i / sketchesPerRegion];
+        final var start = (i % sketchesPerRegion) * sketchSize;
+        final var length1 = sizes[i];
+        final var length2 = Math.min(sketchSize, values.length);
+
+        var intersectionSize = 0;
+        var mergeSize = 0;
+        var a = 0;
+        var b = 0;
+        while (a < length1 && b < length2 && mergeSize < sketchSize) {
+            final var value1 = region.get(start + a);
+            final var value2 = values[b];
+            if (value1 < value2) {
+                a++;
+            } else if (value1 > value2) {
+                b++;
+            } else {
+                intersectionSize++;
+                a++;
+                b++;
+            }
+            mergeSize++;
+            if (intersectionSize + Math.min(sketchSize - mergeSize, Math.min(length1 - a, length2 - b)) < minIntersection)
+                return -1;
+        }
+        return intersectionSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * MashSketchDatabaseWriter.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.kmers.mash;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * writes a binary mash sketch database that can be memory-mapped by {@link MashSketchDatabase}. Sketches are appended
+ * as they are computed, the name table and final header are written on close.
+ * <p>
+ * Layout (all little endian):
+ * header of {@link MashSketchDatabase#HEADER_SIZE} bytes: magic number, version, k, sketch size, seed, flags, number of sketches (long), offset of name table (long);
+ * then, for each sketch, a block of sketch size longs holding the sorted hash values, padded with {@link Long#MAX_VALUE};
+ * then the table: number of values per sketch (int[n]), offsets of names (long[n+1], relative to the start of the names) and the UTF-8 encoded names
+ * Daniel Huson, 2021
+ */
+public class MashSketchDatabaseWriter implements Closeable {
+    private final String fileName;
+    private final int kSize;
+    private final int sketchSize;
+    private final int seed;
+    private final boolean isNucleotides;
+    private final boolean useRollingHash;
+
+    private final DataOutputStream outs;
+    private final ByteBuffer block;
+
+    private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+    private final DataOutputStream sizes;
+    private final ByteArrayOutputStream sizesBytes = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream nameOffsetsBytes = new ByteArrayOutputStream();
+    private final DataOutputStream nameOffsets;
+
+    private long count = 0;
+    private boolean closed = false;
+
+    /**
+     * open a new database for writing
+     *
+     * @param seed           seed used to compute the sketches, recorded in the header
+     * @param useRollingHash were the sketches computed using the rolling hash? Recorded in the header
+     */
+    public MashSketchDatabaseWriter(String fileName, int kSize, int sketchSize, int seed, boolean isNucleotides, boolean useRollingHash) throws IOException {
+        this.fileName = fileName;
+        this.kSize = kSize;
+        this.sketchSize = sketchSize;
+        this.seed = seed;
+        this.isNucleotides = isNucleotides;
+        this.useRollingHash = useRollingHash;
+
+        outs = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 20));
+        outs.write(new byte[MashSketchDatabase.HEADER_SIZE]); // placeholder, written on close
+        block = ByteBuffer.allocate(8 * sketchSize).order(ByteOrder.LITTLE_ENDIAN);
+        sizes = new DataOutputStream(sizesBytes);
+        nameOffsets = new DataOutputStream(nameOffsetsBytes);
+        writeLongLittleEndian(nameOffsets, 0);
+    }
+
+    /**
+     * append a sketch. Can be called from multiple threads
+     */
+    public synchronized void add(MashSketch sketch) throws IOException {
+        if (closed)
+            throw new IOException("Database closed: " + fileName);
+        if (sketch.getkSize() != kSize || sketch.getSketchSize() != sketchSize || sketch.isNucleotides() != isNucleotides)
+            throw new IOException("Incompatible sketch: " + sketch);
+
+        final var values = sketch.getValues();
+        block.clear();
+        for (var i = 0; i < sketchSize; i++)
+            block.putLong(i < values.length ? values[i] : Long.MAX_VALUE);
+        outs.write(block.array(), 0, block.position());
+
+        writeIntLittleEndian(sizes, Math.min(sketchSize, values.length));
+        final var name = (sketch.getName() != null ? sketch.getName() : "").getBytes(StandardCharsets.UTF_8);
+        names.write(name);
+        writeLongLittleEndian(nameOffsets, names.size());
+        count++;
+    }
+
+    /**
+     * number of sketches written so far
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * writes the name table and header and closes the file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        final var nameTableOffset = MashSketchDatabase.HEADER_SIZE + 8L * sketchSize * count;
+        sizesBytes.writeTo(outs);
+        nameOffsetsBytes.writeTo(outs);
+        names.writeTo(outs);
+        outs.close();
+
+        final var header = ByteBuffer.allocate(MashSketchDatabase.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MashSketchDatabase.MAGIC_INT);
+        header.putInt(MashSketchDatabase.VERSION);
+        header.putInt(kSize);
+        header.putInt(sketchSize);
+        header.putInt(seed);
+        header.putInt((isNucleotides ? MashSketchDatabase.FLAG_NUCLEOTIDES : 0) | (useRollingHash ? MashSketchDatabase.FLAG_ROLLING_HASH : 0));
+        header.putLong(count);
+        header.putLong(nameTableOffset);
+        header.clear();
+        try (var channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.WRITE)) {
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+        }
+    }
+
+    private static void writeIntLittleEndian(DataOutputStream outs, int value) throws IOException {
+        outs.writeInt(Integer.reverseBytes(value));
+    }
+
+    private static void writeLongLittleEndian(DataOutputStream outs, long value) throws IOException {
+        outs.writeLong(Long.reverseBytes(value));
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Bipartitions.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * extracts the non-trivial bipartitions (splits) of phylogenetic trees as 128-bit fingerprints.
+ * Taxa are identified by leaf labels and numbered 1..n. The fingerprint of a bipartition is computed for the side that does not
+ * contain the reference taxon, which is the smallest taxon present in the tree.
+ * For up to 128 taxa, the fingerprint is exact, with bit t-1 set for taxon t.
+ * For more taxa, the fingerprint is the XOR of random 128-bit keys of the taxa, with a negligible chance of collisions;
+ * the exact splits can then be obtained as BitSets, using computeBitSets()
+ * Daniel Huson, 2021
+ */
+public class Bipartitions {
+    private static final long SEED = 666;
+
+    private final String[] taxa; // 1-based
+    private final Map<String, Integer> taxon2id;
+    private final long[] keys; // two longs per taxon id
+
+    /**
+     * constructor
+     *
+     * @param taxa the taxon labels, taxa get ids 1..n in the given order
+     */
+    public Bipartitions(Collection<String> taxa) {
+        this.taxa = new String[taxa.size() + 1];
+        taxon2id = new HashMap<>();
+        for (var label : taxa) {
+            if (!taxon2id.containsKey(label)) {
+                taxon2id.put(label, taxon2id.size() + 1);
+                this.taxa[taxon2id.size()] = label;
+            }
+        }
+        final var n = taxon2id.size();
+        keys = new long[2 * (n + 1)];
+        if (isExact()) {
+            for (var t = 1; t <= n; t++) {
+                if (t <= 64)
+                    keys[2 * t + 1] = 1L << (t - 1);
+                else
+                    keys[2 * t] = 1L << (t - 65);
+            }
+        } else {
+            final var random = new SplittableRandom(SEED);
+            for (var i = 2; i < keys.length; i++)
+                keys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * creates an instance for all leaf labels found in the given trees, numbered in order of first occurrence
+     */
+    public static Bipartitions create(Collection<PhyloTree> trees) {
+        final var taxa = new LinkedHashSet<String>();
+        for (var tree : trees) {
+            for (var v : tree.nodes()) {
+                if (v.getOutDegree() == 0 && tree.getLabel(v) != null)
+                    taxa.add(tree.getLabel(v));
+            }
+        }
+        return new Bipartitions(taxa);
+    }
+
+    public int getNumberOfTaxa() {
+        return taxa.length - 1;
+    }
+
+    /**
+     * @return taxon id in range 1..n, or -1, if unknown
+     */
+    public int getTaxonId(String label) {
+        return taxon2id.getOrDefault(label, -1);
+    }
+
+    public String getTaxon(int id) {
+        return taxa[id];
+    }
+
+    /**
+     * @return true, if fingerprints are exact, which is the case for at most 128 taxa
+     */
+    public boolean isExact() {
+        return getNumberOfTaxa() <= 128;
+    }
+
+    /**
+     * computes the fingerprints of all non-trivial bipartitions of a tree
+     *
+     * @param tree the tree, leaves must be labeled by different known taxa
+     * @return sorted fingerprints, without duplicates, as pairs of longs (high, low)
+     */
+    public long[] computeFingerprints(PhyloTree tree) {
+        final var splitTree = new SplitTree(tree, this::getTaxonId);
+        final var size = splitTree.size;
+        final var clusterSize = new int[size];
+        final var nonTrivial = splitTree.computeNonTrivial(clusterSize);
+        final var high = new long[size];
+        final var low = new long[size];
+        var count = 0;
+        for (var i = 0; i < size; i++) {
+            final var t = splitTree.taxon[i];
+            if (t > 0 && splitTree.parent[i] != -1) {
+                high[i] = keys[2 * t];
+                low[i] = keys[2 * t + 1];
+            }
+            final var p = splitTree.parent[i];
+            if (p != -1) {
+                high[p] ^= high[i];
+                low[p] ^= low[i];
+            }
+            if (nonTrivial[i])
+                count++;
+        }
+        final var result = new long[2 * count];
+        count = 0;
+        for (var i = 0; i < size; i++) {
+            if (nonTrivial[i]) {
+                result[count++] = high[i];
+                result[count++] = low[i];
+            }
+        }
+        sortPairs(result, 0, result.length / 2 - 1);
+        return removeDuplicatePairs(result);
+    }
+
+    /**
+     * computes the fingerprints of all given trees in parallel
+     *
+     * @return fingerprints for each tree, in the same order
+     */
+    public long[][] computeFingerprints(List<PhyloTree> trees, int numberOfThreads) {
+        final var result = new long[trees.size()][];
+        final var pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            pool.submit(() -> IntStream.range(0, trees.size()).parallel().forEach(i -> result[i] = computeFingerprints(trees.get(i)))).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex.getCause() != null ? ex.getCause() : ex);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * computes all non-trivial bipartitions of a tree as exact sets of taxon ids, each giving the side not containing the reference taxon
+     *
+     * @param tree the tree
+     * @return bipartitions, not sorted, but without duplicates
+     */
+    public BitSet[] computeBitSets(PhyloTree tree) {
+        final var splitTree = new SplitTree(tree, this::getTaxonId);
+        final var size = splitTree.size;
+        final var nonTrivial = splitTree.computeNonTrivial(new int[size]);
+        // the leaves below a node are consecutive in post-order, so record the range of leaves below each node:
+        final var leaves = new int[splitTree.numberOfTaxa];
+        final var firstLeaf = new int[size];
+        final var lastLeaf = new int[size];
+        Arrays.fill(firstLeaf, Integer.MAX_VALUE);
+        Arrays.fill(lastLeaf, -1);
+        var numberOfLeaves = 0;
+        for (var i = 0; i < size; i++) {
+            if (splitTree.taxon[i] > 0 && splitTree.parent[i] != -1) {
+                firstLeaf[i] = lastLeaf[i] = numberOfLeaves;
+                leaves[numberOfLeaves++] = splitTree.taxon[i];
+            }
+            final var p = splitTree.parent[i];
+            if (p != -1) {
+                firstLeaf[p] = Math.min(firstLeaf[p], firstLeaf[i]);
+                lastLeaf[p] = Math.max(lastLeaf[p], lastLeaf[i]);
+            }
+        }
+        final var result = new ArrayList<BitSet>();
+        for (var i = 0; i < size; i++) {
+            if (nonTrivial[i]) {
+                final var bits = new BitSet();
+                for (var k = firstLeaf[i]; k <= lastLeaf[i]; k++)
+                    bits.set(leaves[k]);
+                result.add(bits);
+            }
+        }
+        return result.toArray(new BitSet[0]);
+    }
+
+    /**
+     * converts an exact fingerprint to the set of taxon ids
+     *
+     * @throws IllegalStateException if fingerprints are not exact
+     */
+    public BitSet toBitSet(long high, long low) {
+        if (!isExact())
+            throw new IllegalStateException("Fingerprints are not exact for more than 128 taxa");
+        final var bits = new BitSet();
+        for (var t = 1; t <= getNumberOfTaxa(); t++) {
+            if (((t <= 64 ? (low >>> (t - 1)) : (high >>> (t - 65))) & 1L) != 0)
+                bits.set(t);
+        }
+        return bits;
+    }
+
+    /**
+     * gets the labels of the taxa of a bipartition
+     */
+    public List<String> getTaxa(BitSet bits) {
+        final var list = new ArrayList<String>();
+        for (var t = bits.nextSetBit(1); t != -1; t = bits.nextSetBit(t + 1))
+            list.add(taxa[t]);
+        return list;
+    }
+
+    /**
+     * counts the number of fingerprints contained in both sorted arrays
+     */
+    public static int countShared(long[] a, long[] b) {
+        var count = 0;
+        var i = 0;
+        var j = 0;
+        while (i < a.length && j < b.length) {
+            final var c = comparePairs(a[i], a[i + 1], b[j], b[j + 1]);
+            if (c == 0) {
+                count++;
+                i += 2;
+                j += 2;
+            } else if (c < 0)
+                i += 2;
+            else
+                j += 2;
+        }
+        return count;
+    }
+
+    /**
+     * computes the Robinson-Foulds distance between two trees, given their sorted fingerprints
+     */
+    public static int computeRobinsonFoulds(long[] a, long[] b) {
+        return a.length / 2 + b.length / 2 - 2 * countShared(a, b);
+    }
+
+    /**
+     * find the (even) position of a fingerprint in a sorted array of fingerprints
+     *
+     * @return position or -1
+     */
+    public static int indexOf(long[] fingerprints, long high, long low) {
+        var lo = 0;
+        var hi = fingerprints.length / 2 - 1;
+        while (lo <= hi) {
+            final var mid = (lo + hi) >>> 1;
+            final var c = comparePairs(fingerprints[2 * mid], fingerprints[2 * mid + 1], high, low);
+            if (c == 0)
+                return 2 * mid;
+            else if (c < 0)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        return -1;
+    }
+
+    static int comparePairs(long high1, long low1, long high2, long low2) {
+        final var c = Long.compare(high1, high2);
+        return (c != 0 ? c : Long.compare(low1, low2));
+    }
+
+    /**
+     * sorts pairs of longs from position 2*from to 2*to+1 (inclusive)
+     */
+    static void sortPairs(long[] a, int from, int to) {
+        while (from < to) {
+            final var mid = (from + to) >>> 1;
+            final var pivotHigh = a[2 * mid];
+            final var pivotLow = a[2 * mid + 1];
+            var i = from;
+            var j = to;
+            while (i <= j) {
+                while (comparePairs(a[2 * i], a[2 * i + 1], pivotHigh, pivotLow) < 0)
+                    i++;
+                while (comparePairs(a[2 * j], a[2 * j + 1], pivotHigh, pivotLow) > 0)
+                    j--;
+                if (i <= j) {
+                    swapPairs(a, i++, j--);
+                }
+            }
+            // recurse into the smaller part, loop on the larger one
+            if (j - from < to - i) {
+                sortPairs(a, from, j);
+                from = i;
+            } else {
+                sortPairs(a, i, to);
+                to = j;
+            }
+        }
+    }
+
+    private static void swapPairs(long[] a, int i, int j) {
+        var tmp = a[2 * i];
+        a[2 * i] = a[2 * j];
+        a[2 * j] = tmp;
+        tmp = a[2 * i + 1];
+        a[2 * i + 1] = a[2 * j + 1];
+        a[2 * j + 1] = tmp;
+    }
+
+    private static long[] removeDuplicatePairs(long[] a) {
+        var count = 0;
+        for (var i = 0; i < a.length; i += 2) {
+            if (count == 0 || a[i] != a[count - 2] || a[i + 1] != a[count - 1]) {
+                a[count++] = a[i];
+                a[count++] = a[i + 1];
+            }
+        }
+        return (count == a.length ? a : Arrays.copyOf(a, count));
+    }
+}
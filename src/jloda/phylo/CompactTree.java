@@ -0,0 +1,294 @@
+/*
+ * CompactTree.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.graph.Node;
+import jloda.graph.algorithms.TraversalIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * immutable snapshot of a rooted phylogenetic tree, held in primitive arrays. Uses a few dozen bytes per node,
+ * compared to hundreds of bytes for a PhyloTree, and is intended for large trees that are only read.
+ * Nodes are numbered 0..n-1 in pre-order, so the root is 0 and every node comes before its descendants.
+ * The children and the taxa of a node are stored in compressed sparse row format. Edge weights are stored as floats, and labels are interned.
+ * Node labels, taxa, edge weights and edge labels are kept, edge confidences are not
+ * Daniel Huson, 2021
+ */
+public class CompactTree {
+    private final int[] parent;
+    private final int[] childStart; // children of i are children[childStart[i]..childStart[i+1]-1]
+    private final int[] children;
+    private final int[] depth;
+    private final float[] weight; // weight of edge to parent, 0 for root
+    private final String[] label;
+    private final String[] edgeLabel; // label of edge to parent, or null, if tree has no edge labels
+    private final int[] taxonStart; // taxa of i are taxa[taxonStart[i]..taxonStart[i+1]-1], or null, if tree has no taxa
+    private final int[] taxa;
+    private final String name;
+
+    /**
+     * constructor
+     *
+     * @param tree a tree, edges must be directed away from the root
+     * @throws IllegalArgumentException if tree is not a tree, e.g. a network
+     */
+    public CompactTree(PhyloTree tree) {
+        this(tree, new HashMap<>());
+    }
+
+    /**
+     * constructor
+     *
+     * @param tree       a tree, edges must be directed away from the root
+     * @param labelTable used to intern labels, can be shared between trees
+     * @throws IllegalArgumentException if tree is not a tree, e.g. a network
+     */
+    public CompactTree(PhyloTree tree, Map<String, String> labelTable) {
+        name = tree.getName();
+        if (tree.getNumberOfNodes() == 0) {
+            parent = childStart = children = depth = new int[0];
+            weight = new float[0];
+            label = new String[0];
+            edgeLabel = null;
+            taxonStart = taxa = null;
+            return;
+        }
+        var root = tree.getRoot();
+        if (root == null) {
+            root = tree.getFirstNode();
+            while (root.getInDegree() > 0)
+                root = root.getFirstInEdge().getSource();
+        }
+        final var traversalIndex = new TraversalIndex(root);
+        final var n = traversalIndex.getNumberOfNodes();
+        if (n < tree.getNumberOfNodes())
+            throw new IllegalArgumentException("Not a tree: not all nodes reachable from root");
+
+        parent = traversalIndex.getParents().clone();
+        depth = traversalIndex.getDepths().clone();
+        weight = new float[n];
+        label = new String[n];
+        edgeLabel = (tree.edgeStream().anyMatch(e -> tree.getLabel(e) != null) ? new String[n] : null);
+        taxonStart = (tree.getNumberOfTaxa() > 0 ? new int[n + 1] : null);
+        childStart = new int[n + 1];
+        children = new int[Math.max(0, n - 1)];
+
+        for (var i = 0; i < n; i++) {
+            final Node v = traversalIndex.getNode(i);
+            if (i > 0) {
+                weight[i] = (float) tree.getWeight(v.getFirstInEdge());
+                childStart[parent[i] + 1]++;
+                if (edgeLabel != null) {
+                    final var inEdgeLabel = tree.getLabel(v.getFirstInEdge());
+                    if (inEdgeLabel != null)
+                        edgeLabel[i] = labelTable.computeIfAbsent(inEdgeLabel, k -> k);
+                }
+            }
+            final var nodeLabel = tree.getLabel(v);
+            if (nodeLabel != null)
+                label[i] = labelTable.computeIfAbsent(nodeLabel, k -> k);
+            if (taxonStart != null)
+                taxonStart[i + 1] = taxonStart[i] + tree.getNumberOfTaxa(v);
+        }
+        if (taxonStart != null) {
+            taxa = new int[taxonStart[n]];
+            for (var i = 0; i < n; i++) {
+                var pos = taxonStart[i];
+                for (var it = tree.getTaxaIterator(traversalIndex.getNode(i)); it.hasNext(); )
+                    taxa[pos++] = it.nextInt();
+            }
+        } else
+            taxa = null;
+        for (var i = 0; i < n; i++)
+            childStart[i + 1] += childStart[i];
+        final var next = new int[n];
+        for (var i = 1; i < n; i++) {
+            final var p = parent[i];
+            children[childStart[p] + next[p]++] = i;
+        }
+    }
+
+    /**
+     * converts back to a phylo tree. Edge weights are converted from float precision
+     *
+     * @return new tree
+     */
+    public PhyloTree toPhyloTree() {
+        final var tree = new PhyloTree();
+        tree.setName(name);
+        final var nodes = new Node[getNumberOfNodes()];
+        for (var i = 0; i < nodes.length; i++) {
+            nodes[i] = tree.newNode();
+            if (label[i] != null)
+                tree.setLabel(nodes[i], label[i]);
+            if (taxonStart != null) {
+                for (var k = taxonStart[i]; k < taxonStart[i + 1]; k++)
+                    tree.addTaxon(nodes[i], taxa[k]);
+            }
+            if (i > 0) {
+                final var e = tree.newEdge(nodes[parent[i]], nodes[i]);
+                tree.setWeight(e, weight[i]);
+                if (edgeLabel != null && edgeLabel[i] != null)
+                    tree.setLabel(e, edgeLabel[i]);
+            }
+        }
+        if (nodes.length > 0)
+            tree.setRoot(nodes[0]);
+        return tree;
+    }
+
+    public int getNumberOfNodes() {
+        return parent.length;
+    }
+
+    /**
+     * @return root, which is node 0, or -1, if the tree is empty
+     */
+    public int getRoot() {
+        return (parent.length > 0 ? 0 : -1);
+    }
+
+    /**
+     * @return parent, or -1 for the root
+     */
+    public int getParent(int v) {
+        return parent[v];
+    }
+
+    public int getNumberOfChildren(int v) {
+        return childStart[v + 1] - childStart[v];
+    }
+
+    /**
+     * @return the k-th child of v
+     */
+    public int getChild(int v, int k) {
+        return children[childStart[v] + k];
+    }
+
+    public IntStream children(int v) {
+        return IntStream.range(childStart[v], childStart[v + 1]).map(k -> children[k]);
+    }
+
+    public boolean isLeaf(int v) {
+        return childStart[v + 1] == childStart[v];
+    }
+
+    public IntStream leaves() {
+        return IntStream.range(0, getNumberOfNodes()).filter(this::isLeaf);
+    }
+
+    public int getNumberOfLeaves() {
+        return (int) leaves().count();
+    }
+
+    /**
+     * @return number of edges between root and v
+     */
+    public int getDepth(int v) {
+        return depth[v];
+    }
+
+    /**
+     * @return weight of edge from parent to v, 0 for the root
+     */
+    public float getWeight(int v) {
+        return weight[v];
+    }
+
+    public String getLabel(int v) {
+        return label[v];
+    }
+
+    /**
+     * @return label of edge from parent to v, or null
+     */
+    public String getEdgeLabel(int v) {
+        return (edgeLabel != null ? edgeLabel[v] : null);
+    }
+
+    /**
+     * @return first taxon of v, or 0
+     */
+    public int getTaxon(int v) {
+        return (taxonStart != null && taxonStart[v + 1] > taxonStart[v] ? taxa[taxonStart[v]] : 0);
+    }
+
+    public int getNumberOfTaxa(int v) {
+        return (taxonStart != null ? taxonStart[v + 1] - taxonStart[v] : 0);
+    }
+
+    /**
+     * @return all taxa of v
+     */
+    public IntStream getTaxa(int v) {
+        return (taxonStart != null ? IntStream.range(taxonStart[v], taxonStart[v + 1]).map(k -> taxa[k]) : IntStream.empty());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * applies the method to all nodes in pre-order, so that every node is visited before its children
+     */
+    public void preOrder(IntConsumer method) {
+        for (var v = 0; v < getNumberOfNodes(); v++)
+            method.accept(v);
+    }
+
+    /**
+     * applies the method to all nodes in reverse pre-order, so that every node is visited after its children
+     */
+    public void bottomUp(IntConsumer method) {
+        for (var v = getNumberOfNodes() - 1; v >= 0; v--)
+            method.accept(v);
+    }
+
+    /**
+     * applies the method to all nodes in post-order, as given by a depth-first traversal that visits children in order
+     */
+    public void postOrder(IntConsumer method) {
+        final var n = getNumberOfNodes();
+        if (n == 0)
+            return;
+        final var stack = new int[n];
+        final var nextChild = new int[n];
+        var top = 0;
+        stack[0] = 0;
+        nextChild[0] = childStart[0];
+        while (top >= 0) {
+            final var v = stack[top];
+            if (nextChild[top] < childStart[v + 1]) {
+                final var w = children[nextChild[top]++];
+                stack[++top] = w;
+                nextChild[top] = childStart[w];
+            } else {
+                method.accept(v);
+                top--;
+            }
+        }
+    }
+}
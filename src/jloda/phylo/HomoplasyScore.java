@@ -23,9 +23,11 @@ package jloda.phylo;
 import jloda.graph.Edge;
 import jloda.graph.Node;
 import jloda.graph.NodeIntArray;
+import jloda.util.Pair;
 
 import java.io.IOException;
 import java.util.BitSet;
+import java.util.List;
 
 /**
  * Compute the distortion score on a tree
@@ -107,7 +109,21 @@ public class HomoplasyScore {
         //System.out.println("initially:");
         //printScores(tree,scoreA,scoreB);
         computeScoreRec(root, null, scoreA, scoreB);
-        return Math.min(scoreA.get(root), scoreB.get(root)) - 1;
+        return Math.min(scoreA.getInt(root), scoreB.getInt(root)) - 1;
+    }
+
+    /**
+     * computes the best homoplasy scores for many splits on the same tree. The tree is traversed only once and the splits are
+     * scored in parallel
+     *
+     * @param tree            the tree
+     * @param splits          the splits, each given by its two sides
+     * @param numberOfThreads number of threads to use
+     * @return scores, in the order of the splits
+     * @throws IOException if a taxon of the tree is not contained in a split
+     */
+    static public int[] computeBestHomoplasyScoresForSplits(PhyloTree tree, List<Pair<BitSet, BitSet>> splits, int numberOfThreads) throws IOException {
+        return new SplitScorer(tree, null).apply(splits, numberOfThreads);
     }
 
     /**
@@ -132,32 +148,32 @@ public class HomoplasyScore {
                 Node w = f.getOpposite(v);
                 if (w.getDegree() > 1)
                     computeScoreRec(w, f, scoreA, scoreB);
-                if (scoreA.get(w) <= scoreB.get(w) - 1) {
+                if (scoreA.getInt(w) <= scoreB.getInt(w) - 1) {
                     hasAMuchBetterThanB = true;
-                    countB += scoreA.get(w);
+                    countB += scoreA.getInt(w);
                 } else {
-                    countB += scoreB.get(w);
+                    countB += scoreB.getInt(w);
                 }
-                if (scoreB.get(w) <= scoreA.get(w) - 1) {
+                if (scoreB.getInt(w) <= scoreA.getInt(w) - 1) {
                     hasBMuchBetterThanA = true;
-                    countA += scoreB.get(w);
+                    countA += scoreB.getInt(w);
                 } else {
-                    countA += scoreA.get(w);
+                    countA += scoreA.getInt(w);
                 }
             }
         }
         // this might be a labeled internal node, treat it as an additional leaf node:
-        if (scoreA.get(v) <= scoreB.get(v) - 1) {
+        if (scoreA.getInt(v) <= scoreB.getInt(v) - 1) {
             hasAMuchBetterThanB = true;
-            countB += scoreA.get(v);
+            countB += scoreA.getInt(v);
         } else {
-            countB += scoreB.get(v);
+            countB += scoreB.getInt(v);
         }
-        if (scoreB.get(v) <= scoreA.get(v) - 1) {
+        if (scoreB.getInt(v) <= scoreA.getInt(v) - 1) {
             hasBMuchBetterThanA = true;
-            countA += scoreB.get(v);
+            countA += scoreB.getInt(v);
         } else {
-            countA += scoreA.get(v);
+            countA += scoreA.getInt(v);
         }
         // add 1 for change, if necessary:
         if (hasAMuchBetterThanB)
@@ -174,7 +190,7 @@ public class HomoplasyScore {
 
     static void printScores(PhyloTree tree, NodeIntArray scoreA, NodeIntArray scoreB) {
         for (Node v = tree.getFirstNode(); v != null; v = v.getNext()) {
-            System.out.println("v=" + v + " scoreA=" + scoreA.get(v) + " scoreB=" + scoreB.get(v));
+            System.out.println("v=" + v + " scoreA=" + scoreA.getInt(v) + " scoreB=" + scoreB.getInt(v));
         }
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * LCAIndex.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.graph.Node;
+import jloda.graph.algorithms.TraversalIndex;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * lowest common ancestor index for a rooted tree, answers LCA, patristic distance and path length queries in constant time.
+ * Nodes are numbered in pre-order. For two nodes u<v that are not equal, the LCA is the parent of the
+ * shallowest node among u+1..v, which is found using a sparse table of range minima over the node depths
+ * Daniel Huson, 2021
+ */
+public class LCAIndex {
+    private final TraversalIndex traversalIndex;
+    private final int[] depth;
+    private final double[] distanceFromRoot;
+    private final int[][] sparseTable; // sparseTable[k-1][i] is the index of a shallowest node among i..i+2^k-1
+
+    /**
+     * construct the index for the tree below the root of the given tree
+     */
+    public LCAIndex(PhyloTree tree) {
+        this(tree, tree.getRoot());
+    }
+
+    /**
+     * construct the index for the subtree below the given root. Distances are based on the edge weights of the tree
+     *
+     * @param tree the tree
+     * @param root the root, edges must be directed away from the root
+     * @throws IllegalArgumentException if the graph below the root is not a tree
+     */
+    public LCAIndex(PhyloTree tree, Node root) {
+        traversalIndex = new TraversalIndex(root);
+        final var n = traversalIndex.getNumberOfNodes();
+        depth = traversalIndex.getDepths();
+
+        distanceFromRoot = new double[n];
+        for (var i = 1; i < n; i++) {
+            final var v = traversalIndex.getNode(i);
+            distanceFromRoot[i] = distanceFromRoot[traversalIndex.getParent(i)] + tree.getWeight(v.getFirstInEdge());
+        }
+
+        final var levels = (n > 1 ? 31 - Integer.numberOfLeadingZeros(n) : 0);
+        sparseTable = new int[levels][];
+        for (var k = 1; k <= levels; k++) {
+            final var half = 1 << (k - 1);
+            final var row = new int[n - (1 << k) + 1];
+            for (var i = 0; i < row.length; i++) {
+                final var a = (k == 1 ? i : sparseTable[k - 2][i]);
+                final var b = (k == 1 ? i + half : sparseTable[k - 2][i + half]);
+                row[i] = (depth[b] < depth[a] ? b : a);
+            }
+            sparseTable[k - 1] = row;
+        }
+    }
+
+    /**
+     * @return lowest common ancestor of a and b
+     */
+    public Node getLCA(Node a, Node b) {
+        return traversalIndex.getNode(getLCA(getIndex(a), getIndex(b)));
+    }
+
+    /**
+     * @return index of lowest common ancestor of the nodes with indices a and b
+     */
+    public int getLCA(int a, int b) {
+        if (a == b)
+            return a;
+        if (a > b) {
+            final var tmp = a;
+            a = b;
+            b = tmp;
+        }
+        return traversalIndex.getParent(getShallowest(a + 1, b));
+    }
+
+    /**
+     * @return index of a node of minimum depth among the nodes with indices from..to, inclusive
+     */
+    private int getShallowest(int from, int to) {
+        if (from == to)
+            return from;
+        final var k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        final var a = sparseTable[k - 1][from];
+        final var b = sparseTable[k - 1][to - (1 << k) + 1];
+        return (depth[b] < depth[a] ? b : a);
+    }
+
+    /**
+     * @return sum of edge weights along the path between a and b
+     */
+    public double getDistance(Node a, Node b) {
+        return getDistance(getIndex(a), getIndex(b));
+    }
+
+    /**
+     * @return sum of edge weights along the path between the nodes with indices a and b
+     */
+    public double getDistance(int a, int b) {
+        return distanceFromRoot[a] + distanceFromRoot[b] - 2 * distanceFromRoot[getLCA(a, b)];
+    }
+
+    /**
+     * @return number of edges along the path between a and b
+     */
+    public int getPathLength(Node a, Node b) {
+        return getPathLength(getIndex(a), getIndex(b));
+    }
+
+    /**
+     * @return number of edges along the path between the nodes with indices a and b
+     */
+    public int getPathLength(int a, int b) {
+        return depth[a] + depth[b] - 2 * depth[getLCA(a, b)];
+    }
+
+    /**
+     * @return sum of edge weights along the path from the root to v
+     */
+    public double getDistanceFromRoot(Node v) {
+        return distanceFromRoot[getIndex(v)];
+    }
+
+    /**
+     * computes the matrix of patristic distances between all pairs of the given nodes, in parallel
+     *
+     * @param nodes           the nodes, e.g. all leaves of the tree
+     * @param numberOfThreads number of threads to use
+     * @return symmetric matrix of distances, indexed by position in the given array
+     */
+    public double[][] computeDistances(Node[] nodes, int numberOfThreads) {
+        final var index = new int[nodes.length];
+        for (var i = 0; i < nodes.length; i++)
+            index[i] = getIndex(nodes[i]);
+        final var matrix = new double[nodes.length][nodes.length];
+
+        final var pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            pool.submit(() -> IntStream.range(0, nodes.length).parallel().forEach(i -> {
+                final var row = matrix[i];
+                for (var j = 0; j < nodes.length; j++) {
+                    if (j != i)
+                        row[j] = getDistance(index[i], index[j]);
+                }
+            })).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            pool.shutdown();
+        }
+        return matrix;
+    }
+
+    /**
+     * computes the matrix of patristic distances between all leaves of a tree, in parallel
+     *
+     * @param tree            the tree
+     * @param numberOfThreads number of threads to use
+     * @return leaves in pre-order and the symmetric matrix of their distances
+     */
+    public static LeafDistances computeLeafDistances(PhyloTree tree, int numberOfThreads) {
+        final var index = new LCAIndex(tree);
+        final var leaves = IntStream.range(0, index.getNumberOfNodes()).filter(i -> index.traversalIndex.isLeaf(i))
+                .mapToObj(index.traversalIndex::getNode).toArray(Node[]::new);
+        return new LeafDistances(leaves, index.computeDistances(leaves, numberOfThreads));
+    }
+
+    /**
+     * @return index of node v, or -1, if v is not contained in the tree
+     */
+    public int getIndex(Node v) {
+        return traversalIndex.getIndex(v);
+    }
+
+    public Node getNode(int i) {
+        return traversalIndex.getNode(i);
+    }
+
+    public int getNumberOfNodes() {
+        return traversalIndex.getNumberOfNodes();
+    }
+
+    public TraversalIndex getTraversalIndex() {
+        return traversalIndex;
+    }
+
+    /**
+     * leaves of a tree and their patristic distances
+     */
+    public static class LeafDistances {
+        private final Node[] leaves;
+        private final double[][] distances;
+
+        public LeafDistances(Node[] leaves, double[][] distances) {
+            this.leaves = leaves;
+            this.distances = distances;
+        }
+
+        public Node[] getLeaves() {
+            return leaves;
+        }
+
+        public double[][] getDistances() {
+            return distances;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * NewickIO.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.util.Basic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * parallel reading and writing of many trees in Newick format.
+ * The input is split into trees on semicolons, and the trees are then parsed in parallel, in batches.
+ * All node labels are interned in a label table that is shared by all trees, so that each label is held in memory only once
+ * Daniel Huson, 2021
+ */
+public class NewickIO {
+    /**
+     * number of trees parsed or written per thread in one batch
+     */
+    private static final int TREES_PER_THREAD = 256;
+
+    /**
+     * reads all trees from a file, which may be gzipped
+     *
+     * @param fileName        file
+     * @param rooted          maintain roots, even if they have degree 2
+     * @param numberOfThreads number of threads to use
+     * @return trees in order of input
+     */
+    public static ArrayList<PhyloTree> readTrees(String fileName, boolean rooted, int numberOfThreads) throws IOException {
+        try (var reader = new InputStreamReader(Basic.getInputStreamPossiblyZIPorGZIP(fileName), StandardCharsets.UTF_8)) {
+            return readTrees(reader, rooted, null, numberOfThreads);
+        }
+    }
+
+    /**
+     * reads all trees
+     *
+     * @param reader          the reader, each tree must be terminated by a semicolon
+     * @param rooted          maintain roots, even if they have degree 2
+     * @param labelTable      table used to intern node labels, if null, a new table is used for this call. It is updated by multiple threads
+     * @param numberOfThreads number of threads to use
+     * @return trees in order of input
+     */
+    public static ArrayList<PhyloTree> readTrees(Reader reader, boolean rooted, ConcurrentMap<String, String> labelTable, int numberOfThreads) throws IOException {
+        final var table = (labelTable != null ? labelTable : new ConcurrentHashMap<String, String>());
+        final var splitter = new TreeSplitter(reader);
+        final var batchSize = TREES_PER_THREAD * Math.max(1, numberOfThreads);
+        final var result = new ArrayList<PhyloTree>();
+
+        final var pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            final var texts = new ArrayList<String>(batchSize);
+            while (true) {
+                texts.clear();
+                String text;
+                while (texts.size() < batchSize && (text = splitter.next()) != null)
+                    texts.add(text);
+                if (texts.size() == 0)
+                    break;
+
+                final var trees = new PhyloTree[texts.size()];
+                final var errors = new IOException[texts.size()];
+                run(pool, () -> IntStream.range(0, trees.length).parallel().forEach(i -> {
+                    final var newick = texts.get(i);
+                    final var newickReader = new NewickReader(new StringReader(newick), newick.length());
+                    newickReader.setRooted(rooted);
+                    newickReader.setLabelTable(table);
+                    final var tree = new PhyloTree();
+                    try {
+                        newickReader.readNext(tree);
+                    } catch (IOException ex) {
+                        errors[i] = ex;
+                    }
+                    trees[i] = tree;
+                }));
+                for (var i = 0; i < trees.length; i++) {
+                    if (errors[i] != null)
+                        throw new IOException("Tree " + (result.size() + i + 1) + ": " + errors[i].getMessage(), errors[i]);
+                }
+                result.ensureCapacity(result.size() + trees.length);
+                result.addAll(List.of(trees));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * writes all trees in Newick format, one per line, each terminated by a semicolon
+     *
+     * @param writer          the writer
+     * @param trees           the trees
+     * @param writeWeights    write edge weights
+     * @param numberOfThreads number of threads to use
+     */
+    public static void writeTrees(Writer writer, List<PhyloTree> trees, boolean writeWeights, int numberOfThreads) throws IOException {
+        final var threads = Math.max(1, numberOfThreads);
+        final var batchSize = TREES_PER_THREAD * threads;
+
+        final var pool = new ForkJoinPool(threads);
+        try {
+            for (var start = 0; start < trees.size(); start += batchSize) {
+                final var end = Math.min(trees.size(), start + batchSize);
+                // each task writes a contiguous range of trees into its own buffer, buffers are then written in order:
+                final var numberOfTasks = Math.min(threads, end - start);
+                final var buffers = new StringWriter[numberOfTasks];
+                final var batchStart = start;
+                run(pool, () -> IntStream.range(0, numberOfTasks).parallel().forEach(t -> {
+                    final var from = batchStart + (int) ((long) t * (end - batchStart) / numberOfTasks);
+                    final var to = batchStart + (int) ((long) (t + 1) * (end - batchStart) / numberOfTasks);
+                    final var buffer = new StringWriter();
+                    try {
+                        for (var i = from; i < to; i++) {
+                            trees.get(i).write(buffer, writeWeights);
+                            buffer.write(";\n");
+                        }
+                    } catch (IOException ignored) { // can't happen with a StringWriter
+                    }
+                    buffers[t] = buffer;
+                }));
+                for (var buffer : buffers)
+                    writer.write(buffer.toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        writer.flush();
+    }
+
+    /**
+     * writes all trees to a file, one per line
+     *
+     * @param fileName        file
+     * @param trees           the trees
+     * @param writeWeights    write edge weights
+     * @param numberOfThreads number of threads to use
+     */
+    public static void writeTrees(String fileName, List<PhyloTree> trees, boolean writeWeights, int numberOfThreads) throws IOException {
+        try (var writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+            writeTrees(writer, trees, writeWeights, numberOfThreads);
+        }
+    }
+
+    private static void run(ForkJoinPool pool, Runnable task) throws IOException {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * splits the input into the texts of individual trees, on semicolons that are not contained in quotes or brackets
+     */
+    private static class TreeSplitter {
+        private final Reader reader;
+        private final char[] buffer = new char[65536];
+        private int pos = 0;
+        private int length = 0;
+        private final StringBuilder text = new StringBuilder();
+
+        TreeSplitter(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return text of next tree, including the terminating semicolon, or null, if input is exhausted
+         */
+        String next() throws IOException {
+            text.setLength(0);
+            var inQuotes = false;
+            var inBrackets = false;
+            var hasContent = false;
+            while (true) {
+                if (pos == length) {
+                    length = reader.read(buffer, 0, buffer.length);
+                    pos = 0;
+                    if (length == -1) {
+                        length = 0;
+                        return (hasContent ? text.toString() : null);
+                    }
+                }
+                final var ch = buffer[pos++];
+                if (!hasContent) {
+                    if (Character.isWhitespace(ch))
+                        continue;
+                    hasContent = true;
+                }
+                text.append(ch);
+                if (ch == '\'' && !inBrackets)
+                    inQuotes = !inQuotes;
+                else if (ch == '[' && !inQuotes)
+                    inBrackets = true;
+                else if (ch == ']' && !inQuotes)
+                    inBrackets = false;
+                else if (ch == ';' && !inQuotes && !inBrackets)
+                    return text.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * NewickReader.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.util.ICloseableIterator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * streaming parser for trees in Newick format. Reads a sequence of trees, each terminated by a semicolon, from a reader,
+ * one buffer at a time, so neither the input nor a single tree is ever held as a string.
+ * Uses an explicit stack instead of recursion, so the depth of trees is not limited by the call stack.
+ * Produces the same trees as PhyloTree.parseBracketNotation, except that line breaks are treated as white space
+ * Daniel Huson, 2021
+ */
+public class NewickReader implements ICloseableIterator<PhyloTree> {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int bufferPos = 0;
+    private int bufferLength = 0;
+    private long position = 0; // number of characters consumed before the start of the buffer
+    private boolean endOfInput = false;
+
+    private final StringBuilder labelBuffer = new StringBuilder();
+    private final ArrayList<Node> stack = new ArrayList<>();
+    private final Map<String, Node> seen = new HashMap<>();
+    private Map<String, String> labelTable;
+
+    private boolean rooted = false;
+    private boolean allowMultiLabeledNodes = true;
+    private long numberOfTrees = 0;
+
+    private PhyloTree nextTree;
+    private long maxProgress = 0;
+
+    /**
+     * constructor
+     *
+     * @param reader the reader to parse, no need to use a buffered reader
+     */
+    public NewickReader(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    /**
+     * constructor
+     *
+     * @param reader     the reader to parse
+     * @param bufferSize number of characters to read at a time
+     */
+    NewickReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(1, bufferSize)];
+    }
+
+    /**
+     * constructor
+     *
+     * @param ins input stream, assumed to use UTF-8
+     */
+    public NewickReader(InputStream ins) {
+        this(new InputStreamReader(ins, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * constructor
+     *
+     * @param file file to parse, assumed to use UTF-8
+     */
+    public NewickReader(File file) throws FileNotFoundException {
+        this(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        maxProgress = file.length();
+    }
+
+    /**
+     * reads the next tree into the given tree, which is cleared first
+     *
+     * @param tree the tree to read into
+     * @return true, if a tree was read, false, if the end of the input has been reached
+     */
+    public boolean readNext(PhyloTree tree) throws IOException {
+        tree.clear();
+        skipWhiteSpace();
+        if (peek() == -1)
+            return false;
+        tree.setAllowMultiLabeledNodes(allowMultiLabeledNodes);
+        parse(tree);
+        tree.postProcessParsedTree(rooted);
+        numberOfTrees++;
+        return true;
+    }
+
+    /**
+     * read all nodes and edges of one tree
+     */
+    private void parse(PhyloTree tree) throws IOException {
+        tree.setInputHasMultiLabels(false);
+        tree.hasWeights = false;
+        seen.clear();
+        stack.clear();
+        Node v = null; // current parent
+
+        while (true) {
+            skipWhiteSpace();
+            var w = tree.newNode();
+            if (peek() == '(') {
+                read();
+                stack.add(v);
+                v = w;
+                continue;
+            }
+            if (tree.getNumberOfNodes() == 1)
+                throw new IOException("Expected '(' at position " + getPosition());
+            setNodeLabel(tree, w, true);
+
+            // process the node w and all enclosing nodes that are closed by a ')'
+            while (true) {
+                Edge e = null;
+                if (v != null)
+                    e = tree.newEdge(v, w);
+                parseEdgeWeightAndLabel(tree, w, e);
+
+                var ch = peek();
+                if (ch == -1) {
+                    if (stack.isEmpty())
+                        return;
+                    else
+                        throw new IOException("Unexpected end of input");
+                } else if (ch == ';' && stack.isEmpty()) {
+                    read();
+                    return;
+                } else if (ch == ')') {
+                    if (stack.isEmpty())
+                        throw new IOException("Unexpected ')' at position " + getPosition());
+                    read();
+                    w = v;
+                    v = stack.remove(stack.size() - 1);
+                    skipWhiteSpace();
+                    if (peek() != -1 && !isPunctuation(peek()))
+                        setNodeLabel(tree, w, false);
+                } else if (ch == ',') {
+                    read();
+                    break;
+                } else
+                    throw new IOException("Unexpected '" + (char) ch + "' at position " + getPosition());
+            }
+        }
+    }
+
+    /**
+     * reads the label of a node. Labels of leaves are required, labels of internal nodes are optional
+     */
+    private void setNodeLabel(PhyloTree tree, Node w, boolean leaf) throws IOException {
+        final var start = getPosition();
+        labelBuffer.setLength(0);
+        var inQuotes = false;
+        for (var ch = peek(); ch != -1 && (inQuotes || !isPunctuation(ch)); ch = peek()) {
+            if (ch == '\'')
+                inQuotes = !inQuotes;
+            else
+                labelBuffer.append((char) ch);
+            read();
+        }
+        var label = trim(labelBuffer);
+
+        if (leaf && label.startsWith("'") && label.endsWith("'") && label.length() > 1)
+            label = label.substring(1, label.length() - 1).trim();
+
+        if (label.length() > 0) {
+            if (!allowMultiLabeledNodes && seen.containsKey(label) && PhyloTreeUtils.findReticulateLabel(label) == null) {
+                if (!leaf && label.startsWith("'") && label.endsWith("'") && label.length() > 1)
+                    label = label.substring(1, label.length() - 1);
+                // give first occurrence of this label the suffix .1
+                final var old = seen.get(label);
+                if (old != null) {
+                    tree.setLabel(old, label + ".1");
+                    seen.put(label, null); // keep label in, but null indicates has changed
+                    seen.put(label + ".1", old);
+                    tree.setInputHasMultiLabels(true);
+                    if (leaf && PhyloTree.getWarnMultiLabeled())
+                        System.err.println("multi-label: " + label);
+                }
+                var t = 1;
+                String labelt;
+                do {
+                    labelt = label + "." + (++t);
+                } while (seen.containsKey(labelt));
+                label = labelt;
+            }
+            seen.put(label, w);
+            if (labelTable != null) {
+                final var previous = labelTable.putIfAbsent(label, label);
+                if (previous != null)
+                    label = previous;
+            }
+        }
+        tree.setLabel(w, label);
+        if (label.length() == 0)
+            throw new IOException("Expected label at position " + start);
+    }
+
+    /**
+     * reads the optional edge weight and edge label following a node
+     */
+    private void parseEdgeWeightAndLabel(PhyloTree tree, Node w, Edge e) throws IOException {
+        skipWhiteSpace();
+        if (peek() == ':') {
+            read();
+            skipWhiteSpace();
+            final var start = getPosition();
+            labelBuffer.setLength(0);
+            for (var ch = peek(); ch != -1 && !isPunctuation(ch) && ch != '['; ch = peek()) {
+                labelBuffer.append((char) ch);
+                read();
+            }
+            final var number = trim(labelBuffer);
+            try {
+                final var weight = Math.max(0, Double.parseDouble(number));
+                if (e != null)
+                    tree.setWeight(e, weight);
+                tree.hasWeights = true;
+            } catch (NumberFormatException ex) {
+                throw new IOException("Expected number at position " + start + " (got: '" + number + "')");
+            }
+        }
+
+        // adjust edge weights for reticulate edges
+        if (e != null) {
+            final var label = tree.getLabel(w);
+            if (label != null && PhyloTreeUtils.isReticulateNode(label)) {
+                if (PhyloTreeUtils.isReticulateAcceptorEdge(label)) {
+                    if (tree.getWeight(e) <= 0)
+                        tree.setWeight(e, 0.000001);
+                } else {
+                    if (tree.getWeight(e) > 0)
+                        tree.setWeight(e, 0.0);
+                }
+            }
+        }
+
+        if (peek() == '[') { // edge label
+            final var start = getPosition();
+            read();
+            labelBuffer.setLength(0);
+            for (var ch = read(); ch != ']'; ch = read()) {
+                if (ch == -1 || ch == '[')
+                    throw new IOException("Error in edge label at position: " + start);
+                labelBuffer.append((char) ch);
+            }
+            tree.setLabel(e, labelBuffer.toString());
+        }
+    }
+
+    private static boolean isPunctuation(int ch) {
+        return ch == ')' || ch == ',' || ch == ';' || ch == ':';
+    }
+
+    /**
+     * trims white space from both ends of the buffer and returns the result as a string
+     */
+    private static String trim(StringBuilder buf) {
+        var start = 0;
+        var end = buf.length();
+        while (start < end && buf.charAt(start) <= ' ')
+            start++;
+        while (end > start && buf.charAt(end - 1) <= ' ')
+            end--;
+        return buf.substring(start, end);
+    }
+
+    private void skipWhiteSpace() throws IOException {
+        for (var ch = peek(); ch != -1 && Character.isWhitespace(ch); ch = peek())
+            read();
+    }
+
+    /**
+     * @return next character without consuming it, or -1 at end of input
+     */
+    private int peek() throws IOException {
+        if (bufferPos == bufferLength && !fillBuffer())
+            return -1;
+        return buffer[bufferPos];
+    }
+
+    /**
+     * @return next character, or -1 at end of input
+     */
+    private int read() throws IOException {
+        if (bufferPos == bufferLength && !fillBuffer())
+            return -1;
+        return buffer[bufferPos++];
+    }
+
+    private boolean fillBuffer() throws IOException {
+        if (endOfInput)
+            return false;
+        position += bufferLength;
+        bufferPos = 0;
+        do {
+            bufferLength = reader.read(buffer, 0, buffer.length);
+        }
+        while (bufferLength == 0);
+        if (bufferLength == -1) {
+            bufferLength = 0;
+            endOfInput = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return position of the next character in the input
+     */
+    public long getPosition() {
+        return position + bufferPos;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextTree == null) {
+            final var tree = new PhyloTree();
+            try {
+                if (readNext(tree))
+                    nextTree = tree;
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        return nextTree != null;
+    }
+
+    @Override
+    public PhyloTree next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        final var result = nextTree;
+        nextTree = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Override
+    public long getMaximumProgress() {
+        return maxProgress;
+    }
+
+    @Override
+    public long getProgress() {
+        return getPosition();
+    }
+
+    /**
+     * @return number of trees read so far
+     */
+    public long getNumberOfTrees() {
+        return numberOfTrees;
+    }
+
+    public boolean isRooted() {
+        return rooted;
+    }
+
+    /**
+     * maintain root, even if it has degree 2
+     */
+    public void setRooted(boolean rooted) {
+        this.rooted = rooted;
+    }
+
+    public boolean isAllowMultiLabeledNodes() {
+        return allowMultiLabeledNodes;
+    }
+
+    public void setAllowMultiLabeledNodes(boolean allowMultiLabeledNodes) {
+        this.allowMultiLabeledNodes = allowMultiLabeledNodes;
+    }
+
+    public Map<String, String> getLabelTable() {
+        return labelTable;
+    }
+
+    /**
+     * set a table used to intern node labels, so that trees read by this reader (or by other readers using the same table)
+     * share one string instance per label. Must be thread-safe, if shared by readers in different threads
+     *
+     * @param labelTable label table or null
+     */
+    public void setLabelTable(Map<String, String> labelTable) {
+        this.labelTable = labelTable;
+    }
+}
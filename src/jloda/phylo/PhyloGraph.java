@@ -25,6 +25,7 @@ import jloda.graph.*;
 import jloda.util.EmptyIterator;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Phylogenetic graph
@@ -34,8 +35,10 @@ import java.util.*;
 public class PhyloGraph extends Graph {
     private EdgeDoubleArray edgeWeights;
     private EdgeDoubleArray edgeConfidences;
-    final Map<Integer, Node> taxon2node;
-    final NodeArray<List<Integer>> node2taxa;
+    private Node[] taxon2node = new Node[0]; // node by taxon id
+    private final BitSet taxonIds = new BitSet(); // all taxon ids that have been added and not cleared
+    private final NodeIntArray node2taxon; // first taxon of each node, or 0
+    private final NodeArray<int[]> node2moreTaxa; // additional taxa, for the few nodes that have more than one
 
     // if you add anything here, make sure it gets added to copy, too!
 
@@ -45,16 +48,13 @@ public class PhyloGraph extends Graph {
      */
     public PhyloGraph() {
         super();
-        taxon2node = new HashMap<>();
-        node2taxa = new NodeArray<>(this);
+        node2taxon = new NodeIntArray(this);
+        node2moreTaxa = new NodeArray<>(this);
 
         addGraphUpdateListener(new GraphUpdateAdapter() {
             public void deleteNode(Node v) {
-                List<Integer> list = node2taxa.get(v);
-                if (list != null) {
-                    for (Integer t : list) {
-                        taxon2node.put(t, null);
-                    }
+                for (var it = getTaxaIterator(v); it.hasNext(); ) {
+                    taxon2node[it.nextInt()] = null;
                 }
             }
         });
@@ -65,8 +65,7 @@ public class PhyloGraph extends Graph {
      */
     public void clear() {
         super.clear();
-        taxon2node.clear();
-        node2taxa.clear();
+        clearTaxa();
         edgeWeights = null;
         edgeConfidences = null;
     }
@@ -177,7 +176,7 @@ public class PhyloGraph extends Graph {
      * @return the Node representing the taxon with id <code>taxId</code>.
      */
     public Node getTaxon2Node(int taxId) {
-        return taxon2node.get(taxId);
+        return (taxId >= 0 && taxId < taxon2node.length ? taxon2node[taxId] : null);
     }
 
     /**
@@ -186,7 +185,7 @@ public class PhyloGraph extends Graph {
      * @return number of taxa
      */
     public int getNumberOfTaxa() {
-        return taxon2node.size();
+        return taxonIds.cardinality();
     }
 
     public boolean hasTaxa(Node v) {
@@ -194,8 +193,10 @@ public class PhyloGraph extends Graph {
     }
 
     public int getNumberOfTaxa(Node v) {
-        final List<Integer> list = node2taxa.get(v);
-        return list == null ? 0 : list.size();
+        if (node2taxon.getInt(v) == 0)
+            return 0;
+        final int[] more = node2moreTaxa.get(v);
+        return more == null ? 1 : 1 + more.length;
     }
 
     /**
@@ -205,32 +206,62 @@ public class PhyloGraph extends Graph {
      * @param taxId the id of the taxon to be added
      */
     public void addTaxon(Node v, int taxId) {
-        taxon2node.put(taxId, v);
-        List<Integer> list = node2taxa.get(v);
-        if (list == null) {
-            list = new ArrayList<>();
-            list.add(taxId);
-            node2taxa.put(v, list);
-        } else if (!list.contains(taxId))
-            list.add(taxId);
-        else
+        if (taxId >= taxon2node.length)
+            taxon2node = Arrays.copyOf(taxon2node, Math.max(taxId + 1, 2 * taxon2node.length));
+        taxon2node[taxId] = v;
+        taxonIds.set(taxId);
+
+        final int first = node2taxon.getInt(v);
+        if (first == 0)
+            node2taxon.set(v, taxId);
+        else if (!hasTaxon(v, taxId)) {
+            final int[] more = node2moreTaxa.get(v);
+            if (more == null)
+                node2moreTaxa.put(v, new int[]{taxId});
+            else {
+                final int[] larger = Arrays.copyOf(more, more.length + 1);
+                larger[more.length] = taxId;
+                node2moreTaxa.put(v, larger);
+            }
+        } else
             System.err.println("Already contained");
     }
 
+    /**
+     * does node v represent the given taxon?
+     *
+     * @param v     the node
+     * @param taxId the taxon id
+     * @return true, if taxId is one of the taxa of v
+     */
+    public boolean hasTaxon(Node v, int taxId) {
+        if (taxId != 0 && node2taxon.getInt(v) == taxId)
+            return true;
+        final int[] more = node2moreTaxa.get(v);
+        if (more != null) {
+            for (int t : more) {
+                if (t == taxId)
+                    return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Clears the taxa entries for the specified node
      *
      * @param v the node
      */
     public void clearTaxa(Node v) {
-        final List<Integer> list = node2taxa.get(v);
-        if (list != null) {
-            for (int t : list) {
-                if (taxon2node.get(t) == v)
-                    taxon2node.remove(t);
+        for (var it = getTaxaIterator(v); it.hasNext(); ) {
+            final int t = it.nextInt();
+            if (taxon2node[t] == v) {
+                taxon2node[t] = null;
+                taxonIds.clear(t);
             }
-            node2taxa.put(v, null);
         }
+        node2taxon.set(v, 0);
+        node2moreTaxa.put(v, null);
     }
 
     /**
@@ -240,20 +271,76 @@ public class PhyloGraph extends Graph {
      * @return taxa
      */
     public Iterable<Integer> getTaxa(Node v) {
-        return () -> {
-            if (node2taxa.get(v) == null)
-                return new EmptyIterator<>();
-            else
-                return node2taxa.get(v).iterator();
+        return () -> getTaxaIterator(v);
+    }
+
+    /**
+     * gets the first taxon of a node
+     *
+     * @param v the node
+     * @return first taxon id or 0, if node has no taxa
+     */
+    public int getTaxon(Node v) {
+        return node2taxon.getInt(v);
+    }
+
+    /**
+     * iterates over all taxon ids of a node, without boxing
+     *
+     * @param v the node
+     * @return taxa
+     */
+    public PrimitiveIterator.OfInt getTaxaIterator(Node v) {
+        final int first = node2taxon.getInt(v);
+        final int[] more = (first == 0 ? null : node2moreTaxa.get(v));
+        return new PrimitiveIterator.OfInt() {
+            private int i = (first == 0 ? 1 + (more == null ? 0 : more.length) : 0);
+
+            @Override
+            public boolean hasNext() {
+                return i < 1 + (more == null ? 0 : more.length);
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return (i++ == 0 ? first : more[i - 2]);
+            }
         };
     }
 
+    /**
+     * gets all taxon ids of a node as a stream
+     *
+     * @param v the node
+     * @return taxa
+     */
+    public IntStream getTaxaStream(Node v) {
+        final int first = node2taxon.getInt(v);
+        if (first == 0)
+            return IntStream.empty();
+        final int[] more = node2moreTaxa.get(v);
+        return more == null ? IntStream.of(first) : IntStream.concat(IntStream.of(first), IntStream.of(more));
+    }
+
+    /**
+     * gets all taxon ids that have been added to this graph, in increasing order
+     *
+     * @return taxon ids
+     */
+    public IntStream getTaxonIds() {
+        return taxonIds.stream();
+    }
+
     /**
      * Clears all taxa
      */
     public void clearTaxa() {
-        node2taxa.clear();
-        taxon2node.clear();
+        node2taxon.clear();
+        node2moreTaxa.clear();
+        taxon2node = new Node[0];
+        taxonIds.clear();
     }
 
     /**
@@ -262,14 +349,26 @@ public class PhyloGraph extends Graph {
      * @param taxonId
      */
     public void removeTaxon(int taxonId) {
-        if (taxonId > 0 && taxonId < taxon2node.size()) {
-            taxon2node.put(taxonId, null);
+        if (taxonId > 0 && taxonId < getNumberOfTaxa()) {
+            taxon2node[taxonId] = null;
             for (Node v : nodes()) {
-                List<Integer> list = node2taxa.get(v);
-                if (list != null && list.contains(taxonId)) {
-                    list.remove((Integer) taxonId);
-                    if (list.size() == 0)
-                        node2taxa.put(v, null);
+                if (hasTaxon(v, taxonId)) {
+                    final int[] more = node2moreTaxa.get(v);
+                    if (node2taxon.getInt(v) == taxonId) {
+                        if (more == null)
+                            node2taxon.set(v, 0);
+                        else {
+                            node2taxon.set(v, more[0]);
+                            node2moreTaxa.put(v, more.length == 1 ? null : Arrays.copyOfRange(more, 1, more.length));
+                        }
+                    } else {
+                        final int[] smaller = new int[more.length - 1];
+                        for (int i = 0, j = 0; i < more.length; i++) {
+                            if (more[i] != taxonId)
+                                smaller[j++] = more[i];
+                        }
+                        node2moreTaxa.put(v, smaller.length == 0 ? null : smaller);
+                    }
                     return;
                 }
             }
@@ -82,20 +82,11 @@ public class PhyloSplitsGraph extends PhyloGraph {
 
         super.copy(src, oldNode2NewNode, oldEdge2NewEdge);
 
-        for (Node v : src.nodes()) {
-            final Node w = (oldNode2NewNode.get(v));
-            node2taxa.put(w, src.node2taxa.get(v));
-        }
         for (Edge e : src.edges()) {
             final Edge f = (oldEdge2NewEdge.get(e));
             setAngle(f, src.getAngle(e));
             setSplit(f, src.getSplit(e));
         }
-        for (int i = 0; i < src.taxon2node.size(); i++) {
-            Node v = src.getTaxon2Node(i + 1);
-            if (v != null)
-                addTaxon(oldNode2NewNode.get(v), i + 1);
-        }
 
         setName(src.getName());
 
@@ -110,10 +101,10 @@ public class PhyloSplitsGraph extends PhyloGraph {
     public Integer[] getSplitIds() {
         final Set<Integer> ids = new TreeSet<>();
         for (Edge e : edges()) {
-            if (splits.get(e) == null)
+            if (!splits.containsKey(e))
                 System.err.println("Split id is null!!!");
             else
-                ids.add(splits.get(e));
+                ids.add(splits.getInt(e));
         }
         return ids.toArray(new Integer[0]);
     }
@@ -125,7 +116,7 @@ public class PhyloSplitsGraph extends PhyloGraph {
      * @param id the id
      */
     public void setSplit(Edge e, int id) {
-        splits.put(e, id);
+        splits.set(e, id);
     }
 
     /**
@@ -135,9 +126,9 @@ public class PhyloSplitsGraph extends PhyloGraph {
      * @return the split-id of the given edge
      */
     public int getSplit(Edge e) {
-        if (splits.get(e) == null)
+        if (!splits.containsKey(e))
             return 0;
-        return splits.get(e);
+        return splits.getInt(e);
     }
 
 
@@ -367,8 +358,8 @@ public class PhyloSplitsGraph extends PhyloGraph {
      * @return cyclic ordering of taxa
      */
     public int[] getCycle() {
-        int[] cycle = new int[taxon2node.size() + 1];
-        for (int t = 1; t <= taxon2node.size(); t++)
+        int[] cycle = new int[getNumberOfTaxa() + 1];
+        for (int t = 1; t <= getNumberOfTaxa(); t++)
             cycle[getTaxon2Cycle(t)] = t;
         return cycle;
     }
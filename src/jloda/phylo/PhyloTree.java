@@ -318,6 +318,15 @@ public class PhyloTree extends PhyloSplitsGraph {
             System.err.println(str);
             throw ex;
         }
+        postProcessParsedTree(rooted);
+    }
+
+    /**
+     * sets the root and processes reticulate nodes after parsing a tree in newick format
+     *
+     * @param rooted maintain root, even if it has degree 2
+     */
+    void postProcessParsedTree(boolean rooted) {
         final Node v = getFirstNode();
         if (v != null) {
             if (rooted) {
@@ -535,7 +544,7 @@ public class PhyloTree extends PhyloSplitsGraph {
      * @param v
      * @return true, if v is an unlabeled node of degree 2
      */
-    private boolean isUnlabeledDiVertex(Node v) {
+    boolean isUnlabeledDiVertex(Node v) {
         return v.getDegree() == 2 && (getLabel(v) == null || getLabel(v).length() == 0);
     }
 
@@ -665,21 +674,21 @@ public class PhyloTree extends PhyloSplitsGraph {
                     boolean inEdgeHasWeight = (getWeight(f) > 0);
 
                     if (isSpecial(f)) {
-                        if (node2reticulateNumber.get(w) == null) {
+                        if (!node2reticulateNumber.containsKey(w)) {
                             node2reticulateNumber.set(w, ++reticulateNodeNumber);
                             final String label;
                             if (getLabel(w) != null)
-                                label = getLabelForWriting(w) + PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.get(w));
+                                label = getLabelForWriting(w) + PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.getInt(w));
                             else
-                                label = PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.get(w));
+                                label = PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.getInt(w));
 
                             writeRec(outs, w, f, writeEdgeWeights, writeEdgeLabels, nodeId2Number, edgeId2Number, label);
                         } else {
                             String label;
                             if (getLabel(w) != null)
-                                label = getLabelForWriting(w) + PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.get(w));
+                                label = getLabelForWriting(w) + PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.getInt(w));
                             else
-                                label = PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.get(w));
+                                label = PhyloTreeUtils.makeReticulateNodeLabel(inEdgeHasWeight, node2reticulateNumber.getInt(w));
 
                             outs.write(label);
                             if (writeEdgeWeights) {
@@ -983,7 +992,7 @@ public class PhyloTree extends PhyloSplitsGraph {
         return inputHasMultiLabels;
     }
 
-    private void setInputHasMultiLabels(boolean inputHasMultiLabels) {
+    void setInputHasMultiLabels(boolean inputHasMultiLabels) {
         this.inputHasMultiLabels = inputHasMultiLabels;
     }
 
@@ -1196,11 +1205,8 @@ public class PhyloTree extends PhyloSplitsGraph {
      * @param pos
      */
     private int computeCycleRec(Node v, Edge e, int pos) {
-        final List<Integer> taxa = node2taxa.get(v);
-        if (taxa != null) {
-            for (Integer t : taxa) {
-                setTaxon2Cycle(t, ++pos);
-            }
+        for (var it = getTaxaIterator(v); it.hasNext(); ) {
+            setTaxon2Cycle(it.nextInt(), ++pos);
         }
         for (Edge f = v.getFirstAdjacentEdge(); f != null; f = v.getNextAdjacentEdge(f)) {
             if (f != e && PhyloTreeUtils.okToDescendDownThisEdge(this, f, v))
@@ -0,0 +1,198 @@
+/*
+ * RobinsonFoulds.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * computes Robinson-Foulds distances between unrooted phylogenetic trees on the same taxa, using Day's linear-time algorithm.
+ * The first tree of a pair is re-rooted at the reference taxon and its leaves are numbered in post-order, so that every
+ * cluster of the tree is an interval of leaf numbers, which are stored in a table. A cluster of the second tree is then shared
+ * if its leaf numbers form an interval that is contained in the table
+ * Daniel Huson, 2021
+ */
+public class RobinsonFoulds {
+    /**
+     * computes the Robinson-Foulds distance between two trees
+     *
+     * @return number of non-trivial bipartitions contained in exactly one of the trees
+     * @throws IllegalArgumentException if the trees are not on the same set of taxa
+     */
+    public static int computeDistance(PhyloTree tree1, PhyloTree tree2) {
+        final var bipartitions = Bipartitions.create(List.of(tree1, tree2));
+        final var splitTree1 = new SplitTree(tree1, bipartitions::getTaxonId);
+        final var splitTree2 = new SplitTree(tree2, bipartitions::getTaxonId);
+        final var clusterTable = new ClusterTable(bipartitions.getNumberOfTaxa(), Math.max(splitTree1.size, splitTree2.size));
+        clusterTable.setup(splitTree1);
+        return clusterTable.computeDistance(splitTree2);
+    }
+
+    /**
+     * computes the Robinson-Foulds distances between all pairs of trees, in parallel
+     *
+     * @param trees           trees, all on the same taxa
+     * @param numberOfThreads number of threads to use
+     * @return symmetric matrix of distances
+     * @throws IllegalArgumentException if the trees are not on the same set of taxa
+     */
+    public static int[][] computeAllPairs(List<PhyloTree> trees, int numberOfThreads) {
+        final var bipartitions = Bipartitions.create(trees);
+        final var pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            final var splitTrees = pool.submit(() -> trees.parallelStream().map(tree -> new SplitTree(tree, bipartitions::getTaxonId))
+                    .toArray(SplitTree[]::new)).get();
+            final var maxSize = Arrays.stream(splitTrees).mapToInt(t -> t.size).max().orElse(0);
+
+            final var matrix = new int[trees.size()][trees.size()];
+            pool.submit(() -> IntStream.range(0, splitTrees.length).parallel().forEach(i -> {
+                final var clusterTable = new ClusterTable(bipartitions.getNumberOfTaxa(), maxSize);
+                clusterTable.setup(splitTrees[i]);
+                for (var j = i + 1; j < splitTrees.length; j++) {
+                    matrix[i][j] = matrix[j][i] = clusterTable.computeDistance(splitTrees[j]);
+                }
+            })).get();
+            return matrix;
+        } catch (InterruptedException | ExecutionException ex) {
+            if (ex.getCause() instanceof IllegalArgumentException)
+                throw (IllegalArgumentException) ex.getCause();
+            throw new RuntimeException(ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Day's cluster table for one tree, with scratch arrays to process other trees
+     */
+    private static class ClusterTable {
+        private final int[] rank; // leaf number by taxon id, 0 for reference taxon
+        private final int[] tableLeft;
+        private final int[] tableRight;
+        private final int[] minRank;
+        private final int[] maxRank;
+        private final int[] clusterSize;
+        private int[] effectiveParent;
+        private int numberOfTaxa;
+        private int referenceTaxon;
+        private int numberOfClusters;
+
+        ClusterTable(int maxTaxonId, int maxSize) {
+            rank = new int[maxTaxonId + 1];
+            tableLeft = new int[maxTaxonId + 1];
+            tableRight = new int[maxTaxonId + 1];
+            minRank = new int[maxSize];
+            maxRank = new int[maxSize];
+            clusterSize = new int[maxSize];
+            effectiveParent = new int[maxSize];
+        }
+
+        /**
+         * number the leaves of the tree and store all clusters
+         */
+        void setup(SplitTree tree) {
+            numberOfTaxa = tree.numberOfTaxa;
+            referenceTaxon = tree.referenceTaxon;
+            Arrays.fill(rank, 0);
+            Arrays.fill(tableLeft, -1);
+            Arrays.fill(tableRight, -1);
+            if (effectiveParent.length < tree.size)
+                effectiveParent = new int[tree.size];
+
+            var number = 0;
+            for (var i = 0; i < tree.size; i++) {
+                if (tree.taxon[i] > 0 && tree.parent[i] != -1)
+                    rank[tree.taxon[i]] = ++number;
+            }
+            computeIntervals(tree);
+            final var nonTrivial = tree.computeNonTrivial(clusterSize);
+
+            // the effective parent is the closest ancestor with a larger cluster. Parents come after their children in post-order:
+            for (var i = tree.size - 1; i >= 0; i--) {
+                final var p = tree.parent[i];
+                effectiveParent[i] = (p == -1 ? -1 : (clusterSize[p] > clusterSize[i] ? p : effectiveParent[p]));
+            }
+
+            // store each cluster in the row of its right end, unless it shares its right end with its effective parent,
+            // in which case it is stored in the row of its left end. This uses each row at most once
+            numberOfClusters = 0;
+            for (var i = 0; i < tree.size; i++) {
+                if (nonTrivial[i]) {
+                    final var p = effectiveParent[i];
+                    final var row = (p != -1 && maxRank[p] == maxRank[i] ? minRank[i] : maxRank[i]);
+                    tableLeft[row] = minRank[i];
+                    tableRight[row] = maxRank[i];
+                    numberOfClusters++;
+                }
+            }
+        }
+
+        /**
+         * computes the distance between the tree used in setup and the given tree
+         */
+        int computeDistance(SplitTree tree) {
+            if (tree.numberOfTaxa != numberOfTaxa || tree.referenceTaxon != referenceTaxon)
+                throw new IllegalArgumentException("Trees have different taxa");
+            for (var i = 0; i < tree.size; i++) {
+                final var t = tree.taxon[i];
+                if (t > 0 && t != referenceTaxon && (t >= rank.length || rank[t] == 0))
+                    throw new IllegalArgumentException("Trees have different taxa");
+            }
+            computeIntervals(tree);
+            final var nonTrivial = tree.computeNonTrivial(clusterSize);
+
+            var clusters = 0;
+            var shared = 0;
+            for (var i = 0; i < tree.size; i++) {
+                if (nonTrivial[i]) {
+                    clusters++;
+                    final var left = minRank[i];
+                    final var right = maxRank[i];
+                    if (right - left + 1 == clusterSize[i]
+                        && ((tableLeft[left] == left && tableRight[left] == right) || (tableLeft[right] == left && tableRight[right] == right)))
+                        shared++;
+                }
+            }
+            return numberOfClusters + clusters - 2 * shared;
+        }
+
+        /**
+         * computes the smallest and largest leaf number below each node
+         */
+        private void computeIntervals(SplitTree tree) {
+            Arrays.fill(minRank, 0, tree.size, Integer.MAX_VALUE);
+            Arrays.fill(maxRank, 0, tree.size, Integer.MIN_VALUE);
+            for (var i = 0; i < tree.size; i++) {
+                final var t = tree.taxon[i];
+                if (t > 0 && tree.parent[i] != -1)
+                    minRank[i] = maxRank[i] = rank[t];
+                final var p = tree.parent[i];
+                if (p != -1) {
+                    minRank[p] = Math.min(minRank[p], minRank[i]);
+                    maxRank[p] = Math.max(maxRank[p], maxRank[i]);
+                }
+            }
+        }
+    }
+}
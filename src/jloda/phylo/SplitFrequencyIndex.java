@@ -0,0 +1,171 @@
+/*
+ * SplitFrequencyIndex.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * counts in how many trees of a collection each bipartition occurs, keyed by the 128-bit fingerprints computed by Bipartitions.
+ * Uses open addressing over primitive arrays, so no object is allocated per bipartition
+ * Daniel Huson, 2021
+ */
+public class SplitFrequencyIndex {
+    private long[] keys; // two longs per slot
+    private int[] counts; // 0 indicates an empty slot
+    private int size;
+    private int numberOfTrees;
+
+    /**
+     * constructor
+     */
+    public SplitFrequencyIndex() {
+        keys = new long[2 * 1024];
+        counts = new int[1024];
+    }
+
+    /**
+     * creates the index for a collection of trees. Fingerprints are computed in parallel
+     */
+    public static SplitFrequencyIndex create(Bipartitions bipartitions, List<PhyloTree> trees, int numberOfThreads) {
+        final var index = new SplitFrequencyIndex();
+        for (var fingerprints : bipartitions.computeFingerprints(trees, numberOfThreads))
+            index.addTree(fingerprints);
+        return index;
+    }
+
+    /**
+     * adds the bipartitions of one tree
+     *
+     * @param fingerprints fingerprints without duplicates, as computed by Bipartitions.computeFingerprints
+     */
+    public void addTree(long[] fingerprints) {
+        for (var i = 0; i < fingerprints.length; i += 2)
+            add(fingerprints[i], fingerprints[i + 1]);
+        numberOfTrees++;
+    }
+
+    private void add(long high, long low) {
+        if (2 * (size + 1) > counts.length)
+            resize(2 * counts.length);
+        final var slot = findSlot(keys, counts, high, low);
+        if (counts[slot] == 0) {
+            keys[2 * slot] = high;
+            keys[2 * slot + 1] = low;
+            size++;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * @return number of trees that contain the bipartition
+     */
+    public int getCount(long high, long low) {
+        return counts[findSlot(keys, counts, high, low)];
+    }
+
+    /**
+     * @return proportion of trees that contain the bipartition
+     */
+    public double getSupport(long high, long low) {
+        return (numberOfTrees == 0 ? 0 : (double) getCount(high, low) / numberOfTrees);
+    }
+
+    /**
+     * gets the support of all bipartitions of one tree, e.g. to label the edges of a consensus or reference tree
+     *
+     * @param fingerprints fingerprints of the tree
+     * @return support values, in order of fingerprints
+     */
+    public double[] getSupport(long[] fingerprints) {
+        final var support = new double[fingerprints.length / 2];
+        for (var i = 0; i < support.length; i++)
+            support[i] = getSupport(fingerprints[2 * i], fingerprints[2 * i + 1]);
+        return support;
+    }
+
+    /**
+     * gets all bipartitions that occur in more than the given proportion of trees. For a threshold of 0.5, these are the
+     * bipartitions of the majority consensus
+     *
+     * @return sorted fingerprints
+     */
+    public long[] getSplits(double minSupport) {
+        var result = new long[2 * size];
+        var count = 0;
+        for (var slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] > 0 && counts[slot] > minSupport * numberOfTrees) {
+                result[count++] = keys[2 * slot];
+                result[count++] = keys[2 * slot + 1];
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Bipartitions.sortPairs(result, 0, count / 2 - 1);
+        return result;
+    }
+
+    /**
+     * @return number of different bipartitions
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getNumberOfTrees() {
+        return numberOfTrees;
+    }
+
+    private void resize(int capacity) {
+        final var newKeys = new long[2 * capacity];
+        final var newCounts = new int[capacity];
+        for (var slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] > 0) {
+                final var newSlot = findSlot(newKeys, newCounts, keys[2 * slot], keys[2 * slot + 1]);
+                newKeys[2 * newSlot] = keys[2 * slot];
+                newKeys[2 * newSlot + 1] = keys[2 * slot + 1];
+                newCounts[newSlot] = counts[slot];
+            }
+        }
+        keys = newKeys;
+        counts = newCounts;
+    }
+
+    /**
+     * linear probing, capacity is a power of two
+     *
+     * @return slot containing the key, or the empty slot where it should be inserted
+     */
+    private static int findSlot(long[] keys, int[] counts, long high, long low) {
+        final var mask = counts.length - 1;
+        var slot = hash(high, low) & mask;
+        while (counts[slot] != 0 && (keys[2 * slot] != high || keys[2 * slot + 1] != low))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static int hash(long high, long low) {
+        var h = high * 0x9E3779B97F4A7C15L + low;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+}
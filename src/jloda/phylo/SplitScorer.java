@@ -0,0 +1,267 @@
+/*
+ * SplitScorer.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.util.Pair;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * scores many splits on the same tree, as used by HomoplasyScore and Distortion.
+ * The traversal order of the tree and the taxa of all nodes are computed once, and each split is then scored by
+ * a loop over primitive arrays, with one pair of score arrays per thread
+ * Daniel Huson, 2021
+ */
+class SplitScorer {
+    private final int numberOfNodes;
+    private final int[] postOrder; // nodes in post-order, root last
+    private final int orderLength;
+    private final int[] parent; // parent of each node, -1 for root
+    private final boolean[] recompute; // nodes whose score is computed from their children, all others keep their initial scores
+    private final int[] taxaStart; // taxa of node i are taxa[taxaStart[i]..taxaStart[i+1]-1]
+    private final int[] taxa;
+    private final int[] treeTaxa; // all different taxa in the tree
+
+    /**
+     * constructor
+     *
+     * @param tree the tree
+     * @param root the root, or null for the first node
+     */
+    SplitScorer(PhyloTree tree, Node root) {
+        numberOfNodes = tree.getNumberOfNodes();
+        final var index = tree.newNodeIntArray();
+        final var nodes = new Node[numberOfNodes];
+        {
+            var i = 0;
+            for (var v : tree.nodes()) {
+                nodes[i] = v;
+                index.set(v, i++);
+            }
+        }
+
+        taxaStart = new int[numberOfNodes + 1];
+        final var taxaList = new ArrayList<Integer>();
+        final var taxaSet = new BitSet();
+        for (var i = 0; i < numberOfNodes; i++) {
+            taxaStart[i] = taxaList.size();
+            for (var t : tree.getTaxa(nodes[i])) {
+                taxaList.add(t);
+                taxaSet.set(t);
+            }
+        }
+        taxaStart[numberOfNodes] = taxaList.size();
+        taxa = taxaList.stream().mapToInt(Integer::intValue).toArray();
+        treeTaxa = taxaSet.stream().toArray();
+
+        // iterative version of the depth-first traversal used by the recursive scoring methods:
+        postOrder = new int[numberOfNodes];
+        parent = new int[numberOfNodes];
+        recompute = new boolean[numberOfNodes];
+        Arrays.fill(parent, -1);
+        var count = 0;
+        if (numberOfNodes > 0) {
+            if (root == null)
+                root = tree.getFirstNode();
+            final var stack = new ArrayList<Node>();
+            final var inEdges = new ArrayList<Edge>();
+            final var nextEdges = new ArrayList<Edge>();
+            stack.add(root);
+            inEdges.add(null);
+            nextEdges.add(root.getFirstAdjacentEdge());
+            recompute[index.get(root)] = true;
+            while (stack.size() > 0) {
+                final var top = stack.size() - 1;
+                final var v = stack.get(top);
+                final var f = nextEdges.get(top);
+                if (f != null) {
+                    nextEdges.set(top, v.getNextAdjacentEdge(f));
+                    if (f != inEdges.get(top)) {
+                        final var w = f.getOpposite(v);
+                        parent[index.get(w)] = index.get(v);
+                        if (w.getDegree() > 1) {
+                            recompute[index.get(w)] = true;
+                            stack.add(w);
+                            inEdges.add(f);
+                            nextEdges.add(w.getFirstAdjacentEdge());
+                        } else
+                            postOrder[count++] = index.get(w);
+                    }
+                } else {
+                    stack.remove(top);
+                    inEdges.remove(top);
+                    nextEdges.remove(top);
+                    postOrder[count++] = index.get(v);
+                }
+            }
+        }
+        orderLength = count; // nodes not connected to the root are ignored
+    }
+
+    /**
+     * scores all splits in parallel
+     *
+     * @return scores, in the order of the splits
+     */
+    int[] apply(List<Pair<BitSet, BitSet>> splits, int numberOfThreads) throws IOException {
+        final var scores = new int[splits.size()];
+        final var errors = new IOException[1];
+        final var threads = Math.max(1, numberOfThreads);
+        final var numberOfChunks = Math.min(splits.size(), 4 * threads);
+        final var pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, numberOfChunks).parallel().forEach(c -> {
+                final var from = (int) ((long) c * splits.size() / numberOfChunks);
+                final var to = (int) ((long) (c + 1) * splits.size() / numberOfChunks);
+                final var scratch = new Scratch(numberOfNodes);
+                try {
+                    for (var s = from; s < to; s++)
+                        scores[s] = score(splits.get(s).getFirst(), splits.get(s).getSecond(), scratch);
+                } catch (IOException ex) {
+                    synchronized (errors) {
+                        errors[0] = ex;
+                    }
+                }
+            })).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException(ex);
+        } finally {
+            pool.shutdown();
+        }
+        if (errors[0] != null)
+            throw errors[0];
+        return scores;
+    }
+
+    /**
+     * computes the best score for a single split
+     */
+    private int score(BitSet A, BitSet B, Scratch scratch) throws IOException {
+        if (numberOfNodes < 2 || A.cardinality() <= 1 || B.cardinality() <= 1)
+            return 0;
+        final var scoreA = scratch.scoreA;
+        final var scoreB = scratch.scoreB;
+        final var countA = scratch.countA;
+        final var countB = scratch.countB;
+        final var flags = scratch.flags;
+
+        for (var v = 0; v < numberOfNodes; v++) {
+            var hasA = false;
+            var hasB = false;
+            for (var k = taxaStart[v]; k < taxaStart[v + 1]; k++) {
+                final var t = taxa[k];
+                if (A.get(t))
+                    hasA = true;
+                else if (B.get(t))
+                    hasB = true;
+                else
+                    throw new IOException("Taxon t=" + t + ": not present in split");
+            }
+            var aValue = 0;
+            var bValue = 0;
+            if (hasA && !hasB)
+                bValue = Integer.MAX_VALUE;
+            else if (!hasA && hasB)
+                aValue = Integer.MAX_VALUE;
+            else if (hasA && hasB)
+                aValue = bValue = 1;
+            scoreA[v] = aValue;
+            scoreB[v] = bValue;
+            countA[v] = 0;
+            countB[v] = 0;
+            flags[v] = 0;
+        }
+        // if only 0 or 1 of either side of the split occurs in T, then score is 0:
+        var inA = 0;
+        var inB = 0;
+        for (var t : treeTaxa) {
+            if (A.get(t))
+                inA++;
+            if (B.get(t))
+                inB++;
+        }
+        if (inA <= 1 || inB <= 1)
+            return 0;
+
+        for (var k = 0; k < orderLength; k++) {
+            final var v = postOrder[k];
+            if (recompute[v]) {
+                // this might be a labeled internal node, treat it as an additional leaf node:
+                add(v, scoreA[v], scoreB[v], countA, countB, flags);
+                // add 1 for change, if necessary:
+                if ((flags[v] & 1) != 0)
+                    countB[v] += 1;
+                if ((flags[v] & 2) != 0)
+                    countA[v] += 1;
+                scoreA[v] = countA[v];
+                scoreB[v] = countB[v];
+            }
+            if (parent[v] != -1)
+                add(parent[v], scoreA[v], scoreB[v], countA, countB, flags);
+        }
+        final var root = postOrder[orderLength - 1];
+        return Math.min(scoreA[root], scoreB[root]) - 1;
+    }
+
+    /**
+     * adds the scores of a child to the counts of node v, bit 1 of the flags indicates that A is much better than B for some child,
+     * bit 2 that B is much better than A
+     */
+    private static void add(int v, int childScoreA, int childScoreB, int[] countA, int[] countB, int[] flags) {
+        if (childScoreA <= childScoreB - 1) {
+            flags[v] |= 1;
+            countB[v] += childScoreA;
+        } else {
+            countB[v] += childScoreB;
+        }
+        if (childScoreB <= childScoreA - 1) {
+            flags[v] |= 2;
+            countA[v] += childScoreB;
+        } else {
+            countA[v] += childScoreA;
+        }
+    }
+
+    /**
+     * per-thread scratch arrays
+     */
+    private static class Scratch {
+        final int[] scoreA;
+        final int[] scoreB;
+        final int[] countA;
+        final int[] countB;
+        final int[] flags;
+
+        Scratch(int n) {
+            scoreA = new int[n];
+            scoreB = new int[n];
+            countA = new int[n];
+            countB = new int[n];
+            flags = new int[n];
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * SplitTree.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.phylo;
+
+import jloda.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.ToIntFunction;
+
+/**
+ * compact copy of a phylogenetic tree, used to compute bipartitions. The tree is treated as unrooted and
+ * is re-rooted at the leaf with the smallest taxon id, the reference taxon. Then the cluster below each node is the side of
+ * a bipartition that does not contain the reference taxon. Nodes are numbered in post-order, so the reference leaf comes last,
+ * and the leaves below any node are consecutive in the order of leaves
+ * Daniel Huson, 2021
+ */
+class SplitTree {
+    final int size; // number of nodes
+    final int[] parent; // parent in post-order numbering, -1 for the reference leaf
+    final int[] taxon; // taxon id of leaf, or -1
+    final int numberOfTaxa; // including the reference taxon
+    final int referenceTaxon;
+
+    /**
+     * constructor
+     *
+     * @param tree    the tree, each leaf must be labeled by a different taxon
+     * @param taxonId maps leaf labels to positive taxon ids, must return a value less than 1 for unknown labels
+     */
+    SplitTree(PhyloTree tree, ToIntFunction<String> taxonId) {
+        Node start = null;
+        var reference = Integer.MAX_VALUE;
+        var count = 0;
+        for (var v : tree.nodes()) {
+            if (v.getOutDegree() == 0) {
+                final var id = getTaxonId(tree, v, taxonId);
+                if (id < reference) {
+                    reference = id;
+                    start = v;
+                }
+                count++;
+            }
+        }
+        numberOfTaxa = count;
+        referenceTaxon = (start != null ? reference : -1);
+        size = tree.getNumberOfNodes();
+        parent = new int[size];
+        taxon = new int[size];
+        if (start == null)
+            return;
+
+        // iterative depth-first traversal of the unrooted tree, starting at the reference leaf:
+        final var visited = tree.newNodeSet();
+        final var nodes = new ArrayList<Node>();
+        final var iterators = new ArrayList<Iterator<Node>>();
+        final var children = new ArrayList<ArrayList<Integer>>(); // post-order numbers of completed children of nodes on the stack
+        nodes.add(start);
+        iterators.add(start.adjacentNodes().iterator());
+        children.add(new ArrayList<>());
+        visited.add(start);
+        var number = 0;
+        while (nodes.size() > 0) {
+            final var top = nodes.size() - 1;
+            final var it = iterators.get(top);
+            if (it.hasNext()) {
+                final var w = it.next();
+                if (top > 0 && w == nodes.get(top - 1))
+                    continue;
+                if (visited.contains(w))
+                    throw new IllegalArgumentException("Not a tree: contains cycle");
+                visited.add(w);
+                nodes.add(w);
+                iterators.add(w.adjacentNodes().iterator());
+                children.add(new ArrayList<>());
+            } else {
+                final var v = nodes.remove(top);
+                iterators.remove(top);
+                final var i = number++;
+                for (var c : children.remove(top))
+                    parent[c] = i;
+                parent[i] = -1;
+                if (top > 0)
+                    children.get(top - 1).add(i);
+                taxon[i] = (v.getOutDegree() == 0 ? getTaxonId(tree, v, taxonId) : -1);
+            }
+        }
+        if (number != size)
+            throw new IllegalArgumentException("Not a tree: not connected");
+
+        final var seen = new boolean[Arrays.stream(taxon).max().orElse(0) + 1];
+        for (var t : taxon) {
+            if (t > 0) {
+                if (seen[t])
+                    throw new IllegalArgumentException("Multi-labeled tree: taxon " + t + " occurs more than once");
+                seen[t] = true;
+            }
+        }
+    }
+
+    private static int getTaxonId(PhyloTree tree, Node v, ToIntFunction<String> taxonId) {
+        final var label = tree.getLabel(v);
+        final var id = (label != null ? taxonId.applyAsInt(label) : -1);
+        if (id < 1)
+            throw new IllegalArgumentException("Leaf has unknown taxon: " + label);
+        return id;
+    }
+
+    /**
+     * determines which nodes represent a non-trivial bipartition. Nodes whose cluster equals that of one of their children,
+     * such as nodes of degree 2, are not reported, so that each bipartition is represented by exactly one node
+     *
+     * @param clusterSize is set to the number of taxa below each node
+     * @return true for nodes representing a non-trivial bipartition
+     */
+    boolean[] computeNonTrivial(int[] clusterSize) {
+        final var maxChildSize = new int[size];
+        Arrays.fill(clusterSize, 0, size, 0);
+        for (var i = 0; i < size; i++) {
+            if (taxon[i] > 0 && parent[i] != -1)
+                clusterSize[i]++;
+            final var p = parent[i];
+            if (p != -1) {
+                clusterSize[p] += clusterSize[i];
+                maxChildSize[p] = Math.max(maxChildSize[p], clusterSize[i]);
+            }
+        }
+        final var result = new boolean[size];
+        for (var i = 0; i < size; i++) {
+            result[i] = (taxon[i] == -1 && parent[i] != -1 && clusterSize[i] >= 2 && clusterSize[i] <= numberOfTaxa - 2 && clusterSize[i] > maxChildSize[i]);
+        }
+        return result;
+    }
+}
@@ -161,7 +161,7 @@ public class CoverDigraph {
                 for (int j = i - 1; j >= 0; j--) {
                     Node w = gene2node[j];
 
-                    if (node2covered.get(w) < i + 1) // doesn't cover a node between v and w
+                    if (node2covered.getInt(w) < i + 1) // doesn't cover a node between v and w
                     {
                         if (BitSetComparator.isSubset(genes[i].taxa, genes[j].taxa)) {
                             graph.newEdge(w, v);
@@ -182,7 +182,7 @@ public class CoverDigraph {
      */
     private void markAllCoveringNodesRec(int id, Node v, NodeIntArray node2covered)
             throws NotOwnerException {
-        if (node2covered.get(v) >= id)
+        if (node2covered.getInt(v) >= id)
             return;
 
         node2covered.set(v, id);
@@ -190,7 +190,7 @@ public class CoverDigraph {
         for (Edge e = graph.getFirstAdjacentEdge(v); e != null; e = graph.getNextAdjacentEdge(e, v))
             if (graph.getTarget(e) == v) {
                 Node w = graph.getOpposite(v, e);
-                if (node2covered.get(w) < id) {
+                if (node2covered.getInt(w) < id) {
                     markAllCoveringNodesRec(id, w, node2covered);
                 }
             }
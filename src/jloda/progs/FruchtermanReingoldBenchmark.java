@@ -0,0 +1,113 @@
+/*
+ * FruchtermanReingoldBenchmark.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.progs;
+
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.graph.NodeArray;
+import jloda.graph.algorithms.FruchtermanReingoldLayout;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.APoint2D;
+import jloda.util.Basic;
+import jloda.util.CanceledException;
+import jloda.util.ProgressSilent;
+import jloda.util.UsageException;
+
+import java.util.Random;
+
+/**
+ * compares the exact and the Barnes-Hut computation of repulsive forces in the Fruchterman-Reingold layout
+ * on random sparse graphs of increasing size, so as to determine the number of nodes at which the approximation becomes faster
+ * Daniel Huson, 2021
+ */
+public class FruchtermanReingoldBenchmark {
+    public static void main(String[] args) throws UsageException, CanceledException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("FruchtermanReingoldBenchmark - exact vs Barnes-Hut repulsion");
+        final String[] sizes = options.getOption("-n", "Numbers of nodes", new String[]{"250", "500", "1000", "2000", "4000", "8000", "16000"});
+        final int iterations = options.getOption("-i", "Number of iterations per layout", 20);
+        final double theta = options.getOption("-t", "Barnes-Hut theta", 0.8);
+        final int threads = options.getOption("-p", "Number of threads", Runtime.getRuntime().availableProcessors());
+        final long maxExactMillis = options.getOption("-m", "Skip exact computation once a run takes longer than this (ms)", 60000L);
+        options.done();
+
+        System.err.println("Iterations: " + iterations + ", theta: " + theta + ", threads: " + threads);
+        System.err.printf("%10s %15s %15s %10s%n", "nodes", "exact (ms/it)", "B-H (ms/it)", "speed-up");
+
+        int crossover = 0;
+        var skipExact = false;
+        var first = true;
+        for (var size : sizes) {
+            final int numberOfNodes = Basic.parseInt(size);
+            final Graph graph = createRandomGraph(numberOfNodes, 666);
+            if (first) { // warm-up
+                run(graph, FruchtermanReingoldLayout.Repulsion.Exact, theta, iterations, threads);
+                run(graph, FruchtermanReingoldLayout.Repulsion.BarnesHut, theta, iterations, threads);
+                first = false;
+            }
+            final double exact = (skipExact ? Double.NaN : run(graph, FruchtermanReingoldLayout.Repulsion.Exact, theta, iterations, threads));
+            final double barnesHut = run(graph, FruchtermanReingoldLayout.Repulsion.BarnesHut, theta, iterations, threads);
+            System.err.printf("%,10d %15.2f %15.2f %10.1f%n", numberOfNodes, exact, barnesHut, exact / barnesHut);
+            if (crossover == 0 && barnesHut < exact)
+                crossover = numberOfNodes;
+            if (exact * iterations > maxExactMillis)
+                skipExact = true;
+        }
+        if (crossover > 0)
+            System.err.println("Barnes-Hut is faster from " + crossover + " nodes on");
+        else
+            System.err.println("Barnes-Hut was not faster for the given sizes");
+    }
+
+    /**
+     * runs the layout and returns the time per iteration in milliseconds
+     */
+    private static double run(Graph graph, FruchtermanReingoldLayout.Repulsion repulsion, double theta, int iterations, int threads) throws CanceledException {
+        final FruchtermanReingoldLayout layout = new FruchtermanReingoldLayout(graph);
+        layout.setRepulsion(repulsion);
+        layout.setTheta((float) theta);
+        final NodeArray<APoint2D<?>> result = graph.newNodeArray();
+        final long start = System.nanoTime();
+        layout.apply(iterations, result, new ProgressSilent(), threads);
+        return (System.nanoTime() - start) / 1000000.0 / iterations;
+    }
+
+    /**
+     * creates a random connected graph: a random tree plus n/2 additional random edges
+     */
+    private static Graph createRandomGraph(int numberOfNodes, long seed) {
+        final Random random = new Random(seed);
+        final Graph graph = new Graph();
+        final Node[] nodes = new Node[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            nodes[i] = graph.newNode();
+            if (i > 0)
+                graph.newEdge(nodes[random.nextInt(i)], nodes[i]);
+        }
+        for (int i = 0; i < numberOfNodes / 2; i++) {
+            final Node v = nodes[random.nextInt(numberOfNodes)];
+            final Node w = nodes[random.nextInt(numberOfNodes)];
+            if (v != w && v.getCommonEdge(w) == null)
+                graph.newEdge(v, w);
+        }
+        return graph;
+    }
+}
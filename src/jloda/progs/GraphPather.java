@@ -128,28 +128,28 @@ public class GraphPather {
 
             if (degree.getInt(v) == 0 && degree.getInt(w) == 0) {
                 selected.add(e);
-                degree.put(v, 1);
-                degree.put(w, 1);
+                degree.set(v, 1);
+                degree.set(w, 1);
                 other.put(v, w);
                 other.put(w, v);
             } else if (degree.getInt(v) == 0 && degree.getInt(w) == 1) {
                 selected.add(e);
-                degree.put(v, 1);
-                degree.put(w, 2);
+                degree.set(v, 1);
+                degree.set(w, 2);
                 Node u = other.get(w);
                 other.put(u, v);
                 other.put(v, u);
             } else if (degree.getInt(v) == 1 && degree.getInt(w) == 0) {
                 selected.add(e);
-                degree.put(v, 2);
-                degree.put(w, 1);
+                degree.set(v, 2);
+                degree.set(w, 1);
                 Node u = other.get(v);
                 other.put(u, w);
                 other.put(w, u);
             } else if (degree.getInt(v) == 1 && degree.getInt(w) == 1 && other.get(v) != w) {
                 selected.add(e);
-                degree.put(v, 2);
-                degree.put(w, 2);
+                degree.set(v, 2);
+                degree.set(w, 2);
                 Node uv = other.get(v);
                 Node uw = other.get(w);
                 other.put(uv, uw);
@@ -0,0 +1,90 @@
+/*
+ * GraphStreamBenchmark.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.progs;
+
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.UsageException;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * compares sequential and parallel per-node work on a large random graph. Parallel streams are run
+ * both over the plain node iterator (as used previously) and over the sized snapshot used by Graph.nodeParallelStream()
+ * Daniel Huson, 2021
+ */
+public class GraphStreamBenchmark {
+    public static void main(String[] args) throws UsageException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("GraphStreamBenchmark - sequential vs parallel node streams");
+        final int numberOfNodes = options.getOption("-n", "Number of nodes", 1000000);
+        final int averageDegree = options.getOption("-d", "Average degree", 4);
+        final int work = options.getOption("-w", "Amount of work per node", 200);
+        final int rounds = options.getOption("-r", "Number of timed rounds", 5);
+        options.done();
+
+        System.err.println("Building graph: " + numberOfNodes + " nodes");
+        final Graph graph = new Graph();
+        final Node[] nodes = new Node[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++)
+            nodes[i] = graph.newNode();
+        final Random random = new Random(666);
+        for (int i = 0; i < numberOfNodes * (long) averageDegree / 2; i++) {
+            final Node v = nodes[random.nextInt(numberOfNodes)];
+            final Node w = nodes[random.nextInt(numberOfNodes)];
+            if (v != w)
+                graph.newEdge(v, w);
+        }
+        System.err.println("Edges: " + graph.getNumberOfEdges());
+
+        final ToDoubleFunction<Node> task = v -> {
+            var value = 0.0;
+            for (var w : v.adjacentNodes()) {
+                for (int k = 0; k < work; k++)
+                    value += Math.sqrt(w.getId() + k);
+            }
+            return value;
+        };
+
+        System.err.println("Threads: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round <= rounds; round++) {
+            final String prefix = (round == 0 ? "Warm-up: " : "Round " + round + ": ");
+            final long sequential = time(graph::nodeStream, task);
+            final long iteratorParallel = time(() -> StreamSupport.stream(graph.nodes().spliterator(), true), task);
+            final long snapshotParallel = time(graph::nodeParallelStream, task);
+            System.err.printf("%ssequential: %,d ms, parallel (iterator): %,d ms, parallel (snapshot): %,d ms, speed-up: %.1f%n",
+                    prefix, sequential, iteratorParallel, snapshotParallel, (double) sequential / Math.max(1, snapshotParallel));
+        }
+    }
+
+    private static long time(Supplier<Stream<Node>> streamSupplier, ToDoubleFunction<Node> task) {
+        final long start = System.currentTimeMillis();
+        final double sum = streamSupplier.get().mapToDouble(task).sum();
+        if (sum == -1)
+            System.err.println("unexpected");
+        return System.currentTimeMillis() - start;
+    }
+}
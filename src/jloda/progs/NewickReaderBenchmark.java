@@ -0,0 +1,123 @@
+/*
+ * NewickReaderBenchmark.java Copyright (C) 2021. Daniel H. Huson
+ *
+ * (Some code written by other authors, as named in code.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jloda.progs;
+
+import jloda.graph.Node;
+import jloda.phylo.NewickReader;
+import jloda.phylo.PhyloTree;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.UsageException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * compares the streaming NewickReader with PhyloTree.parseBracketNotation on random trees with edge weights
+ * Daniel Huson, 2021
+ */
+public class NewickReaderBenchmark {
+    public static void main(String[] args) throws UsageException, IOException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("NewickReaderBenchmark - streaming vs string-based Newick parsing");
+        final int numberOfTaxa = options.getOption("-n", "Number of taxa per tree", 10000);
+        final int numberOfTrees = options.getOption("-t", "Number of trees", 100);
+        final int rounds = options.getOption("-r", "Number of timed rounds", 5);
+        options.done();
+
+        System.err.println("Generating " + numberOfTrees + " trees with " + numberOfTaxa + " taxa");
+        final Random random = new Random(666);
+        final StringBuilder buf = new StringBuilder();
+        for (int t = 0; t < numberOfTrees; t++) {
+            buf.append(createRandomTree(numberOfTaxa, random).toBracketString(true)).append(";\n");
+        }
+        final String input = buf.toString();
+        System.err.printf("Input: %,d characters%n", input.length());
+
+        // check that both parsers produce the same trees:
+        try (NewickReader newickReader = new NewickReader(new StringReader(input));
+             BufferedReader reader = new BufferedReader(new StringReader(input))) {
+            newickReader.setRooted(true);
+            for (int t = 0; t < numberOfTrees; t++) {
+                final PhyloTree tree = new PhyloTree();
+                tree.parseBracketNotation(reader.readLine(), true);
+                if (!tree.toBracketString(true).equals(newickReader.next().toBracketString(true)))
+                    throw new IOException("Trees differ: " + t);
+            }
+        }
+
+        for (int round = 0; round <= rounds; round++) {
+            final String prefix = (round == 0 ? "Warm-up: " : "Round " + round + ": ");
+
+            long start = System.currentTimeMillis();
+            long nodes = 0;
+            try (BufferedReader reader = new BufferedReader(new StringReader(input))) {
+                final PhyloTree tree = new PhyloTree();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    tree.parseBracketNotation(line, true);
+                    nodes += tree.getNumberOfNodes();
+                }
+            }
+            final long stringBased = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            try (NewickReader newickReader = new NewickReader(new StringReader(input))) {
+                newickReader.setRooted(true);
+                final PhyloTree tree = new PhyloTree();
+                while (newickReader.readNext(tree)) {
+                    nodes -= tree.getNumberOfNodes();
+                }
+            }
+            final long streaming = System.currentTimeMillis() - start;
+            if (nodes != 0)
+                System.err.println("unexpected");
+
+            System.err.printf("%sparseBracketNotation: %,d ms, NewickReader: %,d ms, speed-up: %.1f%n",
+                    prefix, stringBased, streaming, (double) stringBased / Math.max(1, streaming));
+        }
+    }
+
+    /**
+     * creates a random rooted binary tree by repeatedly joining two random subtrees
+     */
+    private static PhyloTree createRandomTree(int numberOfTaxa, Random random) {
+        final PhyloTree tree = new PhyloTree();
+        final ArrayList<Node> subtrees = new ArrayList<>();
+        for (int i = 1; i <= numberOfTaxa; i++) {
+            final Node v = tree.newNode();
+            tree.setLabel(v, "t" + i);
+            subtrees.add(v);
+        }
+        while (subtrees.size() > 1) {
+            final Node a = subtrees.remove(random.nextInt(subtrees.size()));
+            final Node b = subtrees.remove(random.nextInt(subtrees.size()));
+            final Node v = tree.newNode();
+            tree.setWeight(tree.newEdge(v, a), random.nextInt(1000) / 100.0);
+            tree.setWeight(tree.newEdge(v, b), random.nextInt(1000) / 100.0);
+            subtrees.add(v);
+        }
+        tree.setRoot(subtrees.get(0));
+        return tree;
+    }
+}
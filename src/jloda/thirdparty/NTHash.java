@@ -298,6 +298,45 @@ public class NTHash {
         return (frhVals[1] < frhVals[0]) ? frhVals[1] : frhVals[0]; // canonical
     }
 
+    /**
+     * Canonical ntBase for a k-mer given as bytes, also initializing the forward and reverse hash values for rolling
+     *
+     * @param seq     sequence
+     * @param start   start of kmer
+     * @param k       length of kmer
+     * @param frhVals array to store the forward and reverse hash values of kmer
+     * @return hash value
+     */
+    public static long NTC64(final byte[] seq, final int start, final int k, final long[] frhVals) {
+        long fhVal = 0;
+        long rhVal = 0;
+        for (int i = 0; i < k; ++i) {
+            final int c = seq[start + i] & 0xff;
+            fhVal ^= Long.rotateLeft(seedTab[c], k - 1 - i);
+            rhVal ^= Long.rotateLeft(seedTab[c & cpOff], i);
+        }
+        frhVals[0] = fhVal;
+        frhVals[1] = rhVal;
+        return (rhVal < fhVal) ? rhVal : fhVal;
+    }
+
+    /**
+     * Canonical ntHash for sliding k-mers given as bytes, using rotate ops
+     *
+     * @param byteOut nucleotide to remove
+     * @param byteIn  nucleotide to add
+     * @param k       length of kmer
+     * @param frhVals array to store the forward and reverse hash values of kmer
+     * @return hash value
+     */
+    public static long NTC64(final byte byteOut, final byte byteIn, final int k, final long[] frhVals) {
+        final int charOut = byteOut & 0xff;
+        final int charIn = byteIn & 0xff;
+        frhVals[0] = Long.rotateLeft(frhVals[0], 1) ^ Long.rotateLeft(seedTab[charOut], k) ^ seedTab[charIn]; // forward strand
+        frhVals[1] = Long.rotateRight(frhVals[1], 1) ^ Long.rotateRight(seedTab[charOut & cpOff], 1) ^ Long.rotateLeft(seedTab[charIn & cpOff], k - 1); // reverse strand
+        return (frhVals[1] < frhVals[0]) ? frhVals[1] : frhVals[0]; // canonical
+    }
+
 //    /**
 //     * Canonical ntBase with seeding option, using rotate ops
 //     * @param kmerSeq   kmer to be hashed
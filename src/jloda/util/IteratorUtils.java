@@ -148,6 +148,26 @@ public class IteratorUtils {
         return StreamSupport.stream(iterable.spliterator(), false);
     }
 
+    /**
+     * gets a parallel stream over a snapshot of the given iterable. The snapshot is a dense array, so the
+     * stream is SIZED and SUBSIZED and splits evenly, unlike a stream over a plain iterator
+     *
+     * @param iterable     the elements
+     * @param sizeEstimate expected number of elements, used to size the snapshot
+     * @return parallel stream
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Stream<T> asParallelStream(Iterable<T> iterable, int sizeEstimate) {
+        var array = new Object[Math.max(0, sizeEstimate)];
+        var count = 0;
+        for (T value : iterable) {
+            if (count == array.length)
+                array = Arrays.copyOf(array, Math.max(16, 2 * count));
+            array[count++] = value;
+        }
+        return (Stream<T>) Arrays.stream(array, 0, count).parallel();
+    }
+
     /**
      * iterable over first elements
      *